@@ -0,0 +1,70 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BenchmarkRunner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and stores the results in JSON format, for comparing
+ * releases.
+ * <br>
+ * Usage: [regexp [output.json]]
+ * <br>
+ * Any arguments starting with "-" are passed on to the JMH commandline
+ * instead (e.g., "-h" for help, "-l" for listing the benchmarks).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BenchmarkRunner {
+
+  /** the default output file. */
+  public final static String DEFAULT_OUTPUT = "rsync4j-benchmarks.json";
+
+  /**
+   * Runs the benchmarks.
+   *
+   * @param args	the regular expression for the benchmarks to run and the JSON output file
+   * @throws Exception	if running fails
+   */
+  public static void main(String[] args) throws Exception {
+    Options	options;
+    String	include;
+    String	output;
+
+    if ((args.length > 0) && args[0].startsWith("-")) {
+      Main.main(args);
+      return;
+    }
+
+    include = (args.length > 0) ? args[0] : ".*Benchmark.*";
+    output  = (args.length > 1) ? args[1] : DEFAULT_OUTPUT;
+    options = new OptionsBuilder()
+      .include(include)
+      .resultFormat(ResultFormatType.JSON)
+      .result(output)
+      .build();
+    new Runner(options).run();
+  }
+}
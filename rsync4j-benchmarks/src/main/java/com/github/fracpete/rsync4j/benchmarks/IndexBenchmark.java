@@ -0,0 +1,118 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * IndexBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.FileStateIndex;
+import com.github.fracpete.rsync4j.FileStateIndex.Delta;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scanning a tree and comparing it with the file state index, as
+ * well as storing the index.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexBenchmark {
+
+  /** the number of files in the tree. */
+  @Param({"20000", "100000"})
+  public int numFiles;
+
+  /** the generated tree. */
+  protected Path root;
+
+  /** the index. */
+  protected FileStateIndex index;
+
+  /** the delta of the last scan. */
+  protected Delta delta;
+
+  /**
+   * Generates the tree and the index.
+   *
+   * @throws Exception	if generating fails
+   */
+  @Setup
+  public void setUp() throws Exception {
+    root  = Files.createTempDirectory("rsync4j-bench-");
+    TreeGenerator.generate(root, numFiles, 0, 200);
+    index = new FileStateIndex(Files.createTempFile("rsync4j-bench-", ".idx"));
+    Files.delete(index.getFile());
+    delta = index.diff(root);
+    index.save(delta);
+    System.out.println();
+    System.out.println("index size: " + Files.size(index.getFile()) + " bytes for " + delta.getNumPaths() + " paths");
+  }
+
+  /**
+   * Removes the tree and the index.
+   *
+   * @throws Exception	if removing fails
+   */
+  @TearDown
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(root.toFile());
+    Files.deleteIfExists(index.getFile());
+  }
+
+  /**
+   * Scans the tree and compares it with the index.
+   *
+   * @return		the delta
+   * @throws Exception	if scanning fails
+   */
+  @Benchmark
+  public Delta diff() throws Exception {
+    return index.diff(root);
+  }
+
+  /**
+   * Stores the index.
+   *
+   * @throws Exception	if writing fails
+   */
+  @Benchmark
+  public void save() throws Exception {
+    index.save(delta);
+  }
+}
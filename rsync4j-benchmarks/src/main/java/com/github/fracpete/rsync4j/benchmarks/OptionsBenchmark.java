@@ -0,0 +1,125 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OptionsBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.RSync;
+import com.github.fracpete.rsync4j.RSyncTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the assembly of the command-line, comparing the mutable
+ * {@link RSync} with the precomputed {@link RSyncTemplate}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptionsBenchmark {
+
+  /** the configured instance. */
+  protected RSync rsync;
+
+  /** the template. */
+  protected RSyncTemplate template;
+
+  /** the sources. */
+  protected List<String> sources;
+
+  /**
+   * Configures the rsync instance.
+   *
+   * @throws Exception	if failed to determine binary
+   */
+  @Setup
+  public void setUp() throws Exception {
+    sources  = Arrays.asList("/some/where/", "/other/place/");
+    rsync    = new RSync()
+      .archive(true)
+      .delete(true)
+      .verbose(true)
+      .compress(true)
+      .exclude("*.o", "*.class")
+      .rsh("ssh -p 2222")
+      .sources(sources)
+      .destination("/else/where/");
+    template = rsync.freeze();
+  }
+
+  /**
+   * Assembles the options.
+   *
+   * @return		the options
+   * @throws Exception	if failed to determine binary
+   */
+  @Benchmark
+  public List<String> options() throws Exception {
+    return rsync.options();
+  }
+
+  /**
+   * Assembles the full command-line.
+   *
+   * @return		the arguments
+   * @throws Exception	if failed to determine binary
+   */
+  @Benchmark
+  public List<String> commandLineArgs() throws Exception {
+    return rsync.commandLineArgs();
+  }
+
+  /**
+   * Creates a process builder from the rsync instance.
+   *
+   * @return		the builder
+   * @throws Exception	if failed to determine binary
+   */
+  @Benchmark
+  public ProcessBuilder builder() throws Exception {
+    return rsync.builder();
+  }
+
+  /**
+   * Creates a process builder from the template.
+   *
+   * @return		the builder
+   */
+  @Benchmark
+  public ProcessBuilder templateBuilder() {
+    return template.builder(sources, "/else/where/");
+  }
+}
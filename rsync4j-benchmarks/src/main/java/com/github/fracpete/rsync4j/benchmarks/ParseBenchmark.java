@@ -0,0 +1,160 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParseBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.ItemizedChange;
+import com.github.fracpete.rsync4j.ProgressMonitor;
+import com.github.fracpete.rsync4j.TransferStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parsing of rsync output, reported as lines per second.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+  /** the number of lines per invocation. */
+  public final static int NUM_LINES = 1000;
+
+  /** the itemized lines. */
+  protected String[] itemized;
+
+  /** the progress output. */
+  protected byte[] progress;
+
+  /** the stats output. */
+  protected String stats;
+
+  /** the progress monitor. */
+  protected ProgressMonitor monitor;
+
+  /**
+   * Generates the output to parse.
+   */
+  @Setup
+  public void setUp() {
+    StringBuilder	buffer;
+    int			i;
+
+    itemized = new String[NUM_LINES];
+    for (i = 0; i < NUM_LINES; i++) {
+      switch (i % 4) {
+	case 0:
+	  itemized[i] = ">f+++++++++ dir" + (i / 100) + "/file" + i + ".txt";
+	  break;
+	case 1:
+	  itemized[i] = ">f.st...... dir" + (i / 100) + "/file" + i + ".txt";
+	  break;
+	case 2:
+	  itemized[i] = "cL+++++++++ dir" + (i / 100) + "/link" + i + " -> file" + i + ".txt";
+	  break;
+	default:
+	  itemized[i] = ".d..t...... dir" + (i / 100) + "/";
+	  break;
+      }
+    }
+
+    buffer = new StringBuilder();
+    for (i = 0; i < NUM_LINES; i++) {
+      buffer.append("     ").append(i * 1024).append("  ").append(i % 101).append("%  146.38kB/s    0:00:0").append(i % 10);
+      if (i % 10 == 9)
+	buffer.append(" (xfr#").append(i / 10).append(", to-chk=").append(NUM_LINES - i).append("/").append(NUM_LINES).append(")\n");
+      else
+	buffer.append("\r");
+    }
+    progress = buffer.toString().getBytes(StandardCharsets.UTF_8);
+    monitor  = new ProgressMonitor(e -> {}).interval(0);
+
+    stats = "Number of files: 1,234 (reg: 1,000, dir: 234)\n"
+      + "Number of created files: 12\n"
+      + "Number of deleted files: 0\n"
+      + "Number of regular files transferred: 34\n"
+      + "Total file size: 12,345,678 bytes\n"
+      + "Total transferred file size: 345,678 bytes\n"
+      + "Literal data: 300,000 bytes\n"
+      + "Matched data: 45,678 bytes\n"
+      + "File list size: 23,456\n"
+      + "File list generation time: 0.001 seconds\n"
+      + "File list transfer time: 0.000 seconds\n"
+      + "Total bytes sent: 325,432\n"
+      + "Total bytes received: 1,234\n"
+      + "\n"
+      + "sent 325,432 bytes  received 1,234 bytes  653,332.00 bytes/sec\n"
+      + "total size is 12,345,678  speedup is 37.79\n";
+  }
+
+  /**
+   * Parses itemized changes.
+   *
+   * @param bh		the blackhole to consume the changes
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_LINES)
+  public void itemize(Blackhole bh) {
+    for (String line: itemized)
+      bh.consume(ItemizedChange.parse(line));
+  }
+
+  /**
+   * Parses progress output.
+   *
+   * @return		the last event
+   * @throws Exception	if reading fails
+   */
+  @Benchmark
+  @OperationsPerInvocation(NUM_LINES)
+  public Object progress() throws Exception {
+    monitor.process(new ByteArrayInputStream(progress));
+    return monitor.getLastEvent();
+  }
+
+  /**
+   * Parses a stats summary (one operation per summary).
+   *
+   * @return		the stats
+   */
+  @Benchmark
+  public TransferStats stats() {
+    return TransferStats.parse(stats);
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParserBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.RSync;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning commandline options into an {@link RSync} instance:
+ * parser built for each call, cached parser and the direct mapping
+ * of options.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  /**
+   * RSync that configures a new parser for every call, like before caching.
+   */
+  public static class UncachedRSync
+    extends RSync {
+
+    /**
+     * Returns a newly configured parser.
+     *
+     * @return		the parser
+     */
+    @Override
+    protected ArgumentParser getCachedParser() {
+      return getParser();
+    }
+  }
+
+  /** the commandline arguments. */
+  protected String[] args = {"-a", "--delete", "-v", "--exclude", "*.o", "/some/where/", "/else/where/"};
+
+  /** the options as generated by {@link RSync#options()}. */
+  protected String[] options = {"--verbose", "--archive", "--delete", "--exclude=*.o"};
+
+  /**
+   * Parses the arguments with a new parser.
+   *
+   * @return		the configured instance
+   * @throws Exception	if parsing fails
+   */
+  @Benchmark
+  public RSync uncachedParser() throws Exception {
+    RSync	result;
+
+    result = new UncachedRSync();
+    result.setOptions(args);
+
+    return result;
+  }
+
+  /**
+   * Parses the arguments with the cached parser.
+   *
+   * @return		the configured instance
+   * @throws Exception	if parsing fails
+   */
+  @Benchmark
+  public RSync cachedParser() throws Exception {
+    RSync	result;
+
+    result = new RSync();
+    result.setOptions(args);
+
+    return result;
+  }
+
+  /**
+   * Maps the options directly.
+   *
+   * @return		the configured instance
+   */
+  @Benchmark
+  public RSync applyOptions() {
+    return new RSync()
+      .applyOptions(options)
+      .source("/some/where/")
+      .destination("/else/where/");
+  }
+}
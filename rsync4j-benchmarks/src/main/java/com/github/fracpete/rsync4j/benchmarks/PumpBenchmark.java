@@ -0,0 +1,165 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PumpBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.core.StreamPump;
+import com.github.fracpete.rsync4j.core.Utils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the platform threads and resident memory required for draining
+ * the stdout/stderr of many concurrent processes ("cat", waiting for
+ * input), comparing a thread pool with one platform thread per stream
+ * ("platform") with {@link StreamPump} ("pump", virtual threads when run
+ * on Java 21+). Requires a Unix-like system.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xss1m"})
+public class PumpBenchmark {
+
+  /**
+   * The threads and memory in use while all processes are running.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Usage {
+
+    /** the number of live platform threads. */
+    public long threads;
+
+    /** the resident set size in KB. */
+    public long rssKB;
+  }
+
+  /** the number of concurrent processes. */
+  @Param({"100", "500", "1000"})
+  public int processes;
+
+  /** how to drain the output. */
+  @Param({"platform", "pump"})
+  public String mode;
+
+  /** the executor for draining. */
+  protected ExecutorService executor;
+
+  /**
+   * Sets up the executor.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    if (mode.equals("platform"))
+      executor = Executors.newCachedThreadPool();
+    else
+      executor = StreamPump.newExecutor();
+  }
+
+  /**
+   * Returns the resident set size of the JVM.
+   *
+   * @return		the size in KB, -1 if not available
+   * @throws Exception	if reading fails
+   */
+  protected long rss() throws Exception {
+    for (String line: Files.readAllLines(Paths.get("/proc/self/status"))) {
+      if (line.startsWith("VmRSS:"))
+	return Long.parseLong(line.replaceAll("[^0-9]", ""));
+    }
+    return -1;
+  }
+
+  /**
+   * Drains stdout and stderr of the process.
+   *
+   * @param process	the process to drain
+   * @param futures	for adding the futures of the readers
+   */
+  protected void drain(Process process, List<CompletableFuture<String>> futures) {
+    futures.add(CompletableFuture.supplyAsync(() -> Utils.readFully(process.getInputStream()), executor));
+    futures.add(CompletableFuture.supplyAsync(() -> Utils.readFully(process.getErrorStream()), executor));
+  }
+
+  /**
+   * Starts the processes, drains their output and records the threads and
+   * memory in use once all are running, before letting them finish.
+   *
+   * @param usage	for recording the usage
+   * @throws Exception	if starting or waiting fails
+   */
+  @Benchmark
+  public void pump(Usage usage) throws Exception {
+    List<Process>			procs;
+    List<CompletableFuture<String>>	futures;
+    ProcessBuilder			builder;
+    Process				process;
+    int					i;
+
+    builder = new ProcessBuilder("cat");
+    procs   = new ArrayList<>();
+    futures = new ArrayList<>();
+    try {
+      for (i = 0; i < processes; i++) {
+	process = builder.start();
+	procs.add(process);
+	drain(process, futures);
+      }
+      usage.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+      usage.rssKB   = rss();
+    }
+    finally {
+      // closing stdin lets cat finish
+      for (Process p: procs)
+	p.getOutputStream().close();
+      for (CompletableFuture<String> future: futures)
+	future.join();
+      for (Process p: procs)
+	p.waitFor();
+      executor.shutdown();
+    }
+  }
+}
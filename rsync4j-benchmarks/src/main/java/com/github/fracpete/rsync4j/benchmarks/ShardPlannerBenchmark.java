@@ -0,0 +1,108 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ShardPlannerBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.core.ShardPlanner;
+import com.github.fracpete.rsync4j.core.ShardPlanner.Entry;
+import com.github.fracpete.rsync4j.core.ShardPlanner.Shard;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scanning a tree and planning balanced shards.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardPlannerBenchmark {
+
+  /** the generated tree. */
+  protected Path root;
+
+  /** the planner. */
+  protected ShardPlanner planner;
+
+  /** the scanned entries. */
+  protected List<Entry> entries;
+
+  /**
+   * Generates the tree.
+   *
+   * @throws Exception	if generating fails
+   */
+  @Setup
+  public void setUp() throws Exception {
+    root    = Files.createTempDirectory("rsync4j-bench-");
+    TreeGenerator.generate(root, 20000, 128, 200);
+    planner = new ShardPlanner().numShards(8);
+    entries = planner.scan(root, "");
+  }
+
+  /**
+   * Removes the tree.
+   *
+   * @throws Exception	if removing fails
+   */
+  @TearDown
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(root.toFile());
+  }
+
+  /**
+   * Scans the tree.
+   *
+   * @return		the entries
+   */
+  @Benchmark
+  public List<Entry> scan() {
+    return planner.scan(root, "");
+  }
+
+  /**
+   * Plans the shards for the scanned entries.
+   *
+   * @return		the shards
+   */
+  @Benchmark
+  public List<Shard> plan() {
+    return planner.plan(entries);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SourcesBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.RSync;
+import com.github.fracpete.rsync4j.core.BoundedProcessOutput;
+import com.github.fracpete.rsync4j.core.Utils;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares passing many sources to rsync as command-line arguments ("argv")
+ * with streaming them via stdin ("stdin", {@code --files-from=- --from0}).
+ * "spawn" measures starting the process, "dryRun" a complete
+ * {@code --dry-run} of the generated files (stdin streamed in the
+ * background) and "executeBounded" the same via
+ * {@link RSync#execute(BoundedProcessOutput)} (stdin redirected from a
+ * temporary file). Run with {@code -prof gc} for
+ * the memory allocated per operation. The largest number of sources stays
+ * below the default command-line limit of Linux (2MB).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourcesBenchmark {
+
+  /** the number of sources. */
+  @Param({"1000", "10000", "25000"})
+  public int sources;
+
+  /** how to pass the sources. */
+  @Param({"argv", "stdin"})
+  public String mode;
+
+  /** the temporary directory. */
+  protected Path tmpDir;
+
+  /** the rsync instance. */
+  protected RSync rsync;
+
+  /** the current process. */
+  protected Process process;
+
+  /**
+   * Generates the files and configures rsync.
+   *
+   * @throws Exception	if generating fails
+   */
+  @Setup(Level.Trial)
+  public void setUpTrial() throws Exception {
+    List<String>	files;
+
+    tmpDir = Files.createTempDirectory("rsync4j-bench-");
+    TreeGenerator.generate(tmpDir.resolve("source"), sources, 1, 1000);
+    try (Stream<Path> paths = Files.walk(tmpDir.resolve("source"))) {
+      files = paths
+	.filter(Files::isRegularFile)
+	.map(Path::toString)
+	.collect(Collectors.toList());
+    }
+    rsync = new RSync()
+      .archive(true)
+      .dryRun(true)
+      .sources(files)
+      .destination(tmpDir.resolve("destination").toString())
+      .stdinThreshold(mode.equals("argv") ? 0 : 1);
+  }
+
+  /**
+   * Removes the generated files.
+   *
+   * @throws Exception	if removing fails
+   */
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws Exception {
+    FileUtils.deleteDirectory(tmpDir.toFile());
+  }
+
+  /**
+   * Starts rsync.
+   *
+   * @return		the process
+   * @throws Exception	if starting fails
+   */
+  @Benchmark
+  public Process spawn() throws Exception {
+    process = rsync.start();
+    return process;
+  }
+
+  /**
+   * Performs a dry-run.
+   *
+   * @return		the exit code
+   * @throws Exception	if the dry-run fails
+   */
+  @Benchmark
+  public int dryRun() throws Exception {
+    return rsync.executeAsync().get().getExitCode();
+  }
+
+  /**
+   * Performs a dry-run via the blocking execute method.
+   *
+   * @return		the exit code
+   * @throws Exception	if the dry-run fails
+   */
+  @Benchmark
+  public int executeBounded() throws Exception {
+    try (BoundedProcessOutput output = rsync.execute(new BoundedProcessOutput())) {
+      return output.getExitCode();
+    }
+  }
+
+  /**
+   * Drains the output of the process started by {@link #spawn()} and waits
+   * for it to finish.
+   *
+   * @throws Exception	if waiting fails
+   */
+  @TearDown(Level.Invocation)
+  public void tearDown() throws Exception {
+    if (process != null) {
+      process.getErrorStream().close();
+      Utils.readFully(process.getInputStream());
+      process.waitFor();
+      process = null;
+    }
+  }
+}
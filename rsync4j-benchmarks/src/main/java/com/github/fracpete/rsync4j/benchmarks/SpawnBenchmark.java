@@ -0,0 +1,115 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SpawnBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.core.Binaries;
+import com.github.fracpete.rsync4j.core.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency between spawning the local rsync/ssh binaries and
+ * receiving the first byte of output. Draining the output and waiting for
+ * the process to finish is not part of the measurement.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpawnBenchmark {
+
+  /** the builder for rsync. */
+  protected ProcessBuilder rsync;
+
+  /** the builder for ssh. */
+  protected ProcessBuilder ssh;
+
+  /** the current process. */
+  protected Process process;
+
+  /**
+   * Sets up the process builders.
+   *
+   * @throws Exception	if failed to determine binaries
+   */
+  @Setup
+  public void setUp() throws Exception {
+    rsync = new ProcessBuilder(Binaries.rsyncBinary(), "--version");
+    rsync.redirectErrorStream(true);
+    // ssh outputs the version on stderr
+    ssh = new ProcessBuilder(Binaries.sshBinary(), "-V");
+    ssh.redirectErrorStream(true);
+  }
+
+  /**
+   * Spawns rsync and reads the first byte.
+   *
+   * @return		the first byte
+   * @throws Exception	if spawning fails
+   */
+  @Benchmark
+  public int rsyncFirstByte() throws Exception {
+    process = rsync.start();
+    return process.getInputStream().read();
+  }
+
+  /**
+   * Spawns ssh and reads the first byte.
+   *
+   * @return		the first byte
+   * @throws Exception	if spawning fails
+   */
+  @Benchmark
+  public int sshFirstByte() throws Exception {
+    process = ssh.start();
+    return process.getInputStream().read();
+  }
+
+  /**
+   * Drains the output of the process and waits for it to finish.
+   *
+   * @throws Exception	if waiting fails
+   */
+  @TearDown(Level.Invocation)
+  public void tearDown() throws Exception {
+    if (process != null) {
+      Utils.readFully(process.getInputStream());
+      process.waitFor();
+      process = null;
+    }
+  }
+}
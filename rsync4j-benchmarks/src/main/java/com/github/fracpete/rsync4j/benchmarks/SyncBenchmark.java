@@ -0,0 +1,127 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SyncBenchmark.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import com.github.fracpete.rsync4j.RSync;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end local-to-local transfers of generated trees into
+ * an empty destination.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyncBenchmark {
+
+  /** the type of tree: many small files or few large ones. */
+  @Param({"many-small", "few-large"})
+  public String tree;
+
+  /** the temporary directory. */
+  protected Path tmpDir;
+
+  /** the source directory. */
+  protected Path source;
+
+  /** the destination directory. */
+  protected Path destination;
+
+  /**
+   * Generates the source tree.
+   *
+   * @throws Exception	if generating fails
+   */
+  @Setup(Level.Trial)
+  public void setUpTrial() throws Exception {
+    tmpDir      = Files.createTempDirectory("rsync4j-bench-");
+    source      = tmpDir.resolve("source");
+    destination = tmpDir.resolve("destination");
+    switch (tree) {
+      case "many-small":
+	TreeGenerator.generate(source, 20000, 4 * 1024, 500);
+	break;
+      case "few-large":
+	TreeGenerator.generate(source, 4, 128 * 1024 * 1024, 4);
+	break;
+      default:
+	throw new IllegalStateException("Unhandled tree: " + tree);
+    }
+  }
+
+  /**
+   * Removes the destination.
+   *
+   * @throws Exception	if removing fails
+   */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() throws Exception {
+    FileUtils.deleteDirectory(destination.toFile());
+  }
+
+  /**
+   * Removes the generated trees.
+   *
+   * @throws Exception	if removing fails
+   */
+  @TearDown(Level.Trial)
+  public void tearDownTrial() throws Exception {
+    FileUtils.deleteDirectory(tmpDir.toFile());
+  }
+
+  /**
+   * Transfers the source tree.
+   *
+   * @return		the exit code
+   * @throws Exception	if the transfer fails
+   */
+  @Benchmark
+  public int sync() throws Exception {
+    return new RSync()
+      .archive(true)
+      .source(source.toString() + "/")
+      .destination(destination.toString())
+      .execute()
+      .getExitCode();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TreeGenerator.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates directory trees with random content for the benchmarks.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TreeGenerator {
+
+  /** the seed for the random content. */
+  public final static long SEED = 42;
+
+  /**
+   * Generates the files, distributed over sub-directories.
+   *
+   * @param root	the directory to create the files in
+   * @param numFiles	the number of files
+   * @param fileSize	the size of each file in bytes
+   * @param filesPerDir	the number of files per sub-directory
+   * @throws IOException	if generating fails
+   */
+  public static void generate(Path root, int numFiles, long fileSize, int filesPerDir) throws IOException {
+    Random	random;
+    byte[]	buffer;
+    Path	dir;
+    long	remaining;
+    int		i;
+
+    random = new Random(SEED);
+    buffer = new byte[(int) Math.min(fileSize, 1024 * 1024)];
+    dir    = null;
+    for (i = 0; i < numFiles; i++) {
+      if (i % filesPerDir == 0) {
+	dir = root.resolve("dir" + (i / filesPerDir));
+	Files.createDirectories(dir);
+      }
+      try (OutputStream out = Files.newOutputStream(dir.resolve("file" + i + ".bin"))) {
+	remaining = fileSize;
+	while (remaining > 0) {
+	  random.nextBytes(buffer);
+	  out.write(buffer, 0, (int) Math.min(remaining, buffer.length));
+	  remaining -= buffer.length;
+	}
+      }
+    }
+  }
+}
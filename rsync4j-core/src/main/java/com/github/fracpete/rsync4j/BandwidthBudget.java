@@ -0,0 +1,481 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BandwidthBudget.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+import com.github.fracpete.rsync4j.core.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares a global bandwidth limit among all concurrently running rsync jobs,
+ * proportional to their weights. Whenever a job starts or finishes, the
+ * shares get recalculated. As rsync cannot change {@code --bwlimit} while
+ * running, jobs whose share changed considerably get terminated and
+ * restarted with the new limit, using {@code --partial} so that the file
+ * being transferred does not start from scratch. To avoid thrashing, jobs
+ * only get restarted after running for a minimum time; pending changes are
+ * applied by periodic checks.
+ * <br>
+ * Jobs are run with {@code --info=progress2}, the achieved throughput is
+ * taken from the progress output.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BandwidthBudget {
+
+  /**
+   * A job managed by the budget.
+   */
+  public static class Job {
+
+    /** the rsync instance. */
+    protected RSync rsync;
+
+    /** the weight. */
+    protected double weight;
+
+    /** the assigned limit (KiB/s). */
+    protected volatile long assigned;
+
+    /** the limit the current process runs with (KiB/s). */
+    protected volatile long running;
+
+    /** the achieved rate (bytes/s). */
+    protected volatile double achieved;
+
+    /** the bytes transferred by previous runs. */
+    protected long previousBytes;
+
+    /** the bytes transferred by the current run. */
+    protected volatile long currentBytes;
+
+    /** the number of restarts. */
+    protected volatile int restarts;
+
+    /** when the current process was started (msec). */
+    protected volatile long started;
+
+    /** the current process. */
+    protected volatile Process process;
+
+    /** whether the process got terminated for restarting. */
+    protected volatile boolean restart;
+
+    /** the future for the result. */
+    protected CompletableFuture<ProcessResult> result;
+
+    /**
+     * Returns the rsync instance.
+     *
+     * @return		the instance
+     */
+    public RSync getRSync() {
+      return rsync;
+    }
+
+    /**
+     * Returns the weight of the job.
+     *
+     * @return		the weight
+     */
+    public double getWeight() {
+      return weight;
+    }
+
+    /**
+     * Returns the share of the budget assigned to the job.
+     *
+     * @return		the throughput in KiB/s
+     */
+    public long getAssigned() {
+      return assigned;
+    }
+
+    /**
+     * Returns the limit the current rsync process is running with.
+     *
+     * @return		the throughput in KiB/s
+     */
+    public long getRunning() {
+      return running;
+    }
+
+    /**
+     * Returns the throughput achieved, as reported by rsync.
+     *
+     * @return		the throughput in KiB/s
+     */
+    public double getAchieved() {
+      return achieved / 1024;
+    }
+
+    /**
+     * Returns the number of bytes transferred so far (across restarts).
+     *
+     * @return		the bytes
+     */
+    public long getBytes() {
+      return previousBytes + currentBytes;
+    }
+
+    /**
+     * Returns the number of restarts due to rebalancing.
+     *
+     * @return		the restarts
+     */
+    public int getRestarts() {
+      return restarts;
+    }
+
+    /**
+     * Returns the future for the result.
+     *
+     * @return		the future
+     */
+    public CompletableFuture<ProcessResult> getResult() {
+      return result;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return rsync.getDestination() + ": assigned=" + assigned + "KiB/s, running=" + running + "KiB/s"
+	+ ", achieved=" + Math.round(getAchieved()) + "KiB/s, restarts=" + restarts;
+    }
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the global limit (KiB/s). */
+  protected long limit;
+
+  /** the relative difference between assigned and running limit that triggers a restart. */
+  protected double tolerance;
+
+  /** the minimum run time before a job gets restarted (msec). */
+  protected long minRunTime;
+
+  /** the active jobs. */
+  protected List<Job> jobs;
+
+  /** runs the jobs. */
+  protected ExecutorService executor;
+
+  /** for the periodic rebalancing. */
+  protected ScheduledExecutorService timer;
+
+  /**
+   * Initializes the budget.
+   *
+   * @param limit	the global limit in KiB/s (like rsync's --bwlimit)
+   */
+  public BandwidthBudget(long limit) {
+    if (limit < 1)
+      throw new IllegalArgumentException("Limit must be at least 1, provided: " + limit);
+
+    this.limit = limit;
+    tolerance  = 0.25;
+    minRunTime = 5000;
+    jobs       = new ArrayList<>();
+    executor   = StreamPump.newExecutor();
+    timer      = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, getClass().getSimpleName());
+      t.setDaemon(true);
+      return t;
+    });
+    timer.scheduleWithFixedDelay(this::rebalance, 1, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Sets the global limit, rebalancing the running jobs.
+   *
+   * @param value	the limit in KiB/s
+   * @return		itself
+   */
+  public BandwidthBudget limit(long value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Limit must be at least 1, provided: " + value);
+    synchronized (this) {
+      limit = value;
+    }
+    rebalance();
+    return this;
+  }
+
+  /**
+   * Returns the global limit.
+   *
+   * @return		the limit in KiB/s
+   */
+  public synchronized long getLimit() {
+    return limit;
+  }
+
+  /**
+   * Sets the relative difference between assigned and running limit above
+   * which a job gets restarted.
+   *
+   * @param value	the tolerance, e.g., 0.25 for 25%
+   * @return		itself
+   */
+  public synchronized BandwidthBudget tolerance(double value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Tolerance cannot be negative, provided: " + value);
+    tolerance = value;
+    return this;
+  }
+
+  /**
+   * Returns the relative difference between assigned and running limit
+   * above which a job gets restarted.
+   *
+   * @return		the tolerance
+   */
+  public synchronized double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Sets the minimum time a process must run before getting restarted.
+   *
+   * @param value	the time in msec
+   * @return		itself
+   */
+  public synchronized BandwidthBudget minRunTime(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Minimum run time cannot be negative, provided: " + value);
+    minRunTime = value;
+    return this;
+  }
+
+  /**
+   * Returns the minimum time a process must run before getting restarted.
+   *
+   * @return		the time in msec
+   */
+  public synchronized long getMinRunTime() {
+    return minRunTime;
+  }
+
+  /**
+   * Submits the job with weight 1.
+   *
+   * @param rsync	the job to run
+   * @return		the job
+   */
+  public Job submit(RSync rsync) {
+    return submit(rsync, 1.0);
+  }
+
+  /**
+   * Submits the job.
+   *
+   * @param rsync	the job to run
+   * @param weight	the weight of the job, for sharing the budget
+   * @return		the job
+   */
+  public Job submit(RSync rsync, double weight) {
+    final Job	job;
+
+    if (weight <= 0)
+      throw new IllegalArgumentException("Weight must be positive, provided: " + weight);
+
+    job        = new Job();
+    job.rsync  = rsync.copy();
+    job.weight = weight;
+    job.result = new CompletableFuture<>();
+    synchronized (this) {
+      jobs.add(job);
+      assign();
+    }
+    executor.execute(() -> run(job));
+    rebalance();
+
+    return job;
+  }
+
+  /**
+   * Calculates the shares of the active jobs.
+   */
+  protected synchronized void assign() {
+    double	total;
+
+    total = 0;
+    for (Job job: jobs)
+      total += job.weight;
+    for (Job job: jobs)
+      job.assigned = Math.max(1, Math.round(limit * job.weight / total));
+  }
+
+  /**
+   * Restarts the jobs whose assigned share differs too much from the limit
+   * they are running with.
+   */
+  protected void rebalance() {
+    long	now;
+    Process	process;
+
+    now = System.currentTimeMillis();
+    synchronized (this) {
+      assign();
+      for (Job job: jobs) {
+	process = job.process;
+	if ((process == null) || job.restart)
+	  continue;
+	if (Math.abs(job.assigned - job.running) <= tolerance * job.running)
+	  continue;
+	if (now - job.started < minRunTime)
+	  continue;
+	job.restart = true;
+	// SIGTERM allows rsync to keep the partial file
+	process.destroy();
+      }
+    }
+  }
+
+  /**
+   * Reads the stderr of the process in the background.
+   *
+   * @param process	the process to read from
+   * @return		the future for the stderr output
+   */
+  protected CompletableFuture<String> readStdErr(Process process) {
+    return CompletableFuture.supplyAsync(() -> Utils.readFully(process.getErrorStream()), executor);
+  }
+
+  /**
+   * Runs the job, restarting it with a new limit whenever requested.
+   *
+   * @param job		the job to run
+   */
+  protected void run(Job job) {
+    final StringBuilder		stdout;
+    ProgressMonitor		monitor;
+    CompletableFuture<String>	stderr;
+    Process			process;
+    RSync			copy;
+    int				exitCode;
+
+    stdout = new StringBuilder();
+    try {
+      while (true) {
+	synchronized (this) {
+	  job.running = job.assigned;
+	  job.restart = false;
+	}
+	copy = job.rsync.copy()
+	  .bwlimit("" + job.running)
+	  .partial(true)
+	  .info(job.rsync.getInfo().isEmpty() ? "progress2" : job.rsync.getInfo() + ",progress2");
+	monitor = new ProgressMonitor(e -> {
+	  job.achieved     = e.getRate();
+	  job.currentBytes = e.getBytes();
+	});
+	monitor.lineListener(l -> stdout.append(l).append("\n"));
+	process      = copy.start();
+	job.started  = System.currentTimeMillis();
+	job.process  = process;
+	stderr       = readStdErr(process);
+	monitor.process(process.getInputStream());
+	exitCode     = process.waitFor();
+	job.process  = null;
+	if (job.restart) {
+	  job.restarts++;
+	  job.previousBytes += job.currentBytes;
+	  job.currentBytes   = 0;
+	  logger.fine("Restarting " + job.rsync.getDestination() + " with " + job.assigned + "KiB/s");
+	  continue;
+	}
+	job.result.complete(new ProcessResult(exitCode, stdout.toString(), stderr.join(), false));
+	break;
+      }
+    }
+    catch (Exception e) {
+      logger.log(Level.SEVERE, "Failed to run rsync", e);
+      if (job.process != null)
+	Utils.destroy(job.process);
+      job.result.completeExceptionally(e);
+    }
+    finally {
+      synchronized (this) {
+	jobs.remove(job);
+      }
+      rebalance();
+    }
+  }
+
+  /**
+   * Returns the active jobs.
+   *
+   * @return		the jobs
+   */
+  public synchronized List<Job> getJobs() {
+    return new ArrayList<>(jobs);
+  }
+
+  /**
+   * Returns the total throughput achieved by the active jobs.
+   *
+   * @return		the throughput in KiB/s
+   */
+  public synchronized double getAchieved() {
+    double	result;
+
+    result = 0;
+    for (Job job: jobs)
+      result += job.getAchieved();
+
+    return result;
+  }
+
+  /**
+   * Stops the periodic rebalancing, running jobs still complete.
+   */
+  public void shutdown() {
+    timer.shutdown();
+    executor.shutdown();
+  }
+
+  /**
+   * Returns a short summary.
+   *
+   * @return		the summary
+   */
+  @Override
+  public synchronized String toString() {
+    return "limit=" + limit + "KiB/s, jobs=" + jobs.size() + ", achieved=" + Math.round(getAchieved()) + "KiB/s";
+  }
+}
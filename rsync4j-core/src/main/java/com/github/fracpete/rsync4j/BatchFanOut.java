@@ -0,0 +1,503 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BatchFanOut.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * Pushes the same changes to many identical replicas: the delta gets
+ * computed once against a reference replica using {@code --write-batch}
+ * (or {@code --only-write-batch}), then applied to all targets
+ * concurrently using {@code --read-batch}, limited by a
+ * {@link TransferScheduler}. Targets that fail to apply the batch, e.g.,
+ * because they diverged from the reference, fall back to a normal transfer.
+ * <br>
+ * The rsync instance supplies sources, options and the reference replica
+ * (destination).
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BatchFanOut {
+
+  /**
+   * The outcome for a single target.
+   */
+  public static class TargetResult {
+
+    /** the destination. */
+    protected String destination;
+
+    /** the result of applying the batch. */
+    protected ProcessResult batchResult;
+
+    /** the result of the normal transfer, null if not required. */
+    protected ProcessResult fallbackResult;
+
+    /** the exception, if failed to run. */
+    protected Throwable error;
+
+    /** the elapsed time (nanoseconds). */
+    protected long time;
+
+    /**
+     * Returns the destination.
+     *
+     * @return		the destination
+     */
+    public String getDestination() {
+      return destination;
+    }
+
+    /**
+     * Returns the result of applying the batch.
+     *
+     * @return		the result, null if the batch was not applied
+     */
+    public ProcessResult getBatchResult() {
+      return batchResult;
+    }
+
+    /**
+     * Returns whether a normal transfer was performed.
+     *
+     * @return		true if fallen back
+     */
+    public boolean isFallback() {
+      return (fallbackResult != null);
+    }
+
+    /**
+     * Returns the result of the normal transfer.
+     *
+     * @return		the result, null if not required
+     */
+    public ProcessResult getFallbackResult() {
+      return fallbackResult;
+    }
+
+    /**
+     * Returns the exception if running rsync failed.
+     *
+     * @return		the exception, null if none
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    /**
+     * Returns whether the target is up to date.
+     *
+     * @return		true if successful
+     */
+    public boolean isSuccess() {
+      if (fallbackResult != null)
+	return fallbackResult.hasSucceeded();
+      return (batchResult != null) && batchResult.hasSucceeded();
+    }
+
+    /**
+     * Returns the time from submitting the target until it was done,
+     * including waiting for a free slot.
+     *
+     * @return		the time in milliseconds
+     */
+    public double getTime() {
+      return time / 1000000.0;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return destination + ": success=" + isSuccess() + ", fallback=" + isFallback() + ", time=" + getTime() + "ms"
+	+ ((error == null) ? "" : ", error=" + error);
+    }
+  }
+
+  /**
+   * The outcome of the fan-out.
+   */
+  public static class Result {
+
+    /** the result of writing the batch. */
+    protected ProcessResult batchResult;
+
+    /** the time writing the batch took (nanoseconds). */
+    protected long batchTime;
+
+    /** the results of the targets. */
+    protected List<TargetResult> targets;
+
+    /**
+     * Returns the result of writing the batch.
+     *
+     * @return		the result
+     */
+    public ProcessResult getBatchResult() {
+      return batchResult;
+    }
+
+    /**
+     * Returns the time writing the batch took.
+     *
+     * @return		the time in milliseconds
+     */
+    public double getBatchTime() {
+      return batchTime / 1000000.0;
+    }
+
+    /**
+     * Returns the results of the targets, in the order they were added.
+     *
+     * @return		the results
+     */
+    public List<TargetResult> getTargets() {
+      return targets;
+    }
+
+    /**
+     * Returns whether all targets are up to date.
+     *
+     * @return		true if all successful
+     */
+    public boolean isSuccess() {
+      return targets.stream().allMatch(TargetResult::isSuccess);
+    }
+
+    /**
+     * Returns the number of targets that required a normal transfer.
+     *
+     * @return		the number of fallbacks
+     */
+    public int getNumFallbacks() {
+      return (int) targets.stream().filter(TargetResult::isFallback).count();
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "batch=" + ((batchResult == null) ? "-" : "" + batchResult.getExitCode()) + " in " + getBatchTime() + "ms"
+	+ ", targets=" + targets.size()
+	+ ", failed=" + targets.stream().filter(t -> !t.isSuccess()).count()
+	+ ", fallbacks=" + getNumFallbacks();
+    }
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the rsync instance with sources, options and reference replica. */
+  protected RSync rsync;
+
+  /** the targets. */
+  protected List<String> targets;
+
+  /** the maximum number of concurrent processes. */
+  protected int maxConcurrent;
+
+  /** the maximum number of concurrent processes per host. */
+  protected int maxPerHost;
+
+  /** whether to update the reference replica when writing the batch. */
+  protected boolean updateReference;
+
+  /** whether to fall back to a normal transfer. */
+  protected boolean fallback;
+
+  /** the directory for the batch file, null for the temp directory. */
+  protected Path batchDir;
+
+  /**
+   * Initializes the fan-out.
+   *
+   * @param rsync	the rsync instance with sources, options and the reference replica as destination
+   */
+  public BatchFanOut(RSync rsync) {
+    if (rsync.getSources().isEmpty() || (rsync.getDestination() == null))
+      throw new IllegalArgumentException("Sources and reference replica (destination) required!");
+
+    this.rsync      = rsync.copy();
+    targets         = new ArrayList<>();
+    maxConcurrent   = 8;
+    maxPerHost      = 8;
+    updateReference = true;
+    fallback        = true;
+    batchDir        = null;
+  }
+
+  /**
+   * Adds the target replica.
+   *
+   * @param destination	the destination, e.g., "user@host:/some/where/"
+   * @return		itself
+   */
+  public BatchFanOut target(String destination) {
+    targets.add(destination);
+    return this;
+  }
+
+  /**
+   * Adds the target replicas.
+   *
+   * @param destinations	the destinations
+   * @return		itself
+   */
+  public BatchFanOut targets(List<String> destinations) {
+    targets.addAll(destinations);
+    return this;
+  }
+
+  /**
+   * Returns the target replicas.
+   *
+   * @return		the destinations
+   */
+  public List<String> getTargets() {
+    return Collections.unmodifiableList(targets);
+  }
+
+  /**
+   * Sets the maximum number of targets updated concurrently.
+   *
+   * @param value	the maximum
+   * @return		itself
+   */
+  public BatchFanOut maxConcurrent(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum number of concurrent processes must be at least 1, provided: " + value);
+    maxConcurrent = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of targets updated concurrently.
+   *
+   * @return		the maximum
+   */
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * Sets the maximum number of targets on the same host updated concurrently.
+   *
+   * @param value	the maximum
+   * @return		itself
+   */
+  public BatchFanOut maxPerHost(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum number of processes per host must be at least 1, provided: " + value);
+    maxPerHost = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of targets on the same host updated concurrently.
+   *
+   * @return		the maximum
+   */
+  public int getMaxPerHost() {
+    return maxPerHost;
+  }
+
+  /**
+   * Sets whether the reference replica gets updated while writing the batch
+   * ({@code --write-batch}) or left untouched ({@code --only-write-batch}).
+   *
+   * @param value	true to update
+   * @return		itself
+   */
+  public BatchFanOut updateReference(boolean value) {
+    updateReference = value;
+    return this;
+  }
+
+  /**
+   * Returns whether the reference replica gets updated while writing the batch.
+   *
+   * @return		true if updated
+   */
+  public boolean isUpdateReference() {
+    return updateReference;
+  }
+
+  /**
+   * Sets whether targets that fail to apply the batch get a normal transfer.
+   *
+   * @param value	true to fall back
+   * @return		itself
+   */
+  public BatchFanOut fallback(boolean value) {
+    fallback = value;
+    return this;
+  }
+
+  /**
+   * Returns whether targets that fail to apply the batch get a normal transfer.
+   *
+   * @return		true to fall back
+   */
+  public boolean isFallback() {
+    return fallback;
+  }
+
+  /**
+   * Sets the directory to store the batch file in.
+   *
+   * @param value	the directory, null for the temp directory
+   * @return		itself
+   */
+  public BatchFanOut batchDir(Path value) {
+    batchDir = value;
+    return this;
+  }
+
+  /**
+   * Returns the directory to store the batch file in.
+   *
+   * @return		the directory, null for the temp directory
+   */
+  public Path getBatchDir() {
+    return batchDir;
+  }
+
+  /**
+   * Updates the target, falling back to a normal transfer if required.
+   *
+   * @param scheduler	the scheduler to use
+   * @param target	the target to update
+   * @param batch	the batch file, null if writing the batch failed
+   * @return		the future for the result
+   */
+  protected CompletableFuture<TargetResult> update(TransferScheduler scheduler, String target, Path batch) {
+    final TargetResult	result;
+    final long		start;
+    RSync		read;
+
+    result             = new TargetResult();
+    result.destination = target;
+    start              = System.nanoTime();
+
+    if (batch == null) {
+      return normal(scheduler, result).whenComplete((r, t) -> result.time = System.nanoTime() - start);
+    }
+    else {
+      read = rsync.copy()
+	.sources(new ArrayList<>())
+	.readBatch(batch.toString())
+	.destination(target);
+      return scheduler.submit(read)
+	.thenCompose(r -> {
+	  result.batchResult = r;
+	  if (r.hasSucceeded() || !fallback)
+	    return CompletableFuture.completedFuture(result);
+	  logger.info("Applying batch to " + target + " failed (exit code " + r.getExitCode() + "), falling back to normal transfer");
+	  return normal(scheduler, result);
+	})
+	.exceptionally(t -> {
+	  result.error = t;
+	  return result;
+	})
+	.whenComplete((r, t) -> result.time = System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Performs a normal transfer for the target.
+   *
+   * @param scheduler	the scheduler to use
+   * @param result	the result to update
+   * @return		the future for the result
+   */
+  protected CompletableFuture<TargetResult> normal(TransferScheduler scheduler, TargetResult result) {
+    return scheduler.submit(rsync.copy().destination(result.destination))
+      .thenApply(r -> {
+	result.fallbackResult = r;
+	return result;
+      })
+      .exceptionally(t -> {
+	result.error = t;
+	return result;
+      });
+  }
+
+  /**
+   * Writes the batch and applies it to all targets.
+   *
+   * @return		the results
+   * @throws Exception	if creating the batch file fails or interrupted
+   */
+  public Result execute() throws Exception {
+    Result					result;
+    TransferScheduler				scheduler;
+    List<CompletableFuture<TargetResult>>	futures;
+    Path					batch;
+    RSync					write;
+    long					start;
+
+    result    = new Result();
+    scheduler = new TransferScheduler(maxConcurrent, maxPerHost);
+    batch     = (batchDir == null) ? Files.createTempFile("rsync4j-", ".batch") : Files.createTempFile(batchDir, "rsync4j-", ".batch");
+    try {
+      write = rsync.copy();
+      if (updateReference)
+	write.writeBatch(batch.toString());
+      else
+	write.onlyWriteBatch(batch.toString());
+      start              = System.nanoTime();
+      result.batchResult = scheduler.submit(write).get();
+      result.batchTime   = System.nanoTime() - start;
+      if (!result.batchResult.hasSucceeded())
+	logger.warning("Writing batch failed (exit code " + result.batchResult.getExitCode() + "): " + result.batchResult.getStdErr());
+
+      futures = new ArrayList<>();
+      for (String target: targets)
+	futures.add(update(scheduler, target, result.batchResult.hasSucceeded() ? batch : null));
+      result.targets = new ArrayList<>();
+      for (CompletableFuture<TargetResult> future: futures)
+	result.targets.add(future.join());
+      result.targets = Collections.unmodifiableList(result.targets);
+    }
+    finally {
+      scheduler.shutdown();
+      Files.deleteIfExists(batch);
+      Files.deleteIfExists(Paths.get(batch + ".sh"));
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,681 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ContinuousSync.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+import com.github.fracpete.rsync4j.core.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a destination in sync with a local source directory by watching the
+ * source for changes rather than rescanning it periodically. Change events
+ * are coalesced until no new events arrived within the debounce window (or
+ * the maximum delay has passed), then all changed paths get transferred in a
+ * single rsync run using {@code --files-from}. Paths that
+ * no longer exist get deleted in the destination if the rsync instance has
+ * delete enabled ({@code --delete-missing-args}), otherwise ignored.
+ * <br>
+ * If the watch service loses events (overflow) or a batch grows beyond the
+ * maximum size, a full sync with the original options is performed instead.
+ * <br>
+ * The rsync instance must have a single local source directory.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ContinuousSync {
+
+  /**
+   * A batch of changes that got transferred.
+   */
+  public static class Batch {
+
+    /** the relative paths, empty for full sync. */
+    protected List<String> paths;
+
+    /** whether it was a full sync. */
+    protected boolean fullSync;
+
+    /** the number of watch events coalesced. */
+    protected int numEvents;
+
+    /** the time of the first event (nanoseconds). */
+    protected long firstEvent;
+
+    /** the latency from first event to completion (nanoseconds). */
+    protected long latency;
+
+    /** the result of the rsync run. */
+    protected ProcessResult result;
+
+    /** the exception if running rsync failed. */
+    protected Exception error;
+
+    /**
+     * Returns the paths, relative to the source directory.
+     *
+     * @return		the paths, empty for full sync
+     */
+    public List<String> getPaths() {
+      return paths;
+    }
+
+    /**
+     * Returns whether a full sync was performed.
+     *
+     * @return		true if full sync
+     */
+    public boolean isFullSync() {
+      return fullSync;
+    }
+
+    /**
+     * Returns the number of watch events that went into the batch.
+     *
+     * @return		the number of events
+     */
+    public int getNumEvents() {
+      return numEvents;
+    }
+
+    /**
+     * Returns the time between the first event and completion of the transfer.
+     *
+     * @return		the latency in milliseconds
+     */
+    public double getLatency() {
+      return latency / 1000000.0;
+    }
+
+    /**
+     * Returns the result of the rsync run.
+     *
+     * @return		the result, null if failed to run
+     */
+    public ProcessResult getResult() {
+      return result;
+    }
+
+    /**
+     * Returns the exception if running rsync failed.
+     *
+     * @return		the exception, null if none
+     */
+    public Exception getError() {
+      return error;
+    }
+
+    /**
+     * Returns whether the transfer succeeded.
+     *
+     * @return		true if successful
+     */
+    public boolean isSuccess() {
+      return (result != null) && result.hasSucceeded();
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return (fullSync ? "full sync" : paths.size() + " path(s)") + ", events=" + numEvents + ", latency=" + getLatency() + "ms"
+	+ ", exit=" + ((result == null) ? "-" : "" + result.getExitCode());
+    }
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the rsync instance to use as template. */
+  protected RSync rsync;
+
+  /** the source directory. */
+  protected Path root;
+
+  /** the debounce window (milliseconds). */
+  protected long debounce;
+
+  /** the maximum delay before a batch gets sent (milliseconds). */
+  protected long maxDelay;
+
+  /** the maximum number of paths in a batch before switching to full sync. */
+  protected int maxBatchSize;
+
+  /** whether to perform a full sync when starting. */
+  protected boolean initialSync;
+
+  /** the listeners. */
+  protected List<Consumer<Batch>> listeners;
+
+  /** the watch service. */
+  protected WatchService watcher;
+
+  /** the watched directories. */
+  protected Map<WatchKey,Path> keys;
+
+  /** the thread processing the watch events. */
+  protected Thread thread;
+
+  /** runs the batches one after the other. */
+  protected ExecutorService runner;
+
+  /** completes the futures of the processes. */
+  protected ExecutorService drainer;
+
+  /** the paths changed since the last batch. */
+  protected Set<String> pending;
+
+  /** whether a full sync is due. */
+  protected boolean pendingFull;
+
+  /** the number of events since the last batch. */
+  protected int pendingEvents;
+
+  /** the time of the first event since the last batch (nanoseconds). */
+  protected long firstEvent;
+
+  /** the time of the last event (nanoseconds). */
+  protected long lastEvent;
+
+  /** the number of batches waiting to be run. */
+  protected int numQueued;
+
+  /** the number of completed batches. */
+  protected long numBatches;
+
+  /** the number of full syncs. */
+  protected long numFullSyncs;
+
+  /** the number of events in completed batches. */
+  protected long numEvents;
+
+  /** the accumulated latency (nanoseconds). */
+  protected long totalLatency;
+
+  /** the maximum latency (nanoseconds). */
+  protected long maxLatency;
+
+  /**
+   * Initializes the service.
+   *
+   * @param rsync	the rsync instance with source directory, destination and options
+   */
+  public ContinuousSync(RSync rsync) {
+    if (rsync.getSources().size() != 1)
+      throw new IllegalArgumentException("Exactly one source directory required, provided: " + rsync.getSources());
+    if (TransferScheduler.parseHost(rsync.getSources().get(0)) != null)
+      throw new IllegalArgumentException("Source must be local: " + rsync.getSources().get(0));
+
+    this.rsync   = rsync.copy();
+    root         = Paths.get(rsync.getSources().get(0)).toAbsolutePath().normalize();
+    debounce     = 1000;
+    maxDelay     = 30000;
+    maxBatchSize = 100000;
+    initialSync  = true;
+    listeners    = new ArrayList<>();
+    pending      = new LinkedHashSet<>();
+  }
+
+  /**
+   * Sets the time without new events after which a batch gets sent.
+   *
+   * @param value	the window in milliseconds
+   * @return		itself
+   */
+  public ContinuousSync debounce(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Debounce window cannot be negative, provided: " + value);
+    debounce = value;
+    return this;
+  }
+
+  /**
+   * Returns the time without new events after which a batch gets sent.
+   *
+   * @return		the window in milliseconds
+   */
+  public long getDebounce() {
+    return debounce;
+  }
+
+  /**
+   * Sets the maximum time between the first event and sending the batch,
+   * in case of a constant stream of events.
+   *
+   * @param value	the delay in milliseconds
+   * @return		itself
+   */
+  public ContinuousSync maxDelay(long value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum delay must be at least 1, provided: " + value);
+    maxDelay = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum time between the first event and sending the batch.
+   *
+   * @return		the delay in milliseconds
+   */
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Sets the maximum number of paths in a batch, beyond which a full sync
+   * gets performed instead.
+   *
+   * @param value	the maximum
+   * @return		itself
+   */
+  public ContinuousSync maxBatchSize(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum batch size must be at least 1, provided: " + value);
+    maxBatchSize = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of paths in a batch.
+   *
+   * @return		the maximum
+   */
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Sets whether to perform a full sync when starting.
+   *
+   * @param value	true for initial sync
+   * @return		itself
+   */
+  public ContinuousSync initialSync(boolean value) {
+    initialSync = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to perform a full sync when starting.
+   *
+   * @return		true for initial sync
+   */
+  public boolean isInitialSync() {
+    return initialSync;
+  }
+
+  /**
+   * Adds the listener to be notified whenever a batch completed.
+   *
+   * @param listener	the listener to add
+   * @return		itself
+   */
+  public ContinuousSync addListener(Consumer<Batch> listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Removes the listener.
+   *
+   * @param listener	the listener to remove
+   * @return		itself
+   */
+  public ContinuousSync removeListener(Consumer<Batch> listener) {
+    listeners.remove(listener);
+    return this;
+  }
+
+  /**
+   * Registers the directory and all its sub-directories.
+   *
+   * @param dir		the directory to register
+   * @param paths	for adding the content to (relative paths), null to ignore
+   * @throws IOException	if registering fails
+   */
+  protected void register(Path dir, Set<String> paths) throws IOException {
+    Iterator<Path>	iter;
+    Path		path;
+
+    // directories get registered before their content is listed, so that
+    // nothing created in the meantime gets lost
+    try (Stream<Path> walk = Files.walk(dir)) {
+      iter = walk.iterator();
+      while (iter.hasNext()) {
+	path = iter.next();
+	if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+	  keys.put(path.register(watcher,
+	    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), path);
+	}
+	if ((paths != null) && !path.equals(dir))
+	  paths.add(relativize(path));
+      }
+    }
+  }
+
+  /**
+   * Turns the path into one relative to the source directory.
+   *
+   * @param path	the path
+   * @return		the relative path, using forward slashes
+   */
+  protected String relativize(Path path) {
+    return root.relativize(path).toString().replace(File.separatorChar, '/');
+  }
+
+  /**
+   * Starts watching the source directory.
+   *
+   * @return		itself
+   * @throws IOException	if failed to register the directories
+   */
+  public synchronized ContinuousSync start() throws IOException {
+    if (thread != null)
+      throw new IllegalStateException("Already started!");
+
+    watcher = FileSystems.getDefault().newWatchService();
+    keys    = new HashMap<>();
+    runner  = Executors.newSingleThreadExecutor();
+    drainer = StreamPump.newExecutor();
+    register(root, null);
+    if (initialSync) {
+      pendingFull = true;
+      firstEvent  = System.nanoTime();
+      flush();
+    }
+    thread = new Thread(this::watch, getClass().getSimpleName() + "-" + root.getFileName());
+    thread.setDaemon(true);
+    thread.start();
+
+    return this;
+  }
+
+  /**
+   * Processes the watch events until stopped.
+   */
+  protected void watch() {
+    WatchKey	key;
+    long	timeout;
+    long	now;
+
+    try {
+      while (true) {
+	synchronized (this) {
+	  now = System.nanoTime();
+	  if (pendingFull || !pending.isEmpty()) {
+	    timeout = Math.min(
+	      TimeUnit.MILLISECONDS.toNanos(debounce) - (now - lastEvent),
+	      TimeUnit.MILLISECONDS.toNanos(maxDelay) - (now - firstEvent));
+	    if (timeout <= 0) {
+	      flush();
+	      continue;
+	    }
+	  }
+	  else {
+	    timeout = -1;
+	  }
+	}
+	key = (timeout < 0) ? watcher.take() : watcher.poll(timeout, TimeUnit.NANOSECONDS);
+	if (key != null)
+	  process(key);
+      }
+    }
+    catch (ClosedWatchServiceException | InterruptedException e) {
+      // stopped
+    }
+  }
+
+  /**
+   * Processes the events of the key.
+   *
+   * @param key		the key to process
+   */
+  protected synchronized void process(WatchKey key) {
+    Path	dir;
+    Path	child;
+
+    dir = keys.get(key);
+    for (WatchEvent<?> event: key.pollEvents()) {
+      if ((pendingEvents == 0) && !pendingFull)
+	firstEvent = System.nanoTime();
+      lastEvent = System.nanoTime();
+      pendingEvents++;
+      if ((event.kind() == StandardWatchEventKinds.OVERFLOW) || (dir == null)) {
+	pendingFull = true;
+	continue;
+      }
+      child = dir.resolve((Path) event.context());
+      pending.add(relativize(child));
+      // new directory: watch it and transfer what got created before registration
+      if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE) && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+	try {
+	  register(child, pending);
+	}
+	catch (IOException e) {
+	  logger.log(Level.WARNING, "Failed to watch directory: " + child, e);
+	  pendingFull = true;
+	}
+      }
+    }
+    if (!key.reset())
+      keys.remove(key);
+    if (pending.size() > maxBatchSize)
+      pendingFull = true;
+  }
+
+  /**
+   * Queues the pending changes as batch.
+   */
+  protected synchronized void flush() {
+    final Batch	batch;
+
+    batch            = new Batch();
+    batch.fullSync   = pendingFull;
+    batch.paths      = pendingFull ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(pending));
+    batch.numEvents  = pendingEvents;
+    batch.firstEvent = firstEvent;
+    pending.clear();
+    pendingFull   = false;
+    pendingEvents = 0;
+    numQueued++;
+    runner.execute(() -> run(batch));
+  }
+
+  /**
+   * Transfers the batch.
+   *
+   * @param batch	the batch to transfer
+   */
+  protected void run(Batch batch) {
+    RSync	copy;
+    Path	list;
+
+    list = null;
+    try {
+      copy = rsync;
+      if (!batch.fullSync) {
+	list = Utils.writeFileList(batch.paths, FileStateIndex.isFrom0(rsync));
+	// the batch contains the content of new directories already
+	copy = FileStateIndex.restrict(rsync, list);
+      }
+      batch.result = copy.executeAsync(drainer).get();
+      if (!batch.result.hasSucceeded())
+	logger.warning("rsync exited with " + batch.result.getExitCode() + ": " + batch.result.getStdErr());
+    }
+    catch (Exception e) {
+      batch.error = e;
+      logger.log(Level.SEVERE, "Failed to run rsync", e);
+    }
+    finally {
+      if (list != null) {
+	try {
+	  Files.deleteIfExists(list);
+	}
+	catch (IOException e) {
+	  // ignored
+	}
+      }
+    }
+    batch.latency = System.nanoTime() - batch.firstEvent;
+
+    synchronized (this) {
+      numQueued--;
+      numBatches++;
+      if (batch.fullSync)
+	numFullSyncs++;
+      numEvents    += batch.numEvents;
+      totalLatency += batch.latency;
+      maxLatency    = Math.max(maxLatency, batch.latency);
+    }
+    for (Consumer<Batch> listener: listeners)
+      listener.accept(batch);
+  }
+
+  /**
+   * Stops watching, waiting for queued batches to finish.
+   *
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public void stop() throws InterruptedException {
+    synchronized (this) {
+      if (thread == null)
+	return;
+      try {
+	watcher.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+    }
+    thread.join();
+    runner.shutdown();
+    runner.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    drainer.shutdown();
+    synchronized (this) {
+      thread = null;
+    }
+  }
+
+  /**
+   * Returns whether the service is running.
+   *
+   * @return		true if running
+   */
+  public synchronized boolean isRunning() {
+    return (thread != null);
+  }
+
+  /**
+   * Returns the number of changed paths not yet queued plus the number of
+   * queued batches not yet completed.
+   *
+   * @return		the queue depth
+   */
+  public synchronized int getQueueDepth() {
+    return pending.size() + numQueued;
+  }
+
+  /**
+   * Returns the number of completed batches.
+   *
+   * @return		the number of batches
+   */
+  public synchronized long getNumBatches() {
+    return numBatches;
+  }
+
+  /**
+   * Returns the number of full syncs among the completed batches.
+   *
+   * @return		the number of full syncs
+   */
+  public synchronized long getNumFullSyncs() {
+    return numFullSyncs;
+  }
+
+  /**
+   * Returns the average number of watch events per batch.
+   *
+   * @return		the average
+   */
+  public synchronized double getAverageEventsPerBatch() {
+    return (numBatches == 0) ? 0 : (double) numEvents / numBatches;
+  }
+
+  /**
+   * Returns the average latency from the first event to completion of the batch.
+   *
+   * @return		the latency in milliseconds
+   */
+  public synchronized double getAverageLatency() {
+    return (numBatches == 0) ? 0 : totalLatency / numBatches / 1000000.0;
+  }
+
+  /**
+   * Returns the maximum latency from the first event to completion of the batch.
+   *
+   * @return		the latency in milliseconds
+   */
+  public synchronized double getMaxLatency() {
+    return maxLatency / 1000000.0;
+  }
+
+  /**
+   * Returns a short description of the state.
+   *
+   * @return		the description
+   */
+  @Override
+  public synchronized String toString() {
+    return "root=" + root + ", running=" + (thread != null) + ", queue=" + getQueueDepth() + ", batches=" + numBatches
+      + ", full=" + numFullSyncs + ", events/batch=" + getAverageEventsPerBatch() + ", latency=" + getAverageLatency() + "ms";
+  }
+}
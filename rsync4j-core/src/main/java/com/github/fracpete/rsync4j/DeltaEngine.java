@@ -0,0 +1,967 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * DeltaEngine.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Updates a local file using rsync's delta algorithm: the existing file
+ * (the basis) is split into blocks, which get signed with a weak rolling
+ * checksum and a strong hash; the new file is then scanned for these blocks,
+ * only copying the data that does not match. Both files are memory-mapped,
+ * signing the blocks and scanning the new file happen in parallel.
+ * <br>
+ * With {@link #inplace(boolean)}, the target file gets updated directly and
+ * only changed blocks get written. Otherwise, the new file is assembled in a
+ * temporary file that replaces the target afterwards.
+ * <br>
+ * The Java runtime only offers MD5 and SHA-1 of the strong hashes supported
+ * by rsync, any other {@code --checksum-choice} (e.g., xxh64, md4) uses MD5.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class DeltaEngine {
+
+  /** the minimum block size used by rsync. */
+  public final static int MIN_BLOCK_SIZE = 700;
+
+  /** the maximum block size used by rsync. */
+  public final static int MAX_BLOCK_SIZE = 128 * 1024;
+
+  /** the size of the buffers for copying data. */
+  public final static int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The statistics of updating a file.
+   */
+  public static class Result {
+
+    /** the data that had to be copied from the new file. */
+    protected long literalData;
+
+    /** the data that was matched in the basis file. */
+    protected long matchedData;
+
+    /** the number of bytes written. */
+    protected long bytesWritten;
+
+    /**
+     * Returns the amount of data that had to be copied from the new file.
+     *
+     * @return		the bytes
+     */
+    public long getLiteralData() {
+      return literalData;
+    }
+
+    /**
+     * Returns the amount of data that was matched in the basis file.
+     *
+     * @return		the bytes
+     */
+    public long getMatchedData() {
+      return matchedData;
+    }
+
+    /**
+     * Returns the number of bytes that were written to disk.
+     *
+     * @return		the bytes
+     */
+    public long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    /**
+     * Returns the statistics in the same form as rsync's {@code --stats}.
+     *
+     * @param totalSize	the size of the file
+     * @return		the statistics
+     */
+    public TransferStats toStats(long totalSize) {
+      TransferStats	result;
+
+      result                          = new TransferStats();
+      result.numFiles                 = 1;
+      result.numTransferredFiles      = 1;
+      result.totalFileSize            = totalSize;
+      result.totalTransferredFileSize = totalSize;
+      result.literalData              = literalData;
+      result.matchedData              = matchedData;
+      result.totalBytesSent           = literalData;
+      result.totalBytesReceived       = 0;
+      result.speedup                  = (double) totalSize / Math.max(1, literalData);
+
+      return result;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "literal=" + literalData + ", matched=" + matchedData + ", written=" + bytesWritten;
+    }
+  }
+
+  /**
+   * Read-only access to a file via (possibly several) memory-mapped regions.
+   */
+  protected static class MappedFile
+    implements AutoCloseable {
+
+    /** the number of bits for the size of a region. */
+    protected final static int REGION_BITS = 30;
+
+    /** the mask for the offset within a region. */
+    protected final static long REGION_MASK = (1L << REGION_BITS) - 1;
+
+    /** the channel. */
+    protected FileChannel channel;
+
+    /** the mapped regions. */
+    protected MappedByteBuffer[] regions;
+
+    /** the size of the file. */
+    protected long size;
+
+    /**
+     * Maps the file.
+     *
+     * @param file	the file to map
+     * @throws IOException	if mapping fails
+     */
+    public MappedFile(Path file) throws IOException {
+      long	start;
+      int	i;
+
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+      size    = channel.size();
+      regions = new MappedByteBuffer[(int) ((size + REGION_MASK) >>> REGION_BITS)];
+      for (i = 0; i < regions.length; i++) {
+	start      = (long) i << REGION_BITS;
+	regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << REGION_BITS));
+      }
+    }
+
+    /**
+     * Returns the unsigned byte at the position.
+     *
+     * @param pos	the position
+     * @return		the byte
+     */
+    public int get(long pos) {
+      return regions[(int) (pos >>> REGION_BITS)].get((int) (pos & REGION_MASK)) & 0xFF;
+    }
+
+    /**
+     * Reads the bytes.
+     *
+     * @param pos	the position in the file
+     * @param dst	the array to read into
+     * @param offset	the offset in the array
+     * @param len	the number of bytes to read
+     */
+    public void read(long pos, byte[] dst, int offset, int len) {
+      ByteBuffer	buffer;
+      int		n;
+
+      while (len > 0) {
+	// via ByteBuffer, MappedByteBuffer.duplicate() only exists since Java 17
+	buffer = ((ByteBuffer) regions[(int) (pos >>> REGION_BITS)]).duplicate();
+	buffer.position((int) (pos & REGION_MASK));
+	n = Math.min(len, buffer.remaining());
+	buffer.get(dst, offset, n);
+	pos    += n;
+	offset += n;
+	len    -= n;
+      }
+    }
+
+    /**
+     * Closes the channel, the mapped regions get released by the garbage collector.
+     *
+     * @throws IOException	if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /**
+   * A copy of either new data or of a block from the basis file.
+   */
+  protected static class Op {
+
+    /** whether the data comes from the basis file. */
+    protected boolean matched;
+
+    /** the offset in the source (new or basis) file. */
+    protected long offset;
+
+    /** the length. */
+    protected long length;
+
+    /**
+     * Initializes the operation.
+     *
+     * @param matched	true if data from the basis file
+     * @param offset	the offset in the source file
+     * @param length	the length
+     */
+    protected Op(boolean matched, long offset, long length) {
+      this.matched = matched;
+      this.offset  = offset;
+      this.length  = length;
+    }
+  }
+
+  /**
+   * The signatures of the blocks of the basis file.
+   */
+  protected static class Signatures {
+
+    /** the block size. */
+    protected int blockSize;
+
+    /** the number of blocks (incl. the last partial one). */
+    protected int numBlocks;
+
+    /** the length of the last block. */
+    protected int lastLength;
+
+    /** the strong hashes. */
+    protected byte[][] strong;
+
+    /** weak checksum to block indices. */
+    protected Map<Integer, int[]> weak;
+  }
+
+  /** the block size, 0 for automatic. */
+  protected int blockSize;
+
+  /** whether to update the file in place. */
+  protected boolean inplace;
+
+  /** whether to create sparse files. */
+  protected boolean sparse;
+
+  /** the name of the strong hash algorithm. */
+  protected String algorithm;
+
+  /** the parallelism. */
+  protected int parallelism;
+
+  /**
+   * Initializes the engine with automatic block size and MD5.
+   */
+  public DeltaEngine() {
+    blockSize   = 0;
+    inplace     = false;
+    sparse      = false;
+    algorithm   = "MD5";
+    parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Initializes the engine with block size, inplace, sparse and checksum
+   * choice of the rsync instance.
+   *
+   * @param rsync	the instance to get the settings from
+   */
+  public DeltaEngine(RSync rsync) {
+    this();
+    blockSize(parseSize(rsync.getBlockSize()));
+    inplace(rsync.isInplace());
+    sparse(rsync.isSparse());
+    checksumChoice(rsync.getChecksumChoice());
+  }
+
+  /**
+   * Parses a size like "8192" or "8k".
+   *
+   * @param size	the size to parse
+   * @return		the size, 0 if empty
+   */
+  protected static int parseSize(String size) {
+    long	factor;
+
+    size = size.trim().toLowerCase();
+    if (size.isEmpty())
+      return 0;
+    factor = 1;
+    if (size.endsWith("k"))
+      factor = 1024;
+    else if (size.endsWith("m"))
+      factor = 1024 * 1024;
+    if (factor > 1)
+      size = size.substring(0, size.length() - 1);
+    return (int) (Long.parseLong(size) * factor);
+  }
+
+  /**
+   * Sets the block size.
+   *
+   * @param value	the block size, 0 for automatic (based on file size)
+   * @return		itself
+   */
+  public DeltaEngine blockSize(int value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Block size cannot be negative, provided: " + value);
+    blockSize = value;
+    return this;
+  }
+
+  /**
+   * Returns the block size.
+   *
+   * @return		the block size, 0 for automatic
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Sets whether to update the target file in place, only writing changed
+   * blocks. Blocks can then only be matched at the same or a later offset.
+   *
+   * @param value	true for in place
+   * @return		itself
+   */
+  public DeltaEngine inplace(boolean value) {
+    inplace = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to update the target file in place.
+   *
+   * @return		true if in place
+   */
+  public boolean isInplace() {
+    return inplace;
+  }
+
+  /**
+   * Sets whether to turn sequences of nulls into holes. Ignored when
+   * updating in place, as existing data would not get overwritten.
+   *
+   * @param value	true for sparse files
+   * @return		itself
+   */
+  public DeltaEngine sparse(boolean value) {
+    sparse = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to create sparse files.
+   *
+   * @return		true for sparse files
+   */
+  public boolean isSparse() {
+    return sparse;
+  }
+
+  /**
+   * Sets the strong hash as per rsync's {@code --checksum-choice}
+   * (only md5 and sha1 are available, everything else uses MD5).
+   *
+   * @param value	the choice, e.g., "md5" or "sha1,md5"
+   * @return		itself
+   */
+  public DeltaEngine checksumChoice(String value) {
+    String	choice;
+
+    choice = value.split(",")[0].trim().toLowerCase();
+    if (choice.equals("sha1"))
+      algorithm = "SHA-1";
+    else
+      algorithm = "MD5";
+    return this;
+  }
+
+  /**
+   * Returns the name of the strong hash algorithm in use.
+   *
+   * @return		the algorithm
+   */
+  public String getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Sets the number of threads for signing and scanning.
+   *
+   * @param value	the number of threads
+   * @return		itself
+   */
+  public DeltaEngine parallelism(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1, provided: " + value);
+    parallelism = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of threads for signing and scanning.
+   *
+   * @return		the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Determines the block size for the file, like rsync does (square root of
+   * the file size, multiple of 8, between 700 and 128KB).
+   *
+   * @param size	the size of the basis file
+   * @return		the block size
+   */
+  protected int blockSizeFor(long size) {
+    long	result;
+
+    if (blockSize > 0)
+      return blockSize;
+    if (size <= (long) MIN_BLOCK_SIZE * MIN_BLOCK_SIZE)
+      return MIN_BLOCK_SIZE;
+    result = ((long) Math.sqrt(size)) & ~7L;
+    return (int) Math.min(result, MAX_BLOCK_SIZE);
+  }
+
+  /**
+   * Returns a new instance of the strong hash.
+   *
+   * @return		the digest
+   */
+  protected MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Hash not available: " + algorithm, e);
+    }
+  }
+
+  /**
+   * Computes the weak checksum of the block.
+   *
+   * @param file	the file to read from
+   * @param pos	the start of the block
+   * @param len	the length of the block
+   * @return		the checksum (b in the upper, a in the lower 16 bits)
+   */
+  protected static int weak(MappedFile file, long pos, int len) {
+    int		a;
+    int		b;
+    int		i;
+    int		x;
+
+    a = 0;
+    b = 0;
+    for (i = 0; i < len; i++) {
+      x  = file.get(pos + i);
+      a += x;
+      b += (len - i) * x;
+    }
+
+    return ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+  }
+
+  /**
+   * Computes the strong hash of the block.
+   *
+   * @param file	the file to read from
+   * @param pos	the start of the block
+   * @param len	the length of the block
+   * @param digest	the digest to use
+   * @param buffer	the buffer to use (at least len)
+   * @return		the hash
+   */
+  protected static byte[] strong(MappedFile file, long pos, int len, MessageDigest digest, byte[] buffer) {
+    file.read(pos, buffer, 0, len);
+    digest.reset();
+    digest.update(buffer, 0, len);
+    return digest.digest();
+  }
+
+  /**
+   * Runs the action in parallel, using the current fork/join pool if called
+   * from one (e.g., {@link LocalCopyEngine}) or a temporary one otherwise.
+   *
+   * @param action	the action to run
+   */
+  protected void parallel(Runnable action) {
+    ForkJoinPool	pool;
+
+    if (ForkJoinTask.inForkJoinPool()) {
+      action.run();
+      return;
+    }
+
+    pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(action).get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted!", e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof UncheckedIOException)
+	throw (UncheckedIOException) e.getCause();
+      throw new IllegalStateException(e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Signs the blocks of the basis file in parallel.
+   *
+   * @param basis	the basis file
+   * @return		the signatures
+   */
+  protected Signatures sign(MappedFile basis) {
+    final Signatures	result;
+    final int[]		weak;
+    final ThreadLocal<MessageDigest>	digest;
+    final ThreadLocal<byte[]>		buffer;
+    int			i;
+
+    result            = new Signatures();
+    result.blockSize  = blockSizeFor(basis.size);
+    result.numBlocks  = (int) ((basis.size + result.blockSize - 1) / result.blockSize);
+    result.lastLength = (int) (basis.size - (long) (result.numBlocks - 1) * result.blockSize);
+    result.strong     = new byte[result.numBlocks][];
+    result.weak       = new HashMap<>();
+    weak              = new int[result.numBlocks];
+    digest            = ThreadLocal.withInitial(this::newDigest);
+    buffer            = ThreadLocal.withInitial(() -> new byte[result.blockSize]);
+
+    parallel(() -> IntStream.range(0, result.numBlocks).parallel().forEach(n -> {
+      long pos = (long) n * result.blockSize;
+      int len = (n == result.numBlocks - 1) ? result.lastLength : result.blockSize;
+      weak[n] = weak(basis, pos, len);
+      result.strong[n] = strong(basis, pos, len, digest.get(), buffer.get());
+    }));
+
+    for (i = 0; i < result.numBlocks; i++) {
+      final int n = i;
+      result.weak.merge(weak[i], new int[]{i}, (o, v) -> {
+	int[] m = Arrays.copyOf(o, o.length + 1);
+	m[o.length] = n;
+	return m;
+      });
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds the operation, merging it with the previous one if possible.
+   *
+   * @param ops		the operations so far
+   * @param matched	whether data from the basis file
+   * @param offset	the offset in the source file
+   * @param length	the length
+   */
+  protected static void add(List<Op> ops, boolean matched, long offset, long length) {
+    Op	last;
+
+    if (length == 0)
+      return;
+    if (!ops.isEmpty()) {
+      last = ops.get(ops.size() - 1);
+      if ((last.matched == matched) && (last.offset + last.length == offset)) {
+	last.length += length;
+	return;
+      }
+    }
+    ops.add(new Op(matched, offset, length));
+  }
+
+  /**
+   * Finds the block that matches the data at the position.
+   *
+   * @param sigs	the signatures
+   * @param candidates	the blocks with the same weak checksum
+   * @param file	the new file
+   * @param pos		the position in the new file
+   * @param len		the length of the data
+   * @param digest	the digest to use
+   * @param buffer	the buffer to use
+   * @return		the block index, -1 if none matches
+   */
+  protected int find(Signatures sigs, int[] candidates, MappedFile file, long pos, int len, MessageDigest digest, byte[] buffer) {
+    byte[]	hash;
+    int		preferred;
+    int		len2;
+
+    hash      = null;
+    // a block at the same position avoids writing when in place
+    preferred = (pos % sigs.blockSize == 0) ? (int) (pos / sigs.blockSize) : -1;
+    for (int pass = 0; pass < 2; pass++) {
+      for (int n: candidates) {
+	if ((pass == 0) != (n == preferred))
+	  continue;
+	if (inplace && ((long) n * sigs.blockSize < pos))
+	  continue;
+	len2 = (n == sigs.numBlocks - 1) ? sigs.lastLength : sigs.blockSize;
+	if (len2 != len)
+	  continue;
+	if (hash == null)
+	  hash = strong(file, pos, len, digest, buffer);
+	if (MessageDigest.isEqual(hash, sigs.strong[n]))
+	  return n;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Scans the segment of the new file for blocks of the basis file.
+   *
+   * @param sigs	the signatures of the basis file
+   * @param file	the new file
+   * @param start	the start of the segment
+   * @param end		the end of the segment (excl)
+   * @return		the operations for the segment
+   */
+  protected List<Op> scan(Signatures sigs, MappedFile file, long start, long end) {
+    List<Op>		result;
+    MessageDigest	digest;
+    byte[]		buffer;
+    int[]		candidates;
+    long		pos;
+    long		literal;
+    int			bs;
+    int			a;
+    int			b;
+    int			w;
+    int			n;
+    int			out;
+    int			in;
+
+    result = new ArrayList<>();
+    digest = newDigest();
+    bs     = sigs.blockSize;
+    buffer = new byte[bs];
+    pos    = start;
+    literal = start;
+    a      = 0;
+    b      = 0;
+    if (end - pos >= bs) {
+      w = weak(file, pos, bs);
+      a = w & 0xFFFF;
+      b = w >>> 16;
+    }
+    while (pos + bs <= end) {
+      w          = ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+      candidates = sigs.weak.get(w);
+      n          = (candidates == null) ? -1 : find(sigs, candidates, file, pos, bs, digest, buffer);
+      if (n > -1) {
+	add(result, false, literal, pos - literal);
+	add(result, true, (long) n * bs, bs);
+	pos    += bs;
+	literal = pos;
+	if (pos + bs <= end) {
+	  w = weak(file, pos, bs);
+	  a = w & 0xFFFF;
+	  b = w >>> 16;
+	}
+      }
+      else {
+	if (pos + bs < end) {
+	  out = file.get(pos);
+	  in  = file.get(pos + bs);
+	  a   = a - out + in;
+	  b   = b - bs * out + a;
+	}
+	pos++;
+      }
+    }
+
+    // last (partial) block
+    if ((end == file.size) && (end - literal == sigs.lastLength) && (sigs.lastLength < bs) && (sigs.lastLength > 0)) {
+      w          = weak(file, literal, sigs.lastLength);
+      candidates = sigs.weak.get(w);
+      n          = (candidates == null) ? -1 : find(sigs, candidates, file, literal, sigs.lastLength, digest, buffer);
+      if (n > -1) {
+	add(result, true, (long) n * bs, sigs.lastLength);
+	literal = end;
+      }
+    }
+    add(result, false, literal, end - literal);
+
+    return result;
+  }
+
+  /**
+   * Scans the new file in parallel segments.
+   *
+   * @param sigs	the signatures of the basis file
+   * @param file	the new file
+   * @return		the operations
+   */
+  protected List<Op> scan(Signatures sigs, MappedFile file) {
+    final List<List<Op>>	segments;
+    final long			segmentSize;
+    int				numSegments;
+
+    // segments are aligned to blocks and at least 64 blocks long
+    numSegments = (int) Math.max(1, Math.min(parallelism, file.size / ((long) sigs.blockSize * 64)));
+    segmentSize = ((file.size / numSegments) / sigs.blockSize + 1) * sigs.blockSize;
+    numSegments = (int) ((file.size + segmentSize - 1) / segmentSize);
+    segments    = new ArrayList<>();
+    for (int i = 0; i < numSegments; i++)
+      segments.add(null);
+    parallel(() -> IntStream.range(0, segments.size()).parallel().forEach(i ->
+      segments.set(i, scan(sigs, file, i * segmentSize, Math.min(file.size, (i + 1) * segmentSize)))));
+
+    return segments.stream().flatMap(List::stream).collect(Collectors.toList());
+  }
+
+  /**
+   * Writes the data, skipping sequences of nulls if sparse.
+   *
+   * @param out		the channel to write to
+   * @param pos		the position to write at
+   * @param data	the data
+   * @param len		the number of bytes
+   * @param sparse	whether to skip nulls
+   * @return		the number of bytes written
+   * @throws IOException	if writing fails
+   */
+  protected static long write(FileChannel out, long pos, byte[] data, int len, boolean sparse) throws IOException {
+    ByteBuffer	buffer;
+    int		i;
+
+    if (sparse) {
+      for (i = 0; i < len; i++) {
+	if (data[i] != 0)
+	  break;
+      }
+      if (i == len)
+	return 0;
+    }
+    buffer = ByteBuffer.wrap(data, 0, len);
+    while (buffer.hasRemaining())
+      pos += out.write(buffer, pos);
+
+    return len;
+  }
+
+  /**
+   * Applies the operations.
+   *
+   * @param ops		the operations
+   * @param file	the new file
+   * @param basis	the basis file, null if none
+   * @param out		the channel to write to
+   * @param result	for storing the statistics
+   * @throws IOException	if writing fails
+   */
+  protected void apply(List<Op> ops, MappedFile file, MappedFile basis, FileChannel out, Result result) throws IOException {
+    byte[]	buffer;
+    boolean	holes;
+    long	pos;
+    long	done;
+    int		len;
+
+    buffer = new byte[BUFFER_SIZE];
+    holes  = sparse && !inplace;
+    pos    = 0;
+    for (Op op: ops) {
+      if (op.matched)
+	result.matchedData += op.length;
+      else
+	result.literalData += op.length;
+      // unchanged block, nothing to write
+      if (inplace && op.matched && (op.offset == pos)) {
+	pos += op.length;
+	continue;
+      }
+      for (done = 0; done < op.length; done += len) {
+	len = (int) Math.min(buffer.length, op.length - done);
+	(op.matched ? basis : file).read(op.offset + done, buffer, 0, len);
+	result.bytesWritten += write(out, pos + done, buffer, len, holes);
+      }
+      pos += op.length;
+    }
+
+    if (out.size() > file.size)
+      out.truncate(file.size);
+    // trailing hole
+    if (out.size() < file.size)
+      out.write(ByteBuffer.wrap(new byte[1]), file.size - 1);
+  }
+
+  /**
+   * Updates the target with the content of the source, using the current
+   * content of the target as basis.
+   *
+   * @param source	the new file
+   * @param target	the file to update, gets created if it does not exist
+   * @return		the statistics
+   * @throws IOException	if reading or writing fails
+   */
+  public Result update(Path source, Path target) throws IOException {
+    Result		result;
+    List<Op>		ops;
+    Signatures		sigs;
+
+    if (!Files.exists(target))
+      return copy(source, target);
+
+    result = new Result();
+    try (MappedFile file = new MappedFile(source); MappedFile basis = new MappedFile(target)) {
+      if ((basis.size == 0) || (file.size == 0)) {
+	ops = new ArrayList<>();
+	add(ops, false, 0, file.size);
+      }
+      else {
+	sigs = sign(basis);
+	ops  = scan(sigs, file);
+      }
+      write(ops, file, basis, target, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Copies the source to the target without using a basis file (honours
+   * in place and sparse).
+   *
+   * @param source	the new file
+   * @param target	the file to create or overwrite
+   * @return		the statistics
+   * @throws IOException	if reading or writing fails
+   */
+  public Result copy(Path source, Path target) throws IOException {
+    Result		result;
+    List<Op>		ops;
+
+    result = new Result();
+    try (MappedFile file = new MappedFile(source)) {
+      ops = new ArrayList<>();
+      add(ops, false, 0, file.size);
+      write(ops, file, null, target, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Writes the new file, either in place or via a temporary file.
+   *
+   * @param ops		the operations
+   * @param file	the new file
+   * @param basis	the basis file, null if none
+   * @param target	the file to write
+   * @param result	for storing the statistics
+   * @throws IOException	if writing fails
+   */
+  protected void write(List<Op> ops, MappedFile file, MappedFile basis, Path target, Result result) throws IOException {
+    Path	tmp;
+
+    if (inplace) {
+      try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+	apply(ops, file, basis, out, result);
+      }
+      return;
+    }
+
+    tmp = target.resolveSibling("." + target.getFileName() + "." + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36));
+    try {
+      try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+	apply(ops, file, basis, out, result);
+      }
+      try {
+	Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+	Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Updates the file given as second argument with the one given as first
+   * argument and outputs the statistics. Optional third argument is the
+   * block size, fourth "inplace".
+   *
+   * @param args	the files and options
+   * @throws Exception	if updating fails
+   */
+  public static void main(String[] args) throws Exception {
+    DeltaEngine		engine;
+    Result		result;
+    Path		source;
+
+    if (args.length < 2) {
+      System.err.println("Usage: " + DeltaEngine.class.getName() + " <source> <target> [blocksize [inplace]]");
+      System.exit(1);
+    }
+    engine = new DeltaEngine();
+    if (args.length > 2)
+      engine.blockSize(parseSize(args[2]));
+    if (args.length > 3)
+      engine.inplace(args[3].equals("inplace"));
+    source = Paths.get(args[0]);
+    result = engine.update(source, Paths.get(args[1]));
+    System.out.println(result);
+    System.out.print(result.toStats(Files.size(source)).format());
+  }
+}
@@ -0,0 +1,754 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FileStateIndex.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.Utils;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the state (path, type, size, modification time, inode) of all files
+ * of a local source directory as of the last successful transfer in a
+ * compact index file. Before the next transfer, the source directory is
+ * scanned in parallel and compared against the index, so that only new and
+ * changed paths get handed to rsync via {@code --files-from}, avoiding
+ * rsync's scan of the complete tree on both ends. If the rsync instance has
+ * delete enabled, paths that disappeared get removed from the destination
+ * via {@code --delete-missing-args}.
+ * <br>
+ * The index stores the entries sorted by path with shared prefixes removed
+ * and numbers encoded as variable-length integers; it gets read via a
+ * memory-mapped buffer and compared in a single merge pass.
+ * <br>
+ * Changes to the destination by other means are not detected; remove the
+ * index file to force a full transfer.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class FileStateIndex {
+
+  /** the magic number of index files ("R4JI"). */
+  public final static int MAGIC = 0x52344A49;
+
+  /** the version of the file format. */
+  public final static int VERSION = 1;
+
+  /** the type for regular files. */
+  public final static byte TYPE_FILE = 0;
+
+  /** the type for directories. */
+  public final static byte TYPE_DIR = 1;
+
+  /** the type for anything else (e.g., symlinks). */
+  public final static byte TYPE_OTHER = 2;
+
+  /** whether the "unix" attribute view (for the inode) is available. */
+  protected static volatile Boolean unixView;
+
+  /**
+   * The state of a single path.
+   */
+  protected static class Entry
+    implements Comparable<Entry> {
+
+    /** the relative path. */
+    protected String path;
+
+    /** the type. */
+    protected byte type;
+
+    /** the size. */
+    protected long size;
+
+    /** the modification time (msec). */
+    protected long mtime;
+
+    /** the inode, 0 if not available. */
+    protected long inode;
+
+    /**
+     * Compares the entries by path.
+     *
+     * @param o		the entry to compare with
+     * @return		the comparison of the paths
+     */
+    @Override
+    public int compareTo(Entry o) {
+      return path.compareTo(o.path);
+    }
+
+    /**
+     * Returns whether the state differs.
+     *
+     * @param o		the entry to compare with
+     * @return		true if different
+     */
+    public boolean differs(Entry o) {
+      return (type != o.type) || (size != o.size) || (mtime != o.mtime) || (inode != o.inode);
+    }
+  }
+
+  /**
+   * The differences between the index and the current state of the source
+   * directory.
+   */
+  public static class Delta {
+
+    /** the source directory. */
+    protected Path root;
+
+    /** the current state. */
+    protected Entry[] snapshot;
+
+    /** whether there was no previous index. */
+    protected boolean initial;
+
+    /** the new or changed paths. */
+    protected List<String> changed;
+
+    /** the paths that no longer exist. */
+    protected List<String> deleted;
+
+    /** the time scanning took (msec). */
+    protected long scanTime;
+
+    /** the time comparing took (msec). */
+    protected long diffTime;
+
+    /**
+     * Returns whether there was no index yet, i.e., a full transfer is required.
+     *
+     * @return		true if no index
+     */
+    public boolean isInitial() {
+      return initial;
+    }
+
+    /**
+     * Returns whether nothing changed.
+     *
+     * @return		true if no changes
+     */
+    public boolean isEmpty() {
+      return !initial && changed.isEmpty() && deleted.isEmpty();
+    }
+
+    /**
+     * Returns the new or changed paths, relative to the source directory.
+     *
+     * @return		the paths
+     */
+    public List<String> getChanged() {
+      return changed;
+    }
+
+    /**
+     * Returns the paths that no longer exist, relative to the source directory.
+     *
+     * @return		the paths
+     */
+    public List<String> getDeleted() {
+      return deleted;
+    }
+
+    /**
+     * Returns the number of paths in the source directory.
+     *
+     * @return		the number of paths
+     */
+    public int getNumPaths() {
+      return snapshot.length;
+    }
+
+    /**
+     * Returns the time scanning the source directory took.
+     *
+     * @return		the time in msec
+     */
+    public long getScanTime() {
+      return scanTime;
+    }
+
+    /**
+     * Returns the time comparing with the index took.
+     *
+     * @return		the time in msec
+     */
+    public long getDiffTime() {
+      return diffTime;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "paths=" + snapshot.length + ", initial=" + initial + ", changed=" + changed.size() + ", deleted=" + deleted.size()
+	+ ", scan=" + scanTime + "ms, diff=" + diffTime + "ms";
+    }
+  }
+
+  /**
+   * Scans a directory, forking tasks for sub-directories.
+   */
+  protected static class ScanTask
+    extends RecursiveTask<List<Entry>> {
+
+    private static final long serialVersionUID = 5072143560339867013L;
+
+    /** the directory. */
+    protected Path dir;
+
+    /** the relative path of the directory (empty or ending with "/"). */
+    protected String relative;
+
+    /**
+     * Initializes the task.
+     *
+     * @param dir	the directory to scan
+     * @param relative	the relative path
+     */
+    protected ScanTask(Path dir, String relative) {
+      this.dir      = dir;
+      this.relative = relative;
+    }
+
+    /**
+     * Scans the directory.
+     *
+     * @return		the entries
+     */
+    @Override
+    protected List<Entry> compute() {
+      List<Entry>	result;
+      List<ScanTask>	tasks;
+      List<Path>	children;
+      Entry		entry;
+
+      result = new ArrayList<>();
+      tasks  = new ArrayList<>();
+      try (Stream<Path> list = Files.list(dir)) {
+	children = new ArrayList<>();
+	list.forEach(children::add);
+      }
+      catch (IOException e) {
+	// vanished or not readable
+	return result;
+      }
+      for (Path child: children) {
+	entry = stat(child, relative + child.getFileName().toString());
+	if (entry == null)
+	  continue;
+	result.add(entry);
+	if (entry.type == TYPE_DIR)
+	  tasks.add(new ScanTask(child, entry.path + "/"));
+      }
+      for (ForkJoinTask<List<Entry>> task: ForkJoinTask.invokeAll(tasks))
+	result.addAll(task.join());
+
+      return result;
+    }
+  }
+
+  /** the index file. */
+  protected Path file;
+
+  /** the number of threads for scanning. */
+  protected int parallelism;
+
+  /**
+   * Initializes the index.
+   *
+   * @param file	the file to store the index in
+   */
+  public FileStateIndex(Path file) {
+    this.file   = file;
+    parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Returns the index file.
+   *
+   * @return		the file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Sets the number of threads for scanning.
+   *
+   * @param value	the number of threads
+   * @return		itself
+   */
+  public FileStateIndex parallelism(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1, provided: " + value);
+    parallelism = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of threads for scanning.
+   *
+   * @return		the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Determines the state of the path.
+   *
+   * @param path	the path
+   * @param relative	the relative path
+   * @return		the state, null if it vanished
+   */
+  protected static Entry stat(Path path, String relative) {
+    Entry		result;
+    BasicFileAttributes	attrs;
+    Map<String,Object>	unix;
+
+    result      = new Entry();
+    result.path = relative;
+    try {
+      if (unixView == null || unixView) {
+	try {
+	  unix         = Files.readAttributes(path, "unix:size,lastModifiedTime,ino,isDirectory,isRegularFile", LinkOption.NOFOLLOW_LINKS);
+	  unixView     = true;
+	  result.size  = (Long) unix.get("size");
+	  result.mtime = ((FileTime) unix.get("lastModifiedTime")).toMillis();
+	  result.inode = (Long) unix.get("ino");
+	  result.type  = (Boolean) unix.get("isDirectory") ? TYPE_DIR : ((Boolean) unix.get("isRegularFile") ? TYPE_FILE : TYPE_OTHER);
+	  return result;
+	}
+	catch (UnsupportedOperationException | IllegalArgumentException e) {
+	  unixView = false;
+	}
+      }
+      attrs        = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      result.size  = attrs.size();
+      result.mtime = attrs.lastModifiedTime().toMillis();
+      result.inode = (attrs.fileKey() == null) ? 0 : attrs.fileKey().hashCode();
+      result.type  = attrs.isDirectory() ? TYPE_DIR : (attrs.isRegularFile() ? TYPE_FILE : TYPE_OTHER);
+      return result;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Scans the directory in parallel.
+   *
+   * @param root	the directory to scan
+   * @return		the entries, sorted by path
+   */
+  protected Entry[] scan(Path root) {
+    ForkJoinPool	pool;
+    Entry[]		result;
+
+    pool = new ForkJoinPool(parallelism);
+    try {
+      result = pool.invoke(new ScanTask(root, "")).toArray(new Entry[0]);
+    }
+    finally {
+      pool.shutdown();
+    }
+    Arrays.parallelSort(result);
+
+    return result;
+  }
+
+  /**
+   * Writes the number as variable-length integer.
+   *
+   * @param out		the stream to write to
+   * @param value	the (non-negative) value
+   * @throws IOException	if writing fails
+   */
+  protected static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  /**
+   * Reads a variable-length integer.
+   *
+   * @param in		the buffer to read from
+   * @return		the value
+   */
+  protected static long readVarLong(ByteBuffer in) {
+    long	result;
+    int		shift;
+    int		b;
+
+    result = 0;
+    shift  = 0;
+    do {
+      b       = in.get();
+      result |= (long) (b & 0x7F) << shift;
+      shift  += 7;
+    }
+    while ((b & 0x80) != 0);
+
+    return result;
+  }
+
+  /**
+   * Turns a signed number into an unsigned one for variable-length encoding.
+   *
+   * @param value	the value
+   * @return		the encoded value
+   */
+  protected static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Reverses {@link #zigZag(long)}.
+   *
+   * @param value	the encoded value
+   * @return		the value
+   */
+  protected static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Compares the source directory with the index.
+   *
+   * @param root	the source directory
+   * @return		the differences
+   * @throws IOException	if reading the index fails
+   */
+  public Delta diff(Path root) throws IOException {
+    Delta		result;
+    long		start;
+    MappedByteBuffer	buffer;
+    byte[]		last;
+    byte[]		bytes;
+    Entry		old;
+    long		count;
+    long		i;
+    int			n;
+    int			prefix;
+    int			suffix;
+
+    result          = new Delta();
+    result.root     = root;
+    result.changed  = new ArrayList<>();
+    result.deleted  = new ArrayList<>();
+    start           = System.currentTimeMillis();
+    result.snapshot = scan(root);
+    result.scanTime = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    if (!Files.exists(file)) {
+      result.initial = true;
+    }
+    else {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION))
+	  throw new IOException("Not an index file (or unsupported version): " + file);
+	count = buffer.getLong();
+	last  = new byte[0];
+	n     = 0;
+	for (i = 0; i < count; i++) {
+	  prefix    = (int) readVarLong(buffer);
+	  suffix    = (int) readVarLong(buffer);
+	  bytes     = Arrays.copyOf(last, prefix + suffix);
+	  buffer.get(bytes, prefix, suffix);
+	  last      = bytes;
+	  old       = new Entry();
+	  old.path  = new String(bytes, StandardCharsets.UTF_8);
+	  old.type  = buffer.get();
+	  old.size  = readVarLong(buffer);
+	  old.mtime = unZigZag(readVarLong(buffer));
+	  old.inode = readVarLong(buffer);
+	  // merge: entries only in the snapshot are new
+	  while ((n < result.snapshot.length) && (result.snapshot[n].path.compareTo(old.path) < 0)) {
+	    result.changed.add(result.snapshot[n].path);
+	    n++;
+	  }
+	  if ((n < result.snapshot.length) && result.snapshot[n].path.equals(old.path)) {
+	    if (result.snapshot[n].differs(old))
+	      result.changed.add(old.path);
+	    n++;
+	  }
+	  else {
+	    result.deleted.add(old.path);
+	  }
+	}
+	for (; n < result.snapshot.length; n++)
+	  result.changed.add(result.snapshot[n].path);
+      }
+    }
+    result.changed  = Collections.unmodifiableList(result.changed);
+    result.deleted  = Collections.unmodifiableList(result.deleted);
+    result.diffTime = System.currentTimeMillis() - start;
+
+    return result;
+  }
+
+  /**
+   * Stores the current state of the delta as the new index.
+   *
+   * @param delta	the delta with the state to store
+   * @throws IOException	if writing fails
+   */
+  public void save(Delta delta) throws IOException {
+    Path	tmp;
+    byte[]	last;
+    byte[]	bytes;
+    int		prefix;
+    int		max;
+
+    if (file.getParent() != null)
+      Files.createDirectories(file.getParent());
+    tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1024 * 1024))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(delta.snapshot.length);
+      last = new byte[0];
+      for (Entry entry: delta.snapshot) {
+	bytes  = entry.path.getBytes(StandardCharsets.UTF_8);
+	max    = Math.min(bytes.length, last.length);
+	for (prefix = 0; prefix < max; prefix++) {
+	  if (bytes[prefix] != last[prefix])
+	    break;
+	}
+	writeVarLong(out, prefix);
+	writeVarLong(out, bytes.length - prefix);
+	out.write(bytes, prefix, bytes.length - prefix);
+	out.writeByte(entry.type);
+	writeVarLong(out, entry.size);
+	writeVarLong(out, zigZag(entry.mtime));
+	writeVarLong(out, entry.inode);
+	last = bytes;
+      }
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Returns whether the file list for {@link #restrict(RSync, Path)} needs to
+   * be NUL-separated. As {@code --from0} also applies to the files read via
+   * {@code --exclude-from}, {@code --include-from} and merge filter rules,
+   * this is only the case if the instance does not read any of these or
+   * already uses {@code --from0}.
+   *
+   * @param rsync	the instance to check
+   * @return		true if NUL-separated, otherwise one path per line
+   * @see		RSync#hasRuleFiles()
+   */
+  public static boolean isFrom0(RSync rsync) {
+    return rsync.isFrom0() || !rsync.hasRuleFiles();
+  }
+
+  /**
+   * Configures a copy of the rsync instance to only transfer the paths in
+   * the list (relative to the single source directory, separated as
+   * determined by {@link #isFrom0(RSync)}),
+   * without recursing into listed directories. Paths that no longer exist
+   * get deleted in the destination if the instance has delete enabled,
+   * otherwise ignored.
+   *
+   * @param rsync	the instance with source directory, destination and options
+   * @param list	the file with the paths
+   * @return		the configured copy
+   */
+  public static RSync restrict(RSync rsync, Path list) {
+    RSync	result;
+    String	source;
+    String	dest;
+
+    result = rsync.copy();
+    source = rsync.getSources().get(0);
+    dest   = rsync.getDestination();
+    // options like --archive imply recursion, which needs turning off afterwards
+    result.recursive(false)
+      .dirs(true)
+      .filesFrom(list.toString())
+      .from0(isFrom0(rsync))
+      .additional(ArrayUtils.add((rsync.getAdditional() == null) ? new String[0] : rsync.getAdditional(), "--no-recursive"));
+    // without trailing slash, rsync copies the directory itself
+    if (!source.endsWith("/") && !source.endsWith(File.separator))
+      result.destination(dest + (dest.endsWith("/") ? "" : "/") + Paths.get(source).getFileName());
+    if (rsync.isDelete())
+      result.deleteMissingArgs(true);
+    else
+      result.ignoreMissingArgs(true);
+
+    return result;
+  }
+
+  /**
+   * Configures a copy of the rsync instance to only transfer the changes.
+   * The file list gets written to a temporary file, which
+   * {@link #execute(RSync, Executor)} removes once rsync finished (otherwise
+   * up to the caller).
+   *
+   * @param rsync	the instance with source directory, destination and options
+   * @param delta	the changes
+   * @return		the configured copy, unchanged for initial deltas
+   * @throws IOException	if writing the file list fails
+   */
+  public static RSync apply(RSync rsync, Delta delta) throws IOException {
+    List<String>	paths;
+    Path		list;
+
+    if (delta.isInitial())
+      return rsync.copy();
+
+    paths = new ArrayList<>(delta.changed);
+    if (rsync.isDelete())
+      paths.addAll(delta.deleted);
+    list = Utils.writeFileList(paths, isFrom0(rsync));
+
+    return restrict(rsync, list);
+  }
+
+  /**
+   * Transfers the changes since the last successful run and updates the
+   * index if successful. Does not run rsync at all if nothing changed.
+   *
+   * @param rsync	the instance with single local source directory, destination and options
+   * @param executor	the executor for completing the future
+   * @return		the future for the result
+   * @throws Exception	if scanning or starting rsync fails
+   */
+  public CompletableFuture<ProcessResult> execute(RSync rsync, Executor executor) throws Exception {
+    final Delta				delta;
+    final RSync				copy;
+    CompletableFuture<ProcessResult>	result;
+
+    if (rsync.getSources().size() != 1)
+      throw new IllegalArgumentException("Exactly one source directory required, provided: " + rsync.getSources());
+    if (TransferScheduler.parseHost(rsync.getSources().get(0)) != null)
+      throw new IllegalArgumentException("Source must be local: " + rsync.getSources().get(0));
+
+    delta = diff(Paths.get(rsync.getSources().get(0)));
+    if (delta.isEmpty())
+      return CompletableFuture.completedFuture(new ProcessResult(0, "", "", false));
+
+    copy = apply(rsync, delta);
+    try {
+      result = copy.executeAsync(executor);
+    }
+    catch (Exception e) {
+      deleteFileList(copy);
+      throw e;
+    }
+
+    return result.whenComplete((r, e) -> deleteFileList(copy)).thenApply(r -> {
+      if (r.hasSucceeded()) {
+	try {
+	  save(delta);
+	}
+	catch (IOException e) {
+	  throw new IllegalStateException("Failed to update index: " + file, e);
+	}
+      }
+      return r;
+    });
+  }
+
+  /**
+   * Removes the file list written by {@link #apply(RSync, Delta)}, if any.
+   *
+   * @param rsync	the instance returned by apply
+   */
+  protected void deleteFileList(RSync rsync) {
+    if (rsync.getFilesFrom().isEmpty())
+      return;
+    try {
+      Files.deleteIfExists(Paths.get(rsync.getFilesFrom()));
+    }
+    catch (IOException e) {
+      // ignored, marked for deletion on exit
+    }
+  }
+
+  /**
+   * Scans the directory given as first argument and compares it with the
+   * index given as second argument, updating the index afterwards.
+   *
+   * @param args	the directory and index file
+   * @throws Exception	if scanning fails
+   */
+  public static void main(String[] args) throws Exception {
+    FileStateIndex	index;
+    Delta		delta;
+
+    if (args.length != 2) {
+      System.err.println("Usage: " + FileStateIndex.class.getName() + " <dir> <index>");
+      System.exit(1);
+    }
+    index = new FileStateIndex(Paths.get(args[1]));
+    delta = index.diff(Paths.get(args[0]));
+    System.out.println(delta);
+    index.save(delta);
+    System.out.println("index size: " + Files.size(index.getFile()) + " bytes");
+  }
+}
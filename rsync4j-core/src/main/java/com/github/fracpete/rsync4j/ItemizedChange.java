@@ -0,0 +1,426 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ItemizedChange.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * A single line of rsync's {@code --itemize-changes} output, i.e., the
+ * default "%i %n%L" format: "YXcstpoguax path".
+ * <br>
+ * Parsing is done by character positions rather than regular expressions.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see RSync#itemizeChanges(boolean)
+ */
+public class ItemizedChange
+  implements Serializable {
+
+  private static final long serialVersionUID = -4428207346017563040L;
+
+  /** update type: file is being transferred to the remote host (sent). */
+  public final static char UPDATE_SENT = '<';
+
+  /** update type: file is being transferred to the local host (received). */
+  public final static char UPDATE_RECEIVED = '>';
+
+  /** update type: local change/creation (e.g., directory or symlink). */
+  public final static char UPDATE_CHANGE = 'c';
+
+  /** update type: hard link to another item. */
+  public final static char UPDATE_HARDLINK = 'h';
+
+  /** update type: not updated (attributes might be). */
+  public final static char UPDATE_NONE = '.';
+
+  /** update type: message, e.g., "*deleting". */
+  public final static char UPDATE_MESSAGE = '*';
+
+  /** file type: file. */
+  public final static char TYPE_FILE = 'f';
+
+  /** file type: directory. */
+  public final static char TYPE_DIRECTORY = 'd';
+
+  /** file type: symbolic link. */
+  public final static char TYPE_SYMLINK = 'L';
+
+  /** file type: device. */
+  public final static char TYPE_DEVICE = 'D';
+
+  /** file type: special file (e.g., named socket or fifo). */
+  public final static char TYPE_SPECIAL = 'S';
+
+  /** attribute: checksum differs (c). */
+  public final static int CHECKSUM = 1;
+
+  /** attribute: size differs (s). */
+  public final static int SIZE = 1 << 1;
+
+  /** attribute: modification time differs (t/T). */
+  public final static int TIME = 1 << 2;
+
+  /** attribute: permissions differ (p). */
+  public final static int PERMS = 1 << 3;
+
+  /** attribute: owner differs (o). */
+  public final static int OWNER = 1 << 4;
+
+  /** attribute: group differs (g). */
+  public final static int GROUP = 1 << 5;
+
+  /** attribute: access/creation time differs (u/n/b). */
+  public final static int ACCESS_TIME = 1 << 6;
+
+  /** attribute: ACL differs (a). */
+  public final static int ACL = 1 << 7;
+
+  /** attribute: extended attributes differ (x). */
+  public final static int XATTR = 1 << 8;
+
+  /** the length of the itemize string. */
+  public final static int ITEMIZE_LENGTH = 11;
+
+  /** the update type. */
+  protected char updateType;
+
+  /** the file type ('\0' for messages). */
+  protected char fileType;
+
+  /** the attributes that differ. */
+  protected int attributes;
+
+  /** whether the item is new. */
+  protected boolean created;
+
+  /** the message (without '*'), null if not a message. */
+  protected String message;
+
+  /** the path. */
+  protected String path;
+
+  /** the link target, null if not a link. */
+  protected String linkTarget;
+
+  /**
+   * Initializes the change.
+   *
+   * @param updateType	the update type
+   * @param fileType	the file type, '\0' for messages
+   * @param attributes	the attribute bitset
+   * @param created	whether the item is new
+   * @param message	the message, null if not a message
+   * @param path	the path
+   * @param linkTarget	the target of a symbolic/hard link, null if not a link
+   */
+  public ItemizedChange(char updateType, char fileType, int attributes, boolean created, String message, String path, String linkTarget) {
+    this.updateType = updateType;
+    this.fileType   = fileType;
+    this.attributes = attributes;
+    this.created    = created;
+    this.message    = message;
+    this.path       = path;
+    this.linkTarget = linkTarget;
+  }
+
+  /**
+   * Returns the update type.
+   *
+   * @return		the type, see UPDATE_* constants
+   */
+  public char getUpdateType() {
+    return updateType;
+  }
+
+  /**
+   * Returns the file type.
+   *
+   * @return		the type, see TYPE_* constants, '\0' for messages
+   */
+  public char getFileType() {
+    return fileType;
+  }
+
+  /**
+   * Returns the bitset of attributes that differ.
+   *
+   * @return		the bitset, see attribute constants
+   */
+  public int getAttributes() {
+    return attributes;
+  }
+
+  /**
+   * Returns whether the attribute differs.
+   *
+   * @param attribute	the attribute(s) to check, see attribute constants
+   * @return		true if any of the attributes differs
+   */
+  public boolean has(int attribute) {
+    return (attributes & attribute) != 0;
+  }
+
+  /**
+   * Returns whether the item is new ("+++++++++").
+   *
+   * @return		true if new
+   */
+  public boolean isCreated() {
+    return created;
+  }
+
+  /**
+   * Returns whether the data of the file gets transferred.
+   *
+   * @return		true if transferred
+   */
+  public boolean isTransfer() {
+    return (updateType == UPDATE_SENT) || (updateType == UPDATE_RECEIVED);
+  }
+
+  /**
+   * Returns whether this is a message like "*deleting".
+   *
+   * @return		true if message
+   */
+  public boolean isMessage() {
+    return (updateType == UPDATE_MESSAGE);
+  }
+
+  /**
+   * Returns whether this item gets deleted.
+   *
+   * @return		true if deleted
+   */
+  public boolean isDeletion() {
+    return isMessage() && "deleting".equals(message);
+  }
+
+  /**
+   * Returns the message, e.g., "deleting".
+   *
+   * @return		the message, null if not a message
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * Returns the path.
+   *
+   * @return		the path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the target of the symbolic/hard link.
+   *
+   * @return		the target, null if not a link
+   */
+  public String getLinkTarget() {
+    return linkTarget;
+  }
+
+  /**
+   * Compares with the other object.
+   *
+   * @param o		the object to compare with
+   * @return		true if the same
+   */
+  @Override
+  public boolean equals(Object o) {
+    ItemizedChange	other;
+
+    if (!(o instanceof ItemizedChange))
+      return false;
+    other = (ItemizedChange) o;
+    return (updateType == other.updateType)
+      && (fileType == other.fileType)
+      && (attributes == other.attributes)
+      && (created == other.created)
+      && Objects.equals(message, other.message)
+      && Objects.equals(path, other.path)
+      && Objects.equals(linkTarget, other.linkTarget);
+  }
+
+  /**
+   * Returns the hashcode.
+   *
+   * @return		the hashcode
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(updateType, fileType, attributes, path);
+  }
+
+  /**
+   * Returns a short description.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "update=" + updateType
+      + ", type=" + (fileType == '\0' ? "-" : "" + fileType)
+      + ", attributes=" + Integer.toBinaryString(attributes)
+      + ", created=" + created
+      + (message != null ? ", message=" + message : "")
+      + ", path=" + path
+      + (linkTarget != null ? ", target=" + linkTarget : "");
+  }
+
+  /**
+   * Returns the attribute flag for the position in the itemize string.
+   *
+   * @param pos		the position (2-10)
+   * @return		the flag
+   */
+  protected static int attributeAt(int pos) {
+    return 1 << (pos - 2);
+  }
+
+  /**
+   * Parses the line.
+   *
+   * @param line	the line to parse
+   * @return		the change, null if not an itemized line
+   */
+  public static ItemizedChange parse(CharSequence line) {
+    char	update;
+    char	type;
+    char	c;
+    int		attributes;
+    boolean	created;
+    int		i;
+    int		end;
+    String	path;
+    String	message;
+    String	target;
+    String	rest;
+
+    if ((line == null) || (line.length() < ITEMIZE_LENGTH + 2) || (line.charAt(ITEMIZE_LENGTH) != ' '))
+      return null;
+
+    update = line.charAt(0);
+    switch (update) {
+      case UPDATE_MESSAGE:
+	end = 1;
+	while ((end < ITEMIZE_LENGTH) && (line.charAt(end) != ' '))
+	  end++;
+	message = line.subSequence(1, end).toString();
+	path    = line.subSequence(ITEMIZE_LENGTH + 1, line.length()).toString();
+	return new ItemizedChange(update, '\0', 0, false, message, path, null);
+      case UPDATE_SENT:
+      case UPDATE_RECEIVED:
+      case UPDATE_CHANGE:
+      case UPDATE_HARDLINK:
+      case UPDATE_NONE:
+	break;
+      default:
+	return null;
+    }
+
+    type = line.charAt(1);
+    switch (type) {
+      case TYPE_FILE:
+      case TYPE_DIRECTORY:
+      case TYPE_SYMLINK:
+      case TYPE_DEVICE:
+      case TYPE_SPECIAL:
+	break;
+      default:
+	return null;
+    }
+
+    attributes = 0;
+    created    = true;
+    for (i = 2; i < ITEMIZE_LENGTH; i++) {
+      c = line.charAt(i);
+      if (c != '+')
+	created = false;
+      if ((c != '.') && (c != '+') && (c != ' ') && (c != '?'))
+	attributes |= attributeAt(i);
+    }
+
+    rest   = line.subSequence(ITEMIZE_LENGTH + 1, line.length()).toString();
+    path   = rest;
+    target = null;
+    if (type == TYPE_SYMLINK)
+      end = rest.indexOf(" -> ");
+    else if (update == UPDATE_HARDLINK)
+      end = rest.indexOf(" => ");
+    else
+      end = -1;
+    if (end > -1) {
+      path   = rest.substring(0, end);
+      target = rest.substring(end + 4);
+    }
+
+    return new ItemizedChange(update, type, attributes, created, null, path, target);
+  }
+
+  /**
+   * Returns a stream of the itemized changes in the output lines, e.g.,
+   * from {@link com.github.fracpete.rsync4j.core.MappedOutput#lines()}.
+   * Lines that are not itemized changes get skipped.
+   *
+   * @param lines	the output lines to parse
+   * @return		the stream of changes
+   */
+  public static Stream<ItemizedChange> stream(Stream<String> lines) {
+    return lines
+      .map(ItemizedChange::parse)
+      .filter(Objects::nonNull);
+  }
+
+  /**
+   * Returns a stream of the itemized changes in the output. Lines that are
+   * not itemized changes (e.g., stats) get skipped. The reader gets closed
+   * when the stream gets closed.
+   *
+   * @param reader	the output to parse
+   * @return		the stream of changes
+   */
+  public static Stream<ItemizedChange> stream(Reader reader) {
+    BufferedReader	buffered;
+
+    if (reader instanceof BufferedReader)
+      buffered = (BufferedReader) reader;
+    else
+      buffered = new BufferedReader(reader);
+
+    return stream(buffered.lines())
+      .onClose(() -> {
+	try {
+	  buffered.close();
+	}
+	catch (Exception e) {
+	  // ignored
+	}
+      });
+  }
+}
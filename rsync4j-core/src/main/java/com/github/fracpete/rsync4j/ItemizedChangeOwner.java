@@ -0,0 +1,108 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ItemizedChangeOwner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.processoutput4j.core.StreamingProcessOutputType;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOwner;
+
+/**
+ * Turns the stdout lines of an rsync process into {@link ItemizedChange}
+ * events, to be used with {@code StreamingProcessOutput}. Lines that are not
+ * itemized changes are ignored, stderr output gets collected.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ItemizedChangeOwner
+  implements StreamingProcessOwner {
+
+  /** the listener to notify. */
+  protected ItemizedChangeListener listener;
+
+  /** the number of changes. */
+  protected long numChanges;
+
+  /** the stderr output. */
+  protected StringBuilder stdErr;
+
+  /**
+   * Initializes the owner.
+   *
+   * @param listener	the listener to notify
+   */
+  public ItemizedChangeOwner(ItemizedChangeListener listener) {
+    this.listener = listener;
+    this.stdErr   = new StringBuilder();
+  }
+
+  /**
+   * Returns what output from the process to forward.
+   *
+   * @return 		the output type
+   */
+  @Override
+  public StreamingProcessOutputType getOutputType() {
+    return StreamingProcessOutputType.BOTH;
+  }
+
+  /**
+   * Processes the incoming line.
+   *
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  @Override
+  public void processOutput(String line, boolean stdout) {
+    ItemizedChange	change;
+
+    if (stdout) {
+      change = ItemizedChange.parse(line);
+      if (change != null) {
+	numChanges++;
+	listener.itemizedChange(change);
+      }
+    }
+    else {
+      synchronized(stdErr) {
+	stdErr.append(line).append("\n");
+      }
+    }
+  }
+
+  /**
+   * Returns the number of changes encountered so far.
+   *
+   * @return		the number of changes
+   */
+  public long getNumChanges() {
+    return numChanges;
+  }
+
+  /**
+   * Returns the collected stderr output.
+   *
+   * @return		the output
+   */
+  public String getStdErr() {
+    synchronized(stdErr) {
+      return stdErr.toString();
+    }
+  }
+}
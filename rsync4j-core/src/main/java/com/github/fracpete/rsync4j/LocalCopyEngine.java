@@ -0,0 +1,936 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * LocalCopyEngine.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Performs local-to-local transfers within the JVM rather than spawning
+ * the rsync binary, for simple transfers that only use the options listed
+ * in {@link #SUPPORTED_OPTIONS}. Directories are processed in parallel,
+ * files are copied using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * into a temporary file that gets renamed afterwards, like rsync does.
+ * <br>
+ * Like rsync, files are skipped if size and modification time (in seconds)
+ * match. The output uses the same format as rsync's verbose, itemized and
+ * stats output, i.e., it can be processed with {@link ItemizedChange} and
+ * {@link TransferStats}.
+ * <br>
+ * Like rsync does for local transfers, files are copied whole by default.
+ * With {@code --no-whole-file}, files that already exist in the destination
+ * are updated with rsync's delta algorithm via {@link DeltaEngine}
+ * (honouring block size, checksum choice, in place and sparse).
+ * <br>
+ * Not supported on Windows, where paths get converted for the cygwin binary.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see RSync#javaEngine(boolean)
+ */
+public class LocalCopyEngine {
+
+  /** the permissions that the umask lets through, null if not determined yet. */
+  protected static Set<PosixFilePermission> umaskPermissions;
+
+  /** the options that the engine can handle. */
+  public final static Set<String> SUPPORTED_OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+    "--recursive",
+    "--times",
+    "--perms",
+    "--delete",
+    "--update",
+    "--size-only",
+    "--itemize-changes",
+    "--stats",
+    "--verbose",
+    "--quiet",
+    "--dry-run",
+    "--inplace",
+    "--sparse",
+    "--whole-file",
+    "--no-whole-file")));
+
+  /** the options with values that the engine can handle. */
+  public final static Set<String> SUPPORTED_PREFIXES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+    "--block-size=",
+    "--checksum-choice=")));
+
+  /** the exit code for partial transfers due to errors. */
+  public final static int EXIT_PARTIAL = 23;
+
+  /** the exit code for transfers that got cancelled or timed out (like rsync on SIGTERM). */
+  public final static int EXIT_SIGNAL = 20;
+
+  /** the number of bytes to copy before checking whether to stop. */
+  public final static long CHUNK_SIZE = 64 * 1024 * 1024;
+
+  /** the pools, per parallelism, shared by all transfers. */
+  protected static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+  /** the sources. */
+  protected List<String> sources;
+
+  /** the destination. */
+  protected String destination;
+
+  /** whether to recurse. */
+  protected boolean recursive;
+
+  /** whether to preserve modification times. */
+  protected boolean times;
+
+  /** whether to preserve permissions. */
+  protected boolean perms;
+
+  /** whether to delete extraneous files. */
+  protected boolean delete;
+
+  /** whether to skip files that are newer in the destination. */
+  protected boolean update;
+
+  /** whether to only compare sizes. */
+  protected boolean sizeOnly;
+
+  /** whether to output itemized changes. */
+  protected boolean itemize;
+
+  /** whether to output stats. */
+  protected boolean stats;
+
+  /** whether to output the names of transferred files. */
+  protected boolean verbose;
+
+  /** whether to perform a trial run. */
+  protected boolean dryRun;
+
+  /** whether to copy whole files rather than using the delta algorithm (default for local transfers). */
+  protected boolean wholeFile;
+
+  /** whether to write directly to the target files. */
+  protected boolean inplace;
+
+  /** whether to create sparse files. */
+  protected boolean sparse;
+
+  /** the delta engine for updating existing files. */
+  protected DeltaEngine deltaEngine;
+
+  /** the parallelism to use. */
+  protected int parallelism;
+
+  /** the maximum time in seconds, less than 1 for no limit. */
+  protected int maxTime;
+
+  /** the time when to stop the transfer (msec), -1 for no limit. */
+  protected long deadline;
+
+  /** whether the transfer got cancelled. */
+  protected volatile boolean cancelled;
+
+  /** whether the transfer exceeded the maximum time. */
+  protected volatile boolean timedOut;
+
+  /** the error messages. */
+  protected ConcurrentLinkedQueue<String> errors;
+
+  /** the number of files and directories. */
+  protected AtomicLong numFiles;
+
+  /** the number of created files and directories. */
+  protected AtomicLong numCreated;
+
+  /** the number of deleted files and directories. */
+  protected AtomicLong numDeleted;
+
+  /** the number of transferred files. */
+  protected AtomicLong numTransferred;
+
+  /** the total file size. */
+  protected AtomicLong totalSize;
+
+  /** the transferred file size. */
+  protected AtomicLong transferredSize;
+
+  /** the data that had to be copied. */
+  protected AtomicLong literalData;
+
+  /** the data that was matched in existing files. */
+  protected AtomicLong matchedData;
+
+  /**
+   * Processes a single file.
+   */
+  public class FileTask
+    extends RecursiveTask<List<String>> {
+
+    private static final long serialVersionUID = 3437618283645712843L;
+
+    /** the source file. */
+    protected Path source;
+
+    /** the source attributes. */
+    protected BasicFileAttributes attrs;
+
+    /** the target file. */
+    protected Path target;
+
+    /** the relative path for the output. */
+    protected String relative;
+
+    /**
+     * Initializes the task.
+     *
+     * @param source	the source file
+     * @param attrs	the attributes of the source file
+     * @param target	the target file
+     * @param relative	the relative path for the output
+     */
+    public FileTask(Path source, BasicFileAttributes attrs, Path target, String relative) {
+      this.source   = source;
+      this.attrs    = attrs;
+      this.target   = target;
+      this.relative = relative;
+    }
+
+    /**
+     * Copies the file if necessary.
+     *
+     * @return		the output
+     */
+    @Override
+    protected List<String> compute() {
+      List<String>	result;
+
+      result = new ArrayList<>(1);
+      if (isStopped())
+	return result;
+      try {
+	copyFile(source, attrs, target, relative, result);
+      }
+      catch (IOException | RuntimeException e) {
+	// e.g., UncheckedIOException or IllegalStateException from the delta engine
+	if (!isStopped())
+	  error("send_files failed to open \"" + source + "\": " + e);
+      }
+
+      return result;
+    }
+  }
+
+  /**
+   * Processes a directory, forking tasks for its content.
+   */
+  public class DirTask
+    extends RecursiveTask<List<String>> {
+
+    private static final long serialVersionUID = -2817431478402936174L;
+
+    /** the source directory. */
+    protected Path source;
+
+    /** the target directory. */
+    protected Path target;
+
+    /** the relative path for the output (ending with "/"). */
+    protected String relative;
+
+    /**
+     * Initializes the task.
+     *
+     * @param source	the source directory
+     * @param target	the target directory
+     * @param relative	the relative path for the output, ending with "/"
+     */
+    public DirTask(Path source, Path target, String relative) {
+      this.source   = source;
+      this.target   = target;
+      this.relative = relative;
+    }
+
+    /**
+     * Synchronizes the directory.
+     *
+     * @return		the output
+     */
+    @Override
+    protected List<String> compute() {
+      List<String>				result;
+      List<ForkJoinTask<List<String>>>		tasks;
+      List<Path>				entries;
+      Set<String>				names;
+      BasicFileAttributes			srcAttrs;
+      BasicFileAttributes			dstAttrs;
+      BasicFileAttributes			attrs;
+      String					name;
+      String					rel;
+
+      result = new ArrayList<>();
+      if (isStopped())
+	return result;
+      try {
+	srcAttrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+	dstAttrs = readAttributes(target);
+	numFiles.incrementAndGet();
+	if (dstAttrs == null) {
+	  numCreated.incrementAndGet();
+	  output(result, "cd+++++++++", relative, true);
+	  if (!dryRun)
+	    Files.createDirectories(target);
+	}
+	else if (!dstAttrs.isDirectory()) {
+	  error("cannot overwrite non-directory \"" + target + "\" with a directory");
+	  return result;
+	}
+	else {
+	  outputChanges(result, 'd', srcAttrs, dstAttrs, false, relative);
+	}
+
+	try (Stream<Path> list = Files.list(source)) {
+	  entries = list.sorted().collect(Collectors.toList());
+	}
+	names = new HashSet<>();
+	tasks = new ArrayList<>();
+	for (Path entry: entries) {
+	  name = entry.getFileName().toString();
+	  names.add(name);
+	  rel   = relative.equals("./") ? name : relative + name;
+	  attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+	  if (attrs.isDirectory())
+	    tasks.add(new DirTask(entry, target.resolve(name), rel + "/"));
+	  else if (attrs.isRegularFile())
+	    tasks.add(new FileTask(entry, attrs, target.resolve(name), rel));
+	  else
+	    output(result, null, "skipping non-regular file \"" + rel + "\"", true);
+	}
+
+	if (delete && (dstAttrs != null))
+	  deleteExtraneous(names, result);
+
+	// the directory itself does not get modified before the content is done
+	for (ForkJoinTask<List<String>> task: invokeAll(tasks))
+	  result.addAll(task.join());
+
+	if (!dryRun)
+	  updateAttributes(srcAttrs, dstAttrs == null, null, source, target);
+      }
+      catch (IOException | RuntimeException e) {
+	error("failed to process directory \"" + source + "\": " + e);
+      }
+
+      return result;
+    }
+
+    /**
+     * Deletes files and directories in the target that are not present in
+     * the source.
+     *
+     * @param names	the names in the source
+     * @param output	for storing the output
+     * @throws IOException	if listing fails
+     */
+    protected void deleteExtraneous(Set<String> names, List<String> output) throws IOException {
+      List<Path>	extraneous;
+      String		rel;
+
+      try (Stream<Path> list = Files.list(target)) {
+	extraneous = list
+	  .filter(p -> !names.contains(p.getFileName().toString()))
+	  .sorted()
+	  .collect(Collectors.toList());
+      }
+      for (Path path: extraneous) {
+	rel = (relative.equals("./") ? "" : relative) + path.getFileName() + (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) ? "/" : "");
+	if (itemize)
+	  output.add("*deleting   " + rel);
+	else if (verbose)
+	  output.add("deleting " + rel);
+	numDeleted.incrementAndGet();
+	if (dryRun)
+	  continue;
+	try {
+	  FileUtils.forceDelete(path.toFile());
+	}
+	catch (IOException e) {
+	  error("delete_file: unlink \"" + path + "\" failed: " + e);
+	}
+      }
+    }
+  }
+
+  /**
+   * Initializes the engine with the settings of the rsync instance.
+   *
+   * @param rsync	the instance to get the sources, destination and options from
+   * @throws IllegalArgumentException	if the settings are not supported
+   * @throws Exception	if failed to assemble the options
+   * @see		#isSupported(RSync)
+   */
+  public LocalCopyEngine(RSync rsync) throws Exception {
+    if (!isSupported(rsync))
+      throw new IllegalArgumentException("Unsupported options or remote sources/destination: " + rsync.options());
+
+    sources     = new ArrayList<>(rsync.getSources());
+    destination = rsync.getDestination();
+    recursive   = rsync.isRecursive();
+    times       = rsync.isTimes();
+    perms       = rsync.isPerms();
+    delete      = rsync.isDelete();
+    update      = rsync.isUpdate();
+    sizeOnly    = rsync.isSizeOnly();
+    itemize     = rsync.isItemizeChanges();
+    stats       = rsync.isStats();
+    verbose     = rsync.isVerbose() && !rsync.isQuiet();
+    dryRun      = rsync.isDryRun();
+    wholeFile   = !rsync.isNoWholeFile();
+    inplace     = rsync.isInplace();
+    sparse      = rsync.isSparse();
+    deltaEngine = new DeltaEngine(rsync);
+    parallelism = Runtime.getRuntime().availableProcessors();
+    maxTime     = rsync.getMaxTime();
+  }
+
+  /**
+   * Sets the number of threads to use.
+   *
+   * @param value	the number of threads
+   * @return		itself
+   */
+  public LocalCopyEngine parallelism(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1, provided: " + value);
+    parallelism = value;
+    deltaEngine.parallelism(value);
+    return this;
+  }
+
+  /**
+   * Returns the number of threads to use.
+   *
+   * @return		the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Cancels the transfer: no further files get processed and copying of
+   * the current ones stops.
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * Returns whether the transfer got cancelled.
+   *
+   * @return		true if cancelled
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Returns whether the transfer has to stop, as it got cancelled or
+   * exceeded the maximum time.
+   *
+   * @return		true if to stop
+   */
+  protected boolean isStopped() {
+    if (cancelled || timedOut)
+      return true;
+    if ((deadline > -1) && (System.currentTimeMillis() > deadline))
+      timedOut = true;
+    return timedOut;
+  }
+
+  /**
+   * Returns the pool for the parallelism, shared by all transfers.
+   *
+   * @param parallelism	the parallelism
+   * @return		the pool
+   */
+  protected static ForkJoinPool pool(int parallelism) {
+    return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+  }
+
+  /**
+   * Checks whether the engine can handle the transfer: local sources and
+   * destination, no sshpass and only supported options.
+   *
+   * @param rsync	the instance to check
+   * @return		true if supported
+   * @throws Exception	if failed to assemble the options
+   */
+  public static boolean isSupported(RSync rsync) throws Exception {
+    if (SystemUtils.IS_OS_WINDOWS)
+      return false;
+    if (rsync.getSshPass() != null)
+      return false;
+    if (rsync.getSources().isEmpty() || (rsync.getDestination() == null))
+      return false;
+    if (TransferScheduler.parseHost(rsync.getDestination()) != null)
+      return false;
+    for (String source: rsync.getSources()) {
+      if (TransferScheduler.parseHost(source) != null)
+	return false;
+    }
+    for (String option: rsync.options()) {
+      if (!SUPPORTED_OPTIONS.contains(option) && SUPPORTED_PREFIXES.stream().noneMatch(option::startsWith))
+	return false;
+    }
+    return true;
+  }
+
+  /**
+   * Records the error.
+   *
+   * @param msg		the error message
+   */
+  protected void error(String msg) {
+    errors.add("rsync: " + msg);
+  }
+
+  /**
+   * Reads the attributes of the file without following links.
+   *
+   * @param file	the file to get the attributes for
+   * @return		the attributes, null if the file does not exist
+   * @throws IOException	if reading fails
+   */
+  protected BasicFileAttributes readAttributes(Path file) throws IOException {
+    if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS))
+      return null;
+    return Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+  }
+
+  /**
+   * Returns the modification time in seconds.
+   *
+   * @param attrs	the attributes to get the time from
+   * @return		the time
+   */
+  protected long modified(BasicFileAttributes attrs) {
+    return attrs.lastModifiedTime().toMillis() / 1000;
+  }
+
+  /**
+   * Returns the permissions, if supported by the file system.
+   *
+   * @param file	the file to get the permissions for
+   * @return		the permissions, null if not supported
+   * @throws IOException	if reading fails
+   */
+  protected Set<PosixFilePermission> permissions(Path file) throws IOException {
+    if (Files.getFileAttributeView(file, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS) == null)
+      return null;
+    return Files.getPosixFilePermissions(file, LinkOption.NOFOLLOW_LINKS);
+  }
+
+  /**
+   * Adds the line to the output, depending on verbosity/itemize settings.
+   *
+   * @param output	the output to add to
+   * @param flags	the itemize flags, null if a message
+   * @param relative	the relative path or message
+   * @param always	whether to output the name in verbose mode
+   */
+  protected void output(List<String> output, String flags, String relative, boolean always) {
+    if (flags == null) {
+      if (verbose || itemize)
+	output.add(relative);
+    }
+    else if (itemize) {
+      output.add(flags + " " + relative);
+    }
+    else if (verbose && always) {
+      output.add(relative);
+    }
+  }
+
+  /**
+   * Outputs the attribute changes of existing files/directories that do not
+   * get transferred.
+   *
+   * @param output	the output to add to
+   * @param type	the file type (f or d)
+   * @param srcAttrs	the source attributes
+   * @param dstAttrs	the target attributes
+   * @param transfer	whether the file gets transferred
+   * @param relative	the relative path
+   * @return		true if any attributes differ
+   */
+  protected boolean outputChanges(List<String> output, char type, BasicFileAttributes srcAttrs, BasicFileAttributes dstAttrs, boolean transfer, String relative) {
+    char[]	flags;
+    boolean	changed;
+
+    flags    = "...........".toCharArray();
+    flags[0] = transfer ? '>' : '.';
+    flags[1] = type;
+    changed  = false;
+    if ((type == 'f') && (srcAttrs.size() != dstAttrs.size())) {
+      flags[3] = 's';
+      changed  = true;
+    }
+    if (modified(srcAttrs) != modified(dstAttrs)) {
+      if (times) {
+	flags[4] = 't';
+	changed  = true;
+      }
+      else if (transfer) {
+	flags[4] = 'T';
+      }
+    }
+    if (changed || transfer)
+      output(output, new String(flags), relative, transfer);
+
+    return changed;
+  }
+
+  /**
+   * Copies the file if necessary.
+   *
+   * @param source	the source file
+   * @param srcAttrs	the source attributes
+   * @param target	the target file
+   * @param relative	the relative path for the output
+   * @param output	for storing the output
+   * @throws IOException	if copying fails
+   */
+  protected void copyFile(Path source, BasicFileAttributes srcAttrs, Path target, String relative, List<String> output) throws IOException {
+    BasicFileAttributes		dstAttrs;
+    Set<PosixFilePermission>	dstPerm;
+    boolean			transfer;
+    DeltaEngine.Result		result;
+
+    numFiles.incrementAndGet();
+    totalSize.addAndGet(srcAttrs.size());
+
+    dstAttrs = readAttributes(target);
+    if ((dstAttrs != null) && !dstAttrs.isRegularFile()) {
+      error("cannot overwrite non-regular file \"" + target + "\"");
+      return;
+    }
+
+    if (dstAttrs == null) {
+      numCreated.incrementAndGet();
+      output(output, ">f+++++++++", relative, true);
+      transfer = true;
+    }
+    else {
+      if (update && (modified(dstAttrs) > modified(srcAttrs)))
+	return;
+      if (sizeOnly)
+	transfer = (srcAttrs.size() != dstAttrs.size());
+      else
+	transfer = (srcAttrs.size() != dstAttrs.size()) || (modified(srcAttrs) != modified(dstAttrs));
+      outputChanges(output, 'f', srcAttrs, dstAttrs, transfer, relative);
+    }
+
+    if (transfer) {
+      numTransferred.incrementAndGet();
+      transferredSize.addAndGet(srcAttrs.size());
+    }
+
+    if (dryRun)
+      return;
+
+    // the temporary file that replaces the target has default permissions
+    dstPerm = ((dstAttrs != null) && !perms) ? permissions(target) : null;
+    if (transfer) {
+      if ((dstAttrs != null) && !wholeFile) {
+	result = deltaEngine.update(source, target);
+	literalData.addAndGet(result.getLiteralData());
+	matchedData.addAndGet(result.getMatchedData());
+      }
+      else if (inplace || sparse) {
+	deltaEngine.copy(source, target);
+	literalData.addAndGet(srcAttrs.size());
+      }
+      else {
+	transfer(source, target);
+	literalData.addAndGet(srcAttrs.size());
+      }
+    }
+    updateAttributes(srcAttrs, dstAttrs == null, dstPerm, source, target);
+  }
+
+  /**
+   * Copies the file via a temporary file in the target directory.
+   *
+   * @param source	the source file
+   * @param target	the target file
+   * @throws IOException	if copying fails
+   */
+  protected void transfer(Path source, Path target) throws IOException {
+    Path	tmp;
+    long	size;
+    long	pos;
+
+    tmp = target.resolveSibling("." + target.getFileName() + "." + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36));
+    try {
+      try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+	   FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+	size = in.size();
+	pos  = 0;
+	while (pos < size) {
+	  if (isStopped())
+	    throw new InterruptedIOException("Transfer stopped: " + source);
+	  pos += in.transferTo(pos, Math.min(size - pos, CHUNK_SIZE), out);
+	}
+      }
+      try {
+	Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+	Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * Returns the permissions that the umask of the process lets through, by
+   * creating a directory with default permissions.
+   *
+   * @return		the permissions, null if not supported by the file system
+   */
+  protected static synchronized Set<PosixFilePermission> umaskPermissions() {
+    Path	dir;
+
+    if (umaskPermissions == null) {
+      dir = Paths.get(System.getProperty("java.io.tmpdir"), ".rsync4j-umask-" + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36));
+      try {
+	Files.createDirectory(dir);
+	try {
+	  umaskPermissions = Collections.unmodifiableSet(Files.getPosixFilePermissions(dir));
+	}
+	finally {
+	  Files.deleteIfExists(dir);
+	}
+      }
+      catch (IOException | UnsupportedOperationException e) {
+	return null;
+      }
+    }
+
+    return umaskPermissions;
+  }
+
+  /**
+   * Updates modification time and permissions of the target, if enabled
+   * and different. Like rsync, without --perms, new files and directories
+   * get the permissions of the source masked by the umask and existing ones
+   * retain their permissions.
+   *
+   * @param srcAttrs	the source attributes
+   * @param created	whether the target got created
+   * @param dstPerm	the permissions of the target before it got replaced, null if not replaced
+   * @param source	the source
+   * @param target	the target
+   * @throws IOException	if updating fails
+   */
+  protected void updateAttributes(BasicFileAttributes srcAttrs, boolean created, Set<PosixFilePermission> dstPerm, Path source, Path target) throws IOException {
+    Set<PosixFilePermission>	perm;
+    Set<PosixFilePermission>	umask;
+
+    perm = null;
+    if (perms) {
+      perm = permissions(source);
+    }
+    else if (created) {
+      perm  = permissions(source);
+      umask = umaskPermissions();
+      if ((perm != null) && (umask != null)) {
+	perm = new HashSet<>(perm);
+	perm.retainAll(umask);
+      }
+      else {
+	perm = null;
+      }
+    }
+    else if (dstPerm != null) {
+      perm = dstPerm;
+    }
+    if ((perm != null) && !perm.equals(permissions(target)))
+      Files.setPosixFilePermissions(target, perm);
+    if (times)
+      Files.setLastModifiedTime(target, srcAttrs.lastModifiedTime());
+  }
+
+  /**
+   * Performs the transfer. Stops processing further files once cancelled
+   * (see {@link #cancel()}) or the maximum time of the rsync instance got
+   * exceeded, with exit code {@link #EXIT_SIGNAL}.
+   *
+   * @return		the result, with rsync-like output
+   */
+  public ProcessResult execute() {
+    ForkJoinPool		pool;
+    List<String>		output;
+    StringBuilder		stdOut;
+    StringBuilder		stdErr;
+    TransferStats		transferStats;
+    BasicFileAttributes		attrs;
+    Path			dest;
+    Path			src;
+    String			name;
+    boolean			destIsDir;
+    boolean			contents;
+
+    errors          = new ConcurrentLinkedQueue<>();
+    numFiles        = new AtomicLong();
+    numCreated      = new AtomicLong();
+    numDeleted      = new AtomicLong();
+    numTransferred  = new AtomicLong();
+    totalSize       = new AtomicLong();
+    transferredSize = new AtomicLong();
+    literalData     = new AtomicLong();
+    matchedData     = new AtomicLong();
+    output          = new ArrayList<>();
+    dest            = Paths.get(destination);
+    pool            = pool(parallelism);
+    timedOut        = false;
+    deadline        = (maxTime > 0) ? System.currentTimeMillis() + maxTime * 1000L : -1;
+
+    if (verbose)
+      output.add("sending incremental file list");
+    destIsDir = Files.isDirectory(dest) || destination.endsWith("/") || (sources.size() > 1);
+    for (String source: sources) {
+      if (isStopped())
+	break;
+      src      = Paths.get(source);
+      contents = source.endsWith("/");
+      name     = (src.getFileName() == null) ? "" : src.getFileName().toString();
+      try {
+	attrs = Files.readAttributes(src, BasicFileAttributes.class);
+      }
+      catch (IOException e) {
+	error("link_stat \"" + source + "\" failed: No such file or directory (2)");
+	continue;
+      }
+
+      if (attrs.isDirectory()) {
+	if (!recursive) {
+	  output(output, null, "skipping directory " + (contents ? "." : name), true);
+	  continue;
+	}
+	if (contents)
+	  output.addAll(pool.invoke(new DirTask(src, dest, "./")));
+	else
+	  output.addAll(pool.invoke(new DirTask(src, dest.resolve(name), name + "/")));
+      }
+      else if (attrs.isRegularFile()) {
+	try {
+	  if (destIsDir) {
+	    if (!dryRun)
+	      Files.createDirectories(dest);
+	    copyFile(src, attrs, dest.resolve(name), name, output);
+	  }
+	  else {
+	    copyFile(src, attrs, dest, name, output);
+	  }
+	}
+	catch (IOException e) {
+	  if (!isStopped())
+	    error("send_files failed to open \"" + source + "\": " + e);
+	}
+      }
+      else {
+	output(output, null, "skipping non-regular file \"" + name + "\"", true);
+      }
+    }
+
+    transferStats                          = new TransferStats();
+    transferStats.numFiles                 = numFiles.get();
+    transferStats.numCreatedFiles          = numCreated.get();
+    transferStats.numDeletedFiles          = numDeleted.get();
+    transferStats.numTransferredFiles      = numTransferred.get();
+    transferStats.totalFileSize            = totalSize.get();
+    transferStats.totalTransferredFileSize = transferredSize.get();
+    transferStats.literalData              = dryRun ? transferredSize.get() : literalData.get();
+    transferStats.matchedData              = matchedData.get();
+    transferStats.fileListSize             = 0;
+    transferStats.fileListGenerationTime   = 0;
+    transferStats.fileListTransferTime     = 0;
+    transferStats.totalBytesSent           = transferStats.literalData;
+    transferStats.totalBytesReceived       = 0;
+    transferStats.speedup                  = (double) totalSize.get() / Math.max(1, transferStats.literalData);
+
+    stdOut = new StringBuilder();
+    for (String line: output)
+      stdOut.append(line).append("\n");
+    if (stats) {
+      stdOut.append("\n").append(transferStats.format());
+    }
+    else if (verbose) {
+      stdOut.append("\n");
+      stdOut.append(String.format(Locale.US, "total size is %,d  speedup is %.2f", transferStats.totalFileSize, transferStats.speedup)).append("\n");
+    }
+    if (dryRun && (verbose || stats))
+      stdOut.insert(stdOut.length() - 1, " (DRY RUN)");
+
+    stdErr = new StringBuilder();
+    for (String error: errors)
+      stdErr.append(error).append("\n");
+    if (cancelled || timedOut) {
+      stdErr.append("rsync error: ").append(timedOut ? "maximum time of " + maxTime + "s exceeded" : "transfer cancelled").append(" (code ").append(EXIT_SIGNAL).append(")\n");
+      return new ProcessResult(EXIT_SIGNAL, stdOut.toString(), stdErr.toString(), timedOut);
+    }
+    if (!errors.isEmpty())
+      stdErr.append("rsync error: some files/attrs were not transferred (see previous errors) (code ").append(EXIT_PARTIAL).append(")\n");
+
+    return new ProcessResult(errors.isEmpty() ? 0 : EXIT_PARTIAL, stdOut.toString(), stdErr.toString(), false);
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelRSync.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.ShardPlanner;
+import com.github.fracpete.rsync4j.core.ShardPlanner.Shard;
+import com.github.fracpete.rsync4j.core.Utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * Splits the transfer of a single local source directory across several
+ * concurrent rsync processes. Each process receives a partition of the
+ * source's entries via a {@code --files-from} list.
+ * <br>
+ * The configured {@link RSync} instance only acts as a template and does not
+ * get modified. By default, the top-level entries of the source directory
+ * get distributed across the shards. With {@link #balanced(boolean)}, the
+ * whole tree gets scanned and the files get distributed by size using
+ * {@link ShardPlanner}. A custom partitioning can be supplied via
+ * {@link #shards(List)}.
+ * <br>
+ * NB: since each process only sees its own file list, {@code --delete} does
+ * not remove top-level entries on the receiving side that no longer exist
+ * in the source.
+ * <br>
+ * If one of the processes cannot be run, the processes of the other shards
+ * get killed.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ParallelRSync {
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the template. */
+  protected RSync template;
+
+  /** the number of concurrent processes. */
+  protected int numShards;
+
+  /** whether to balance the shards by bytes. */
+  protected boolean balanced;
+
+  /** the custom shards (paths relative to the source directory). */
+  protected List<List<String>> shards;
+
+  /**
+   * Initializes the runner.
+   *
+   * @param template	the rsync configuration to use for each process
+   */
+  public ParallelRSync(RSync template) {
+    this.template  = template;
+    this.numShards = Runtime.getRuntime().availableProcessors();
+    this.balanced  = false;
+    this.shards    = null;
+  }
+
+  /**
+   * Returns the template.
+   *
+   * @return		the rsync configuration
+   */
+  public RSync getTemplate() {
+    return template;
+  }
+
+  /**
+   * Sets the number of concurrent rsync processes.
+   *
+   * @param value	the number of processes, at least 1
+   * @return		itself
+   */
+  public ParallelRSync numShards(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Number of shards must be at least 1, provided: " + value);
+    numShards = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of concurrent rsync processes.
+   *
+   * @return		the number of processes
+   */
+  public int getNumShards() {
+    return numShards;
+  }
+
+  /**
+   * Sets whether to scan the whole source tree and balance the shards by
+   * bytes and number of files rather than distributing the top-level entries.
+   *
+   * @param value	true to balance
+   * @return		itself
+   */
+  public ParallelRSync balanced(boolean value) {
+    balanced = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to scan the whole source tree and balance the shards by
+   * bytes and number of files.
+   *
+   * @return		true if balancing
+   */
+  public boolean isBalanced() {
+    return balanced;
+  }
+
+  /**
+   * Sets the partitions to use instead of distributing the top-level entries
+   * of the source directory. Each partition is a list of paths relative to
+   * the source directory (or relative to its parent if the source does not
+   * end with a slash).
+   *
+   * @param value	the partitions, null to use the top-level entries
+   * @return		itself
+   */
+  public ParallelRSync shards(List<List<String>> value) {
+    shards = value;
+    return this;
+  }
+
+  /**
+   * Returns the custom partitions, if any.
+   *
+   * @return		the partitions, null if using the top-level entries
+   */
+  public List<List<String>> getShards() {
+    return shards;
+  }
+
+  /**
+   * Returns whether the path represents a remote location.
+   *
+   * @param path	the path to check
+   * @return		true if remote
+   */
+  protected boolean isRemote(String path) {
+    return path.matches("^[a-z]+://.*") || (path.matches("^[^/]+:.*") && !path.matches("^[a-zA-Z]:.*"));
+  }
+
+  /**
+   * Returns the single local source of the template.
+   *
+   * @return		the source
+   */
+  protected String getSource() {
+    String	source;
+
+    if (template.getSources().size() != 1)
+      throw new IllegalStateException("Exactly one source required, found: " + template.getSources().size());
+    if (!template.getFilesFrom().isEmpty())
+      throw new IllegalStateException("Template must not use --files-from: " + template.getFilesFrom());
+    source = template.getSources().get(0);
+    if (isRemote(source))
+      throw new IllegalStateException("Source must be a local directory: " + source);
+
+    return source;
+  }
+
+  /**
+   * Returns the directory that the file lists are relative to.
+   *
+   * @param source	the source of the template
+   * @return		the directory
+   */
+  protected File getBaseDir(String source) {
+    if (source.endsWith("/"))
+      return new File(source);
+    else
+      return new File(source).getAbsoluteFile().getParentFile();
+  }
+
+  /**
+   * Distributes the top-level entries of the source directory across the
+   * shards in a round-robin fashion or, if balancing, all the files of the
+   * tree by size.
+   *
+   * @param source	the source of the template
+   * @return		the partitions
+   */
+  protected List<List<String>> planShards(String source) {
+    List<List<String>>	result;
+    File		dir;
+    String		prefix;
+    String[]		names;
+    int			i;
+
+    result = new ArrayList<>();
+    dir    = new File(source);
+    prefix = source.endsWith("/") ? "" : dir.getName() + "/";
+    if (!dir.isDirectory())
+      throw new IllegalStateException("Source is not a directory: " + source);
+
+    if (balanced) {
+      for (Shard shard: new ShardPlanner().numShards(numShards).plan(dir.toPath(), prefix))
+	result.add(shard.getPaths());
+      if (result.isEmpty() && !prefix.isEmpty())
+	result.add(new ArrayList<>(Arrays.asList(prefix)));
+      return result;
+    }
+
+    names = dir.list();
+    if ((names == null) || (names.length == 0)) {
+      if (!prefix.isEmpty())
+	result.add(new ArrayList<>(Arrays.asList(prefix)));
+      return result;
+    }
+    Arrays.sort(names);
+    for (i = 0; i < Math.min(numShards, names.length); i++)
+      result.add(new ArrayList<>());
+    for (i = 0; i < names.length; i++)
+      result.get(i % result.size()).add(prefix + names[i]);
+
+    return result;
+  }
+
+  /**
+   * Returns whether the file lists get NUL-separated. As {@code --from0} also
+   * applies to the files read via {@code --exclude-from}, {@code --include-from}
+   * and merge filter rules, this is only the case if the template does not
+   * read any of these or already uses {@code --from0}.
+   *
+   * @return		true if NUL-separated, otherwise one path per line
+   * @see		RSync#hasRuleFiles()
+   */
+  protected boolean isFrom0() {
+    return template.isFrom0() || !template.hasRuleFiles();
+  }
+
+  /**
+   * Configures the rsync process for the shard.
+   *
+   * @param baseDir	the directory the file list is relative to
+   * @param fileList	the file with the paths
+   * @return		the configured instance
+   * @see		#isFrom0()
+   */
+  protected RSync configureShard(File baseDir, Path fileList) {
+    RSync	result;
+
+    result = template.copy();
+    // --files-from does not imply --recursive, even in archive mode
+    result.recursive(template.isRecursive() || template.isArchive());
+    result.filesFrom(fileList.toString());
+    result.from0(isFrom0());
+    result.source(baseDir.getPath() + File.separator);
+
+    return result;
+  }
+
+  /**
+   * Executes the rsync processes and waits for all of them to finish. At most
+   * {@link #getNumShards()} processes run at the same time. If one of the
+   * processes cannot be run (or the waiting gets interrupted), the processes
+   * of the other shards get killed.
+   *
+   * @return		the merged output
+   * @throws Exception	if execution fails
+   */
+  public ParallelRSyncOutput execute() throws Exception {
+    List<ProcessResult>				result;
+    String					source;
+    File					baseDir;
+    List<List<String>>				partitions;
+    List<Path>					fileLists;
+    List<CompletableFuture<ProcessResult>>	futures;
+    CompletableFuture<ProcessResult>		future;
+    Semaphore					slots;
+    RSync					shard;
+
+    source     = getSource();
+    baseDir    = getBaseDir(source);
+    partitions = (shards != null) ? shards : planShards(source);
+    result     = new ArrayList<>();
+    if (partitions.isEmpty()) {
+      result.add(template.executeAsync().get());
+      return new ParallelRSyncOutput(result);
+    }
+
+    logger.info("Running " + partitions.size() + " rsync process(es) for: " + source);
+    fileLists = new ArrayList<>();
+    futures   = new ArrayList<>();
+    slots     = new Semaphore(Math.min(numShards, partitions.size()));
+    try {
+      for (List<String> partition: partitions) {
+	slots.acquire();
+	if (futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally))
+	  break;
+	fileLists.add(Utils.writeFileList(partition, isFrom0()));
+	shard  = configureShard(baseDir, fileLists.get(fileLists.size() - 1));
+	future = shard.executeAsync();
+	future.whenComplete((r, t) -> slots.release());
+	futures.add(future);
+      }
+      for (CompletableFuture<ProcessResult> f: futures)
+	result.add(f.get());
+    }
+    finally {
+      // kills the processes that are still running after a failure
+      for (CompletableFuture<ProcessResult> f: futures)
+	f.cancel(true);
+      for (Path fileList: fileLists)
+	Files.deleteIfExists(fileList);
+    }
+
+    return new ParallelRSyncOutput(result);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelRSyncOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The merged output of the processes run by {@link ParallelRSync}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ParallelRSyncOutput {
+
+  /** the output of the individual processes. */
+  protected List<ProcessResult> outputs;
+
+  /**
+   * Initializes the output.
+   *
+   * @param outputs	the outputs of the individual processes, in shard order
+   */
+  public ParallelRSyncOutput(List<ProcessResult> outputs) {
+    this.outputs = Collections.unmodifiableList(new ArrayList<>(outputs));
+  }
+
+  /**
+   * Returns the outputs of the individual processes.
+   *
+   * @return		the outputs, in shard order
+   */
+  public List<ProcessResult> getOutputs() {
+    return outputs;
+  }
+
+  /**
+   * Returns the first non-zero exit code of the processes.
+   *
+   * @return		the exit code, 0 if all processes succeeded
+   */
+  public int getExitCode() {
+    for (ProcessResult output: outputs) {
+      if (output.getExitCode() != 0)
+	return output.getExitCode();
+    }
+    return 0;
+  }
+
+  /**
+   * Returns whether all processes succeeded.
+   *
+   * @return		true if all succeeded
+   */
+  public boolean hasSucceeded() {
+    return (getExitCode() == 0);
+  }
+
+  /**
+   * Returns the combined stdout output (e.g., itemized changes), in shard order.
+   *
+   * @return		the output
+   */
+  public String getStdOut() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    for (ProcessResult output: outputs)
+      append(result, output.getStdOut());
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the combined stderr output, in shard order.
+   *
+   * @return		the output
+   */
+  public String getStdErr() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    for (ProcessResult output: outputs)
+      append(result, output.getStdErr());
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the combined statistics of the processes.
+   *
+   * @return		the stats, null if none available (rsync run without {@code --stats})
+   */
+  public TransferStats getStats() {
+    TransferStats	result;
+    TransferStats	stats;
+
+    result = null;
+    for (ProcessResult output: outputs) {
+      stats = TransferStats.parse(output.getStdOut());
+      if (stats == null)
+	continue;
+      result = (result == null) ? stats : result.merge(stats);
+    }
+
+    return result;
+  }
+
+  /**
+   * Appends the text, ensuring that it is separated by a new line from the
+   * previous content.
+   *
+   * @param buffer	the buffer to append to
+   * @param text	the text to append
+   */
+  protected void append(StringBuilder buffer, String text) {
+    if (text.isEmpty())
+      return;
+    if ((buffer.length() > 0) && (buffer.charAt(buffer.length() - 1) != '\n'))
+      buffer.append('\n');
+    buffer.append(text);
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProgressEvent.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import java.io.Serializable;
+
+/**
+ * A progress update as output by {@code --progress} or {@code --info=progress2}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see ProgressMonitor
+ */
+public class ProgressEvent
+  implements Serializable {
+
+  private static final long serialVersionUID = 6021874658932402519L;
+
+  /** the bytes transferred so far (of the current file, or overall for progress2). */
+  protected long bytes;
+
+  /** the percentage. */
+  protected int percent;
+
+  /** the rate in bytes per second. */
+  protected double rate;
+
+  /** the estimated time remaining in seconds (or elapsed time for completed files). */
+  protected long eta;
+
+  /** the number of the transfer, -1 if not available. */
+  protected int xfrNumber;
+
+  /** the number of files still to check, -1 if not available. */
+  protected int toCheck;
+
+  /** the total number of files to check, -1 if not available. */
+  protected int total;
+
+  /** whether the file list is still being built incrementally (ir-chk). */
+  protected boolean incremental;
+
+  /**
+   * Initializes the event.
+   *
+   * @param bytes	the bytes transferred so far
+   * @param percent	the percentage
+   * @param rate	the rate in bytes per second
+   * @param eta		the remaining time in seconds
+   * @param xfrNumber	the number of the transfer, -1 if not available
+   * @param toCheck	the files still to check, -1 if not available
+   * @param total	the total number of files to check, -1 if not available
+   * @param incremental	whether the file list is still being built
+   */
+  public ProgressEvent(long bytes, int percent, double rate, long eta, int xfrNumber, int toCheck, int total, boolean incremental) {
+    this.bytes       = bytes;
+    this.percent     = percent;
+    this.rate        = rate;
+    this.eta         = eta;
+    this.xfrNumber   = xfrNumber;
+    this.toCheck     = toCheck;
+    this.total       = total;
+    this.incremental = incremental;
+  }
+
+  /**
+   * Returns the bytes transferred so far (of the current file, or overall for progress2).
+   *
+   * @return		the bytes
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the percentage.
+   *
+   * @return		the percentage (0-100)
+   */
+  public int getPercent() {
+    return percent;
+  }
+
+  /**
+   * Returns the transfer rate.
+   *
+   * @return		the rate in bytes per second
+   */
+  public double getRate() {
+    return rate;
+  }
+
+  /**
+   * Returns the estimated time remaining (elapsed time for completed files).
+   *
+   * @return		the time in seconds
+   */
+  public long getEta() {
+    return eta;
+  }
+
+  /**
+   * Returns the number of the transfer, only available once a file has completed.
+   *
+   * @return		the number, -1 if not available
+   */
+  public int getXfrNumber() {
+    return xfrNumber;
+  }
+
+  /**
+   * Returns the number of files still to check.
+   *
+   * @return		the number, -1 if not available
+   */
+  public int getToCheck() {
+    return toCheck;
+  }
+
+  /**
+   * Returns the total number of files to check.
+   *
+   * @return		the number, -1 if not available
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns whether the file list is still being built incrementally
+   * ("ir-chk" rather than "to-chk"), i.e., the total can still grow.
+   *
+   * @return		true if incremental
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Returns a short description.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "bytes=" + bytes
+      + ", percent=" + percent
+      + ", rate=" + rate
+      + ", eta=" + eta
+      + ", xfr#=" + xfrNumber
+      + ", to-chk=" + toCheck + "/" + total
+      + (incremental ? " (incremental)" : "");
+  }
+}
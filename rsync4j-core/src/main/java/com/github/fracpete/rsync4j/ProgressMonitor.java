@@ -0,0 +1,491 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProgressMonitor.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.StreamPump;
+import com.github.fracpete.rsync4j.core.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Monitors the stdout output of an rsync process run with
+ * {@link RSync#progress(boolean)} or {@code info("progress2")}.
+ * <br>
+ * rsync rewrites the progress line using carriage returns, therefore the
+ * output is read byte by byte and split on both '\r' and '\n'. Progress lines
+ * are parsed directly from the byte buffer and are only turned into
+ * {@link ProgressEvent} objects at the configured sampling interval, with
+ * the last update always getting published at the end of the output. A
+ * completed file (new "xfr#" number) that has not been published yet gets
+ * published with the next line once the interval has elapsed, even if that
+ * line is not a progress line. All other lines (e.g., file names) are
+ * passed on to the optional line listener.
+ * <br>
+ * Unit suffixes of sizes (K, M, G, T, output with {@code --human-readable})
+ * are interpreted as multiples of 1000, like {@link TransferStats} does.
+ * The rate is always computed by rsync using multiples of 1024, despite
+ * its "kB/s" suffix.
+ * <br>
+ * Instances are not thread-safe and should only monitor a single process.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ProgressMonitor {
+
+  /** the listener for progress updates. */
+  protected ProgressListener listener;
+
+  /** the listener for other lines. */
+  protected Consumer<String> lineListener;
+
+  /** the minimum interval between events in msec. */
+  protected long interval;
+
+  /** the time the last event was published (msec). */
+  protected long lastPublished;
+
+  /** the current line. */
+  protected byte[] line;
+
+  /** the length of the current line. */
+  protected int length;
+
+  /** the parse position in the current line. */
+  protected int pos;
+
+  /** the parsed bytes. */
+  protected long bytes;
+
+  /** the parsed percentage. */
+  protected int percent;
+
+  /** the parsed rate. */
+  protected double rate;
+
+  /** the parsed eta. */
+  protected long eta;
+
+  /** the parsed transfer number. */
+  protected int xfrNumber;
+
+  /** the transfer number of the last published event. */
+  protected int lastXfrNumber;
+
+  /** the parsed number of files to check. */
+  protected int toCheck;
+
+  /** the parsed total number of files to check. */
+  protected int total;
+
+  /** whether the file list is incremental. */
+  protected boolean incremental;
+
+  /** whether an unpublished update is pending. */
+  protected boolean pending;
+
+  /** the last published event. */
+  protected ProgressEvent lastEvent;
+
+  /** the stderr output. */
+  protected String stdErr;
+
+  /**
+   * Initializes the monitor with a sampling interval of 500ms.
+   *
+   * @param listener	the listener to notify
+   */
+  public ProgressMonitor(ProgressListener listener) {
+    this.listener      = listener;
+    this.lineListener  = null;
+    this.interval      = 500;
+    this.line          = new byte[256];
+    this.lastXfrNumber = -1;
+    this.stdErr        = "";
+  }
+
+  /**
+   * Sets the minimum interval between progress events.
+   *
+   * @param value	the interval in msec, 0 for every update
+   * @return		itself
+   */
+  public ProgressMonitor interval(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Interval cannot be negative, provided: " + value);
+    interval = value;
+    return this;
+  }
+
+  /**
+   * Returns the minimum interval between progress events.
+   *
+   * @return		the interval in msec
+   */
+  public long getInterval() {
+    return interval;
+  }
+
+  /**
+   * Sets the listener for lines that are not progress updates (e.g., file names).
+   *
+   * @param value	the listener, null to ignore these lines
+   * @return		itself
+   */
+  public ProgressMonitor lineListener(Consumer<String> value) {
+    lineListener = value;
+    return this;
+  }
+
+  /**
+   * Returns the listener for lines that are not progress updates.
+   *
+   * @return		the listener, null if none
+   */
+  public Consumer<String> getLineListener() {
+    return lineListener;
+  }
+
+  /**
+   * Returns the last published event.
+   *
+   * @return		the event, null if none published yet
+   */
+  public ProgressEvent getLastEvent() {
+    return lastEvent;
+  }
+
+  /**
+   * Returns the stderr output of the monitored process.
+   *
+   * @return		the output
+   */
+  public String getStdErr() {
+    return stdErr;
+  }
+
+  /**
+   * Starts the process and monitors its output until it finishes.
+   * stdout is read in the calling thread, stderr gets collected in the
+   * background.
+   *
+   * @param builder	the builder for the process
+   * @return		the exit code
+   * @throws Exception	if starting or monitoring fails
+   */
+  public int monitor(ProcessBuilder builder) throws Exception {
+    final Process		process;
+    CompletableFuture<String>	stderr;
+
+    process = builder.start();
+    stderr  = CompletableFuture.supplyAsync(() -> Utils.readFully(process.getErrorStream()), StreamPump.shared());
+    try {
+      process(process.getInputStream());
+      stdErr = stderr.join();
+      return process.waitFor();
+    }
+    catch (Exception e) {
+      Utils.destroy(process);
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the output until the end of the stream.
+   *
+   * @param in		the stream to read
+   * @throws IOException	if reading fails
+   */
+  public void process(InputStream in) throws IOException {
+    byte[]	buffer;
+    byte[]	larger;
+    int		read;
+    int		i;
+    byte	b;
+
+    buffer = new byte[8192];
+    while ((read = in.read(buffer)) != -1) {
+      for (i = 0; i < read; i++) {
+	b = buffer[i];
+	if ((b == '\r') || (b == '\n')) {
+	  endOfLine();
+	}
+	else {
+	  if (length == line.length) {
+	    larger = new byte[line.length * 2];
+	    System.arraycopy(line, 0, larger, 0, length);
+	    line = larger;
+	  }
+	  line[length++] = b;
+	}
+      }
+    }
+    endOfLine();
+    if (pending)
+      publish();
+  }
+
+  /**
+   * Handles the end of the current line.
+   */
+  protected void endOfLine() {
+    long	now;
+
+    if (length == 0)
+      return;
+
+    if (parse()) {
+      pending = true;
+      now     = System.currentTimeMillis();
+      if (now - lastPublished >= interval) {
+	lastPublished = now;
+	publish();
+      }
+    }
+    else {
+      // publish completed file (without waiting for the next progress line)
+      if (pending && (xfrNumber != lastXfrNumber)) {
+	now = System.currentTimeMillis();
+	if (now - lastPublished >= interval) {
+	  lastPublished = now;
+	  publish();
+	}
+      }
+      if (lineListener != null)
+	lineListener.accept(new String(line, 0, length, StandardCharsets.UTF_8));
+    }
+    length = 0;
+  }
+
+  /**
+   * Publishes the parsed values as event.
+   */
+  protected void publish() {
+    pending       = false;
+    lastXfrNumber = xfrNumber;
+    lastEvent     = new ProgressEvent(bytes, percent, rate, eta, xfrNumber, toCheck, total, incremental);
+    listener.progress(lastEvent);
+  }
+
+  /**
+   * Skips spaces.
+   */
+  protected void skipSpaces() {
+    while ((pos < length) && (line[pos] == ' '))
+      pos++;
+  }
+
+  /**
+   * Returns whether the current line continues with the text.
+   *
+   * @param text	the text to check
+   * @return		true if a match (position is moved after the text)
+   */
+  protected boolean matches(String text) {
+    int		i;
+
+    if (pos + text.length() > length)
+      return false;
+    for (i = 0; i < text.length(); i++) {
+      if (line[pos + i] != text.charAt(i))
+	return false;
+    }
+    pos += text.length();
+    return true;
+  }
+
+  /**
+   * Parses a number, skipping thousands separators.
+   *
+   * @return		the number, NaN if none
+   */
+  protected double parseNumber() {
+    double	result;
+    double	fraction;
+    boolean	digits;
+    boolean	decimal;
+    byte	b;
+
+    result   = 0;
+    fraction = 1;
+    digits   = false;
+    decimal  = false;
+    while (pos < length) {
+      b = line[pos];
+      if ((b >= '0') && (b <= '9')) {
+	digits = true;
+	if (decimal) {
+	  fraction /= 10;
+	  result   += (b - '0') * fraction;
+	}
+	else {
+	  result = result * 10 + (b - '0');
+	}
+      }
+      else if ((b == '.') && !decimal) {
+	decimal = true;
+      }
+      else if (b != ',') {
+	break;
+      }
+      pos++;
+    }
+
+    return digits ? result : Double.NaN;
+  }
+
+  /**
+   * Parses an optional unit prefix (K, M, G, T) and returns the multiplier.
+   *
+   * @param base	the base of the unit, 1000 for sizes, 1024 for the rate
+   * @return		the multiplier
+   */
+  protected double parseUnit(double base) {
+    if (pos >= length)
+      return 1;
+    switch (line[pos]) {
+      case 'k':
+      case 'K':
+	pos++;
+	return base;
+      case 'M':
+	pos++;
+	return base * base;
+      case 'G':
+	pos++;
+	return base * base * base;
+      case 'T':
+	pos++;
+	return base * base * base * base;
+      default:
+	return 1;
+    }
+  }
+
+  /**
+   * Parses the current line as progress line, e.g.:
+   * "  1,238,099 100%  146.38kB/s    0:00:08 (xfr#5, to-chk=169/396)".
+   * Only updates the parsed values if it is a progress line, as other lines
+   * (e.g., file names like "2024 report.txt") can start with a number too.
+   *
+   * @return		true if a progress line
+   */
+  protected boolean parse() {
+    double	num;
+    double	h;
+    double	m;
+    double	s;
+    long	newBytes;
+    int		newPercent;
+    double	newRate;
+    int		newXfrNumber;
+    int		newToCheck;
+    int		newTotal;
+    boolean	newIncremental;
+
+    pos = 0;
+    skipSpaces();
+
+    // bytes
+    num = parseNumber();
+    if (Double.isNaN(num))
+      return false;
+    newBytes = (long) (num * parseUnit(1000.0));
+    if ((pos >= length) || (line[pos] != ' '))
+      return false;
+    skipSpaces();
+
+    // percent
+    num = parseNumber();
+    if (Double.isNaN(num) || !matches("%"))
+      return false;
+    newPercent = (int) num;
+    skipSpaces();
+
+    // rate
+    num = parseNumber();
+    if (Double.isNaN(num))
+      return false;
+    newRate = num * parseUnit(1024.0);
+    if (!matches("B/s"))
+      return false;
+    skipSpaces();
+
+    // eta
+    h = parseNumber();
+    if (Double.isNaN(h) || !matches(":"))
+      return false;
+    m = parseNumber();
+    if (Double.isNaN(m))
+      return false;
+    if (matches(":")) {
+      s = parseNumber();
+      if (Double.isNaN(s))
+	return false;
+    }
+    else {
+      // only mm:ss
+      s = m;
+      m = h;
+      h = 0;
+    }
+
+    // optional "(xfr#5, to-chk=169/396)"
+    newXfrNumber   = -1;
+    newToCheck     = -1;
+    newTotal       = -1;
+    newIncremental = false;
+    skipSpaces();
+    if (matches("(xfr#") || matches("(xfer#")) {
+      num = parseNumber();
+      if (!Double.isNaN(num))
+	newXfrNumber = (int) num;
+      matches(",");
+      skipSpaces();
+      if (matches("ir-chk="))
+	newIncremental = true;
+      if (newIncremental || matches("to-chk=") || matches("to-check=")) {
+	num = parseNumber();
+	if (!Double.isNaN(num))
+	  newToCheck = (int) num;
+	if (matches("/")) {
+	  num = parseNumber();
+	  if (!Double.isNaN(num))
+	    newTotal = (int) num;
+	}
+      }
+    }
+
+    bytes       = newBytes;
+    percent     = newPercent;
+    rate        = newRate;
+    eta         = (long) (h * 3600 + m * 60 + s);
+    xfrNumber   = newXfrNumber;
+    toCheck     = newToCheck;
+    total       = newTotal;
+    incremental = newIncremental;
+
+    return true;
+  }
+}
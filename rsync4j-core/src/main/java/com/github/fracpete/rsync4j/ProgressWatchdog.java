@@ -0,0 +1,534 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProgressWatchdog.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+import com.github.fracpete.rsync4j.core.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Executes rsync and terminates it if it stops making forward progress,
+ * rather than after a fixed wall time. Progress means more bytes in the
+ * {@code --info=progress2} output or new itemized lines
+ * ({@code --itemize-changes}), both of which get enabled automatically.
+ * Stalled processes can be restarted a number of times; all runs then use
+ * {@code --partial}, so that the restarts resume interrupted files. The
+ * maximum time of the rsync instance (see {@link RSync#maxTime(int)}) still
+ * applies as an upper limit for each run.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ProgressWatchdog {
+
+  /**
+   * Why a process got terminated.
+   */
+  public enum Reason {
+    /** no output at all within the window. */
+    NO_OUTPUT,
+    /** output, but no forward progress within the window. */
+    NO_PROGRESS,
+    /** exceeded the maximum time. */
+    MAX_TIME
+  }
+
+  /**
+   * The last observed position of a run.
+   */
+  public static class Position {
+
+    /** the bytes transferred. */
+    protected long bytes;
+
+    /** the number of files transferred. */
+    protected int xfrNumber = -1;
+
+    /** the last itemized path. */
+    protected String path;
+
+    /** the last progress event. */
+    protected ProgressEvent event;
+
+    /** when the last output was observed (msec). */
+    protected long lastOutput;
+
+    /** when the last progress was observed (msec). */
+    protected long lastProgress;
+
+    /**
+     * Returns the bytes transferred.
+     *
+     * @return		the bytes
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Returns the last itemized path.
+     *
+     * @return		the path, null if none observed
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Returns the last progress event.
+     *
+     * @return		the event, null if none observed
+     */
+    public ProgressEvent getEvent() {
+      return event;
+    }
+
+    /**
+     * Returns a copy of the position.
+     *
+     * @return		the copy
+     */
+    protected synchronized Position copy() {
+      Position	result;
+
+      result              = new Position();
+      result.bytes        = bytes;
+      result.xfrNumber    = xfrNumber;
+      result.path         = path;
+      result.event        = event;
+      result.lastOutput   = lastOutput;
+      result.lastProgress = lastProgress;
+
+      return result;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "bytes=" + bytes + ", path=" + path;
+    }
+  }
+
+  /**
+   * Details on a terminated run.
+   */
+  public static class Stall {
+
+    /** the run (1-based). */
+    protected int run;
+
+    /** the reason. */
+    protected Reason reason;
+
+    /** the time since the last progress (msec). */
+    protected long idle;
+
+    /** the position at the time of termination. */
+    protected Position position;
+
+    /**
+     * Returns the run that got terminated.
+     *
+     * @return		the run, 1-based
+     */
+    public int getRun() {
+      return run;
+    }
+
+    /**
+     * Returns the reason for the termination.
+     *
+     * @return		the reason
+     */
+    public Reason getReason() {
+      return reason;
+    }
+
+    /**
+     * Returns the time since the last progress.
+     *
+     * @return		the time in msec
+     */
+    public long getIdle() {
+      return idle;
+    }
+
+    /**
+     * Returns the last observed position.
+     *
+     * @return		the position
+     */
+    public Position getPosition() {
+      return position;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "run " + run + ": " + reason + " for " + idle + "ms at " + position;
+    }
+  }
+
+  /**
+   * The outcome of the execution.
+   */
+  public static class Result {
+
+    /** the result of the last run. */
+    protected ProcessResult result;
+
+    /** the stalls. */
+    protected List<Stall> stalls = new ArrayList<>();
+
+    /** whether the last run got terminated. */
+    protected boolean terminated;
+
+    /**
+     * Returns the result of the last run.
+     *
+     * @return		the result
+     */
+    public ProcessResult getResult() {
+      return result;
+    }
+
+    /**
+     * Returns the stalls that occurred.
+     *
+     * @return		the stalls
+     */
+    public List<Stall> getStalls() {
+      return Collections.unmodifiableList(stalls);
+    }
+
+    /**
+     * Returns whether the last run got terminated.
+     *
+     * @return		true if terminated
+     */
+    public boolean isTerminated() {
+      return terminated;
+    }
+
+    /**
+     * Returns whether the last run succeeded.
+     *
+     * @return		true if successful
+     */
+    public boolean isSuccess() {
+      return !terminated && result.hasSucceeded();
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "exit=" + result.getExitCode() + ", terminated=" + terminated + ", stalls=" + stalls;
+    }
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the rsync setup. */
+  protected RSync rsync;
+
+  /** the window without progress before terminating (msec). */
+  protected long window;
+
+  /** the number of restarts. */
+  protected int restarts;
+
+  /** the time between terminating and killing (msec). */
+  protected long grace;
+
+  /**
+   * Initializes the watchdog with a 60 second window and no restarts.
+   *
+   * @param rsync	the rsync setup to execute
+   */
+  public ProgressWatchdog(RSync rsync) {
+    this.rsync    = rsync.copy();
+    this.window   = 60000;
+    this.restarts = 0;
+    this.grace    = 5000;
+  }
+
+  /**
+   * Sets the time without progress after which the process gets terminated.
+   *
+   * @param value	the time in msec
+   * @return		itself
+   */
+  public ProgressWatchdog window(long value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Window must be at least 1, provided: " + value);
+    window = value;
+    return this;
+  }
+
+  /**
+   * Returns the time without progress after which the process gets terminated.
+   *
+   * @return		the time in msec
+   */
+  public long getWindow() {
+    return window;
+  }
+
+  /**
+   * Sets how often a stalled process gets restarted.
+   *
+   * @param value	the number of restarts, 0 to only terminate
+   * @return		itself
+   */
+  public ProgressWatchdog restarts(int value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Restarts cannot be negative, provided: " + value);
+    restarts = value;
+    return this;
+  }
+
+  /**
+   * Returns how often a stalled process gets restarted.
+   *
+   * @return		the number of restarts
+   */
+  public int getRestarts() {
+    return restarts;
+  }
+
+  /**
+   * Sets the time to wait after terminating (SIGTERM) before killing the
+   * process and its children.
+   *
+   * @param value	the time in msec
+   * @return		itself
+   */
+  public ProgressWatchdog grace(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Grace time cannot be negative, provided: " + value);
+    grace = value;
+    return this;
+  }
+
+  /**
+   * Returns the time to wait after terminating before killing.
+   *
+   * @return		the time in msec
+   */
+  public long getGrace() {
+    return grace;
+  }
+
+  /**
+   * Configures the rsync instance for the run.
+   *
+   * @param run		the run (1-based)
+   * @return		the configured copy
+   */
+  protected RSync configure(int run) {
+    RSync	result;
+
+    result = rsync.copy()
+      .itemizeChanges(true)
+      .info(rsync.getInfo().isEmpty() ? "progress2" : rsync.getInfo() + ",progress2");
+    // the first run needs to keep partial files already for restarts to resume them
+    if (restarts > 0)
+      result.partial(true);
+
+    return result;
+  }
+
+  /**
+   * Checks whether the run has stalled and terminates it if so.
+   *
+   * @param process	the process to check
+   * @param position	the position to check
+   * @param started	when the run started (msec)
+   * @param stall	the stall to fill in
+   * @param timer	for scheduling the kill
+   */
+  protected void check(Process process, Position position, long started, Stall stall, ScheduledExecutorService timer) {
+    Position	current;
+    long	now;
+
+    synchronized (stall) {
+      if (stall.reason != null)
+	return;
+
+      now     = System.currentTimeMillis();
+      current = position.copy();
+      if ((rsync.getMaxTime() > 0) && (now - started >= rsync.getMaxTime() * 1000L))
+	stall.reason = Reason.MAX_TIME;
+      else if (now - current.lastProgress >= window)
+	stall.reason = (current.lastOutput == started) ? Reason.NO_OUTPUT : Reason.NO_PROGRESS;
+      else
+	return;
+
+      stall.idle     = now - current.lastProgress;
+      stall.position = current;
+    }
+    logger.warning("Terminating rsync for " + rsync.getDestination() + ": " + stall);
+    process.destroy();
+    timer.schedule(() -> {
+      if (process.isAlive())
+	Utils.destroy(process);
+    }, grace, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Performs a single run.
+   *
+   * @param run		the run (1-based)
+   * @param timer	for checking the progress
+   * @param result	the result to update
+   * @return		the stall, null if not terminated
+   * @throws Exception	if execution fails or interrupted
+   */
+  protected Stall run(int run, ScheduledExecutorService timer, Result result) throws Exception {
+    final Position		position;
+    final Stall			stall;
+    final StringBuilder		stdout;
+    final Process		process;
+    final long			started;
+    ScheduledFuture<?>		checker;
+    ProgressMonitor		monitor;
+    CompletableFuture<String>	stderr;
+    int				exitCode;
+
+    position  = new Position();
+    stall     = new Stall();
+    stall.run = run;
+    stdout    = new StringBuilder();
+    monitor   = new ProgressMonitor(e -> {
+      synchronized (position) {
+	position.lastOutput = System.currentTimeMillis();
+	if ((e.getBytes() != position.bytes) || (e.getXfrNumber() != position.xfrNumber))
+	  position.lastProgress = position.lastOutput;
+	position.bytes     = e.getBytes();
+	position.xfrNumber = e.getXfrNumber();
+	position.event     = e;
+      }
+    });
+    monitor.interval(0);
+    monitor.lineListener(l -> {
+      ItemizedChange change = ItemizedChange.parse(l);
+      stdout.append(l).append("\n");
+      synchronized (position) {
+	position.lastOutput = System.currentTimeMillis();
+	if (change != null) {
+	  position.lastProgress = position.lastOutput;
+	  position.path         = change.getPath();
+	}
+      }
+    });
+
+    process               = configure(run).start();
+    started               = System.currentTimeMillis();
+    position.lastOutput   = started;
+    position.lastProgress = started;
+    stderr                = readStdErr(process);
+    checker               = timer.scheduleWithFixedDelay(
+      () -> check(process, position, started, stall, timer),
+      window / 10 + 1, window / 10 + 1, TimeUnit.MILLISECONDS);
+    try {
+      monitor.process(process.getInputStream());
+      exitCode = process.waitFor();
+    }
+    catch (Exception e) {
+      Utils.destroy(process);
+      throw e;
+    }
+    finally {
+      checker.cancel(false);
+    }
+
+    synchronized (stall) {
+      result.result     = new ProcessResult(exitCode, stdout.toString(), stderr.join(), stall.reason == Reason.MAX_TIME);
+      result.terminated = (stall.reason != null);
+      return result.terminated ? stall : null;
+    }
+  }
+
+  /**
+   * Executes rsync and waits for its completion, terminating or restarting
+   * it if it stalls.
+   *
+   * @return		the result
+   * @throws Exception	if execution fails or interrupted
+   */
+  public Result execute() throws Exception {
+    Result			result;
+    ScheduledExecutorService	timer;
+    Stall			stall;
+    int				run;
+
+    result = new Result();
+    timer  = Executors.newSingleThreadScheduledExecutor();
+    try {
+      for (run = 1; ; run++) {
+	stall = run(run, timer, result);
+	if (stall == null)
+	  break;
+	result.stalls.add(stall);
+	if ((stall.reason == Reason.MAX_TIME) || (run > restarts))
+	  break;
+	logger.info("Restarting rsync for " + rsync.getDestination() + " (restart " + run + "/" + restarts + ")");
+      }
+    }
+    finally {
+      timer.shutdownNow();
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the stderr of the process in the background.
+   *
+   * @param process	the process to read from
+   * @return		the future for the stderr output
+   */
+  protected CompletableFuture<String> readStdErr(Process process) {
+    return CompletableFuture.supplyAsync(() -> Utils.readFully(process.getErrorStream()), StreamPump.shared());
+  }
+}
@@ -15,19 +15,35 @@
 
 /*
  * RSync.java
- * Copyright (C) 2017-2025 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2017-2026 University of Waikato, Hamilton, New Zealand
  */
 package com.github.fracpete.rsync4j;
 
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
 import com.github.fracpete.rsync4j.core.AbstractBinaryWithTimeout;
 import com.github.fracpete.rsync4j.core.Binaries;
+import com.github.fracpete.rsync4j.core.BoundedProcessOutput;
+import com.github.fracpete.rsync4j.core.FileProcessOutput;
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+import com.github.fracpete.rsync4j.core.Utils;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.Namespace;
 import org.apache.commons.lang3.SystemUtils;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
 
 /**
  * Wrapper for rsync binary.
@@ -37,6 +53,9 @@ import java.util.List;
 public class RSync
   extends AbstractBinaryWithTimeout {
 
+  /** the default number of sources above which they get passed via stdin. */
+  public final static int DEFAULT_STDIN_THRESHOLD = 4096;
+
   /** the source path/url. */
   protected List<String> sources;
 
@@ -133,6 +152,8 @@ public class RSync
 
   protected boolean whole_file;
 
+  protected boolean no_whole_file;
+
   protected boolean one_file_system;
 
   protected String block_size;
@@ -309,6 +330,10 @@ public class RSync
 
   protected SshPass sshPass;
 
+  protected boolean javaEngine;
+
+  protected int stdinThreshold;
+
   /**
    * Resets the members.
    */
@@ -362,6 +387,7 @@ public class RSync
     preallocate = false;
     dry_run = false;
     whole_file = false;
+    no_whole_file = false;
     one_file_system = false;
     block_size = "";
     rsh = "";
@@ -449,6 +475,8 @@ public class RSync
     copy_as = "";
     checksum_choice = "";
     sshPass = null;
+    javaEngine = false;
+    stdinThreshold = DEFAULT_STDIN_THRESHOLD;
   }
 
   /**
@@ -1200,6 +1228,21 @@ public class RSync
     return this;
   }
 
+  /**
+   * rsync option: --no-whole-file/--no-W
+   */
+  public boolean isNoWholeFile() {
+    return no_whole_file;
+  }
+
+  /**
+   * rsync option: --no-whole-file/--no-W
+   */
+  public RSync noWholeFile(boolean no_whole_file) {
+    this.no_whole_file = no_whole_file;
+    return this;
+  }
+
   /**
    * rsync option: --one-file-system/-x
    */
@@ -2664,6 +2707,345 @@ public class RSync
     return sshPass;
   }
 
+  /**
+   * Sets whether to perform local-to-local transfers within the JVM rather
+   * than spawning rsync, if only options supported by {@link LocalCopyEngine}
+   * are used. Only applies to {@link #executeAsync(Executor)}.
+   *
+   * @param value   true to use the Java engine where possible
+   * @return        itself
+   */
+  public RSync javaEngine(boolean value) {
+    javaEngine = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to perform local-to-local transfers within the JVM
+   * where possible.
+   *
+   * @return        true if to use the Java engine where possible
+   */
+  public boolean isJavaEngine() {
+    return javaEngine;
+  }
+
+  /**
+   * Sets the number of sources above which they no longer get passed as
+   * command-line arguments (avoiding the operating system's limit on the
+   * size of the command-line), but as NUL-separated list via stdin
+   * ({@code --files-from=- --from0}). Only applies if the sources have no
+   * trailing slash and share the same location (local absolute, local
+   * relative or the same remote host), no files-from list has been set and
+   * no rule files get read (see {@link #hasRuleFiles()}) unless --from0 has
+   * been set explicitly. Only applies to processes launched by rsync4j ({@link #start()}, the
+   * execute methods), as {@link #builder()} has to pass the sources as
+   * command-line arguments.
+   *
+   * @param value	the threshold, less than 1 to always use the command-line
+   * @return		itself
+   * @see		#isStdinSources()
+   */
+  public RSync stdinThreshold(int value) {
+    stdinThreshold = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of sources above which they get passed via stdin.
+   *
+   * @return		the threshold, less than 1 if always using the command-line
+   */
+  public int getStdinThreshold() {
+    return stdinThreshold;
+  }
+
+  /**
+   * Returns whether the sources get passed via stdin rather than as
+   * command-line arguments.
+   *
+   * @return		true if passed via stdin
+   * @see		#stdinThreshold(int)
+   */
+  public boolean isStdinSources() {
+    return (stdinBase() != null);
+  }
+
+  /**
+   * Returns the location of the sources if they have to be passed via stdin,
+   * i.e., "/" or "." with an optional "host:" prefix.
+   *
+   * @return		the location, null if to pass them as command-line arguments
+   */
+  protected String stdinBase() {
+    String	prefix;
+    String	host;
+    String	path;
+    Boolean	absolute;
+    int		pos;
+
+    if ((stdinThreshold < 1) || (sources.size() <= stdinThreshold))
+      return null;
+    if (!getFilesFrom().isEmpty() || !getReadBatch().isEmpty())
+      return null;
+    // --from0 would change how exclude/include files get read
+    if (!isFrom0() && hasRuleFiles())
+      return null;
+
+    prefix   = null;
+    absolute = null;
+    for (String source: sources) {
+      // the contents of a directory and daemon modules cannot be expressed as paths relative to a common location
+      if (source.endsWith("/") || source.contains("::") || source.startsWith("rsync://"))
+	return null;
+      pos  = source.indexOf(':');
+      host = ((pos > 1) && (source.lastIndexOf('/', pos) == -1)) ? source.substring(0, pos + 1) : "";
+      path = source.substring(host.length());
+      if (path.isEmpty() || (isRelative() && path.contains("/./")))
+	return null;
+      if (prefix == null) {
+	prefix   = host;
+	absolute = path.startsWith("/");
+      }
+      else if (!prefix.equals(host) || (absolute != path.startsWith("/"))) {
+	return null;
+      }
+    }
+
+    return prefix + (absolute ? "/" : ".");
+  }
+
+  /**
+   * Returns whether rules get read from files, i.e., --exclude-from,
+   * --include-from or merge rules of --filter (also via the additional
+   * options). rsync reads these files NUL-separated as well when using
+   * --from0, hence lists of paths for --files-from must only be NUL-separated
+   * if no rule files are used or --from0 has been requested explicitly.
+   *
+   * @return		true if rule files are used
+   * @see		#isFrom0()
+   */
+  public boolean hasRuleFiles() {
+    String	rule;
+
+    if ((getExcludeFrom().length > 0) || (getIncludeFrom().length > 0))
+      return true;
+    for (String filter: getFilter()) {
+      rule = filter.trim();
+      if (rule.startsWith("merge") || rule.startsWith("dir-merge") || rule.startsWith(".") || rule.startsWith(":"))
+	return true;
+    }
+    if (getAdditional() != null) {
+      for (String arg: getAdditional()) {
+	if (arg.equals("-F") || arg.startsWith("-f") || arg.startsWith("--filter") || arg.startsWith("--exclude-from") || arg.startsWith("--include-from"))
+	  return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the sources relative to the location determined by
+   * {@link #stdinBase()}.
+   *
+   * @param base	the location
+   * @return		the relative paths
+   */
+  protected List<String> stdinPaths(String base) {
+    List<String>	result;
+    int			offset;
+
+    result = new ArrayList<>(sources.size());
+    offset = base.length() - 1;
+    if (base.endsWith("/"))
+      offset++;
+    for (String source: sources)
+      result.add(source.substring(offset));
+
+    return result;
+  }
+
+  /**
+   * Returns a copy of this instance, e.g., for using this instance as a
+   * template for several rsync processes that only differ in a few options.
+   * The {@link SshPass} instance, if any, is shared.
+   *
+   * @return		the copy
+   */
+  public RSync copy() {
+    RSync	result;
+
+    result = new RSync();
+    result.outputCommandline(getOutputCommandline());
+    result.outputSingleCommandline(getOutputSingleCommandline());
+    result.maxTime(getMaxTime());
+    result.sources = new ArrayList<>(sources);
+    result.destination = destination;
+    result.verbose = verbose;
+    result.info = info;
+    result.debug = debug;
+    result.msgs2stderr = msgs2stderr;
+    result.quiet = quiet;
+    result.no_motd = no_motd;
+    result.checksum = checksum;
+    result.archive = archive;
+    result.recursive = recursive;
+    result.relative = relative;
+    result.no_implied_dirs = no_implied_dirs;
+    result.backup = backup;
+    result.backup_dir = backup_dir;
+    result.suffix = suffix;
+    result.update = update;
+    result.inplace = inplace;
+    result.append = append;
+    result.append_verify = append_verify;
+    result.dirs = dirs;
+    result.links = links;
+    result.copy_links = copy_links;
+    result.copy_unsafe_links = copy_unsafe_links;
+    result.safe_links = safe_links;
+    result.munge_links = munge_links;
+    result.copy_dirlinks = copy_dirlinks;
+    result.keep_dirlinks = keep_dirlinks;
+    result.hard_links = hard_links;
+    result.perms = perms;
+    result.executability = executability;
+    result.chmod = chmod;
+    result.acls = acls;
+    result.xattrs = xattrs;
+    result.owner = owner;
+    result.group = group;
+    result.devices = devices;
+    result.specials = specials;
+    result.times = times;
+    result.omit_dir_times = omit_dir_times;
+    result.omit_link_times = omit_link_times;
+    result.super_ = super_;
+    result.fake_super = fake_super;
+    result.sparse = sparse;
+    result.preallocate = preallocate;
+    result.dry_run = dry_run;
+    result.whole_file = whole_file;
+    result.no_whole_file = no_whole_file;
+    result.one_file_system = one_file_system;
+    result.block_size = block_size;
+    result.rsh = rsh;
+    result.rsync_path = rsync_path;
+    result.existing = existing;
+    result.ignore_existing = ignore_existing;
+    result.remove_source_files = remove_source_files;
+    result.delete = delete;
+    result.delete_before = delete_before;
+    result.delete_during = delete_during;
+    result.delete_delay = delete_delay;
+    result.delete_after = delete_after;
+    result.delete_excluded = delete_excluded;
+    result.ignore_missing_args = ignore_missing_args;
+    result.delete_missing_args = delete_missing_args;
+    result.ignore_errors = ignore_errors;
+    result.force = force;
+    result.max_delete = max_delete;
+    result.max_size = max_size;
+    result.min_size = min_size;
+    result.partial = partial;
+    result.partial_dir = partial_dir;
+    result.delay_updates = delay_updates;
+    result.prune_empty_dirs = prune_empty_dirs;
+    result.numeric_ids = numeric_ids;
+    result.usermap = usermap;
+    result.groupmap = groupmap;
+    result.chown = chown;
+    result.timeout = timeout;
+    result.contimeout = contimeout;
+    result.ignore_times = ignore_times;
+    result.remote_option = remote_option;
+    result.size_only = size_only;
+    result.modify_window = modify_window;
+    result.temp_dir = temp_dir;
+    result.fuzzy = fuzzy;
+    result.compare_dest = compare_dest.clone();
+    result.copy_dest = copy_dest.clone();
+    result.link_dest = link_dest.clone();
+    result.compress = compress;
+    result.compress_level = compress_level;
+    result.skip_compress = skip_compress;
+    result.cvs_exclude = cvs_exclude;
+    result.include_exclude = new ArrayList<>(include_exclude);
+    result.files_from = files_from;
+    result.from0 = from0;
+    result.protect_args = protect_args;
+    result.address = address;
+    result.port = port;
+    result.sockopts = sockopts;
+    result.blocking_io = blocking_io;
+    result.stats = stats;
+    result.eight_bit_output = eight_bit_output;
+    result.human_readable = human_readable;
+    result.progress = progress;
+    result.itemize_changes = itemize_changes;
+    result.out_format = out_format;
+    result.log_file = log_file;
+    result.log_file_format = log_file_format;
+    result.password_file = password_file;
+    result.list_only = list_only;
+    result.bwlimit = bwlimit;
+    result.outbuf = outbuf;
+    result.write_batch = write_batch;
+    result.only_write_batch = only_write_batch;
+    result.read_batch = read_batch;
+    result.protocol = protocol;
+    result.iconv = iconv;
+    result.checksum_seed = checksum_seed;
+    result.ipv4 = ipv4;
+    result.ipv6 = ipv6;
+    result.version = version;
+    result.trust_sender = trust_sender;
+    result.fsync = fsync;
+    result.copy_devices = copy_devices;
+    result.stop_after = stop_after;
+    result.stop_at = stop_at;
+    result.crtimes = crtimes;
+    result.mkpath = mkpath;
+    result.max_alloc = max_alloc;
+    result.early_input = early_input;
+    result.atimes = atimes;
+    result.open_noatime = open_noatime;
+    result.write_devices = write_devices;
+    result.copy_as = copy_as;
+    result.checksum_choice = checksum_choice;
+    result.additional = (additional == null) ? null : additional.clone();
+    result.sshPass = sshPass;
+    result.javaEngine = javaEngine;
+    result.stdinThreshold = stdinThreshold;
+
+    return result;
+  }
+
+  /**
+   * Returns an immutable, thread-safe template with the current options,
+   * for launching many processes that only differ in sources and destination.
+   * Subsequent changes to this instance do not affect the template.
+   *
+   * @return		the template
+   * @throws Exception	if failed to determine binary
+   */
+  public RSyncTemplate freeze() throws Exception {
+    return new RSyncTemplate(this);
+  }
+
+  /**
+   * Applies options as generated by {@link #options()}, without going through
+   * the commandline parser. Unknown options get added to the additional ones.
+   *
+   * @param options	the options to apply
+   * @return		itself
+   * @see		RSyncOptionMapper
+   */
+  public RSync applyOptions(String... options) {
+    return RSyncOptionMapper.apply(this, options);
+  }
+
   /**
    * Assembles the arguments for the binary.
    *
@@ -2720,6 +3102,7 @@ public class RSync
     if (isPreallocate()) result.add("--preallocate");
     if (isDryRun()) result.add("--dry-run");
     if (isWholeFile()) result.add("--whole-file");
+    if (isNoWholeFile()) result.add("--no-whole-file");
     if (isOneFileSystem()) result.add("--one-file-system");
     if (!getBlockSize().isEmpty()) result.add("--block-size=" + getBlockSize());
     if (!getRsh().isEmpty()) {
@@ -2854,24 +3237,53 @@ public class RSync
   }
 
   /**
-   * Assembles the full command-line arguments.
+   * Assembles the full command-line arguments, as used by {@link #start()}
+   * and the execute methods.
    *
    * @return		the command-line arguments
    * @throws Exception	if failed to determine binary
    * @see		#options()
+   * @see		#isStdinSources()
    */
   public List<String> commandLineArgs() throws Exception {
+    return commandLineArgs(true);
+  }
+
+  /**
+   * Assembles the full command-line arguments.
+   *
+   * @param stdin	whether the sources may get passed via stdin (see {@link #isStdinSources()})
+   * @return		the command-line arguments
+   * @throws Exception	if failed to determine binary
+   * @see		#options()
+   */
+  protected List<String> commandLineArgs(boolean stdin) throws Exception {
     List<String> 	result;
     String 		binary;
     List<String>        sshPassArgs;
+    String		base;
     int                 i;
 
     binary = Binaries.rsyncBinary();
     result = options();
     result.add(0, binary);
-    if (getSources().isEmpty())
+    // --read-batch takes the file list from the batch file
+    if (getSources().isEmpty() && getReadBatch().isEmpty())
       throw new IllegalStateException("No source(s) defined!");
-    result.addAll(getSources());
+    base = stdin ? stdinBase() : null;
+    if (base != null) {
+      result.add("--files-from=-");
+      result.add("--from0");
+      // --files-from implies --relative and disables the recursion of --archive
+      if (!isRelative())
+	result.add("--no-relative");
+      if (isArchive() && !isRecursive())
+	result.add("--recursive");
+      result.add(base);
+    }
+    else {
+      result.addAll(getSources());
+    }
     if ((getDestination() == null) && !isListOnly())
       throw new IllegalStateException("No destination defined!");
     if (getDestination() != null)
@@ -2886,6 +3298,249 @@ public class RSync
     return result;
   }
 
+  /**
+   * Executes the rsync binary for the platform and waits for its completion.
+   * Collects stdout and stderr output in the result, which also gives
+   * access to the statistics when run with {@link #stats(boolean)}.
+   *
+   * @return		the process result object
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#commandLineArgs()
+   */
+  @Override
+  public RSyncOutput execute() throws Exception {
+    RSyncOutput		result;
+    ProcessBuilder	builder;
+
+    result = (RSyncOutput) newOutput();
+    result.setTimeOut(getMaxTime());
+    builder = fileBuilder();
+    try {
+      result.monitor(builder);
+    }
+    finally {
+      deleteStdinFile(builder);
+    }
+
+    return result;
+  }
+
+  /**
+   * Executes the binary and waits for its completion, collecting stdout and
+   * stderr in the supplied output. Kills the process if it exceeds the
+   * maximum time.
+   *
+   * @param output	the output to use
+   * @return		the output
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#getMaxTime()
+   */
+  @Override
+  public BoundedProcessOutput execute(BoundedProcessOutput output) throws Exception {
+    ProcessBuilder	builder;
+
+    builder = fileBuilder();
+    try {
+      output.monitor(builder, getMaxTime());
+    }
+    finally {
+      deleteStdinFile(builder);
+    }
+
+    return output;
+  }
+
+  /**
+   * Executes the binary and waits for its completion, with stdout and stderr
+   * redirected to the files of the supplied output. Kills the process if it
+   * exceeds the maximum time.
+   *
+   * @param output	the output to use
+   * @param <T>		the type of output
+   * @return		the output
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#getMaxTime()
+   */
+  @Override
+  public <T extends FileProcessOutput> T execute(T output) throws Exception {
+    final ProcessBuilder	builder;
+
+    builder = builder(true);
+    output.monitor(builder, getMaxTime(), process -> started(builder, process));
+
+    return output;
+  }
+
+  /**
+   * Returns a configured {@link ProcessBuilder} to be used for executing
+   * the rsync process. Does not have any side effects, hence the sources
+   * always get passed as command-line arguments, regardless of
+   * {@link #isStdinSources()}. Use {@link #start()}, the execute methods or
+   * {@link #executeAsync(Executor)} for passing many sources via stdin.
+   *
+   * @return		the configured process builder
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#commandLineArgs()
+   */
+  @Override
+  public ProcessBuilder builder() throws Exception {
+    return builder(false);
+  }
+
+  /**
+   * Returns a configured {@link ProcessBuilder} to be used for executing
+   * the rsync process.
+   *
+   * @param stdin	whether the sources may get passed via stdin, to be
+   *                    streamed by {@link #started(ProcessBuilder, Process)}
+   * @return		the configured process builder
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#isStdinSources()
+   */
+  protected ProcessBuilder builder(boolean stdin) throws Exception {
+    return builder(commandLineArgs(stdin));
+  }
+
+  /**
+   * Returns a configured {@link ProcessBuilder} for the execute methods
+   * whose process gets started by processoutput4j, i.e., without access to
+   * the process for streaming its stdin. If the sources get passed via
+   * stdin (see {@link #isStdinSources()}), they get written (streamed) to a
+   * temporary file that stdin is redirected from, which the execute methods
+   * remove with {@link #deleteStdinFile(ProcessBuilder)} once the process
+   * finished.
+   *
+   * @return		the configured process builder
+   * @throws Exception	if execution fails or failed to determine binary
+   */
+  protected ProcessBuilder fileBuilder() throws Exception {
+    ProcessBuilder	result;
+    String		base;
+    Path		list;
+
+    result = builder(true);
+    base   = stdinBase();
+    if (base != null) {
+      list = Utils.writeFileList(stdinPaths(base));
+      result.redirectInput(list.toFile());
+    }
+
+    return result;
+  }
+
+  /**
+   * Removes the temporary file that stdin was redirected from, if any.
+   *
+   * @param builder	the builder that started the process
+   */
+  protected void deleteStdinFile(ProcessBuilder builder) {
+    File	file;
+
+    file = builder.redirectInput().file();
+    if (file == null)
+      return;
+    try {
+      Files.deleteIfExists(file.toPath());
+    }
+    catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to delete list of sources: " + file, e);
+    }
+  }
+
+  /**
+   * Starts the rsync process for the platform, streaming the sources via
+   * stdin if required (see {@link #isStdinSources()}).
+   *
+   * @return		the process object
+   * @throws Exception	if execution fails or failed to determine binary
+   */
+  @Override
+  public Process start() throws Exception {
+    ProcessBuilder	builder;
+    Process		result;
+
+    builder = builder(true);
+    result  = builder.start();
+    started(builder, result);
+
+    return result;
+  }
+
+  /**
+   * Writes the sources as NUL-separated list to stdin of the process in the
+   * background, if required (see {@link #isStdinSources()}). As writes to
+   * the pipe block while rsync has not consumed the list yet, only the
+   * buffer and the list of sources are kept in memory.
+   *
+   * @param builder	the builder that started the process
+   * @param process	the process
+   */
+  @Override
+  protected void started(ProcessBuilder builder, Process process) {
+    final List<String>	paths;
+    String		base;
+
+    super.started(builder, process);
+
+    if ((builder.redirectInput() != ProcessBuilder.Redirect.PIPE) || !builder.command().contains("--files-from=-"))
+      return;
+    base = stdinBase();
+    if (base == null)
+      return;
+
+    paths = stdinPaths(base);
+    StreamPump.shared().execute(() -> {
+      try (OutputStream out = new BufferedOutputStream(process.getOutputStream(), 65536)) {
+	for (String path: paths) {
+	  out.write(path.getBytes(StandardCharsets.UTF_8));
+	  out.write(0);
+	}
+      }
+      catch (IOException e) {
+	// rsync exited prematurely, its exit code tells why
+	logger.log(Level.FINE, "Failed to write sources to stdin", e);
+      }
+    });
+  }
+
+  /**
+   * Executes the transfer asynchronously, collecting stdout and stderr output
+   * in the result. Uses the {@link LocalCopyEngine} instead of the binary if
+   * enabled via {@link #javaEngine(boolean)} and supported.
+   *
+   * @param executor	the executor for completing the future or running the Java engine
+   * @return		the future for the result
+   * @throws Exception	if execution fails or failed to determine binary
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(Executor executor) throws Exception {
+    final LocalCopyEngine			engine;
+    final CompletableFuture<ProcessResult>	result;
+
+    if (isJavaEngine() && LocalCopyEngine.isSupported(this)) {
+      engine = new LocalCopyEngine(this);
+      result = CompletableFuture.supplyAsync(engine::execute, executor);
+      // like killing the process of the binary
+      result.whenComplete((r, t) -> {
+	if (result.isCancelled())
+	  engine.cancel();
+      });
+      return result;
+    }
+
+    return executeAsync(builder(true), executor, getMaxTime());
+  }
+
+  /**
+   * Returns a new instance of the output used by {@link #execute()}.
+   *
+   * @return		the output
+   */
+  @Override
+  protected CollectingProcessOutput newOutput() {
+    return new RSyncOutput();
+  }
+
   /**
    * Returns a short description for the binary.
    *
@@ -3120,6 +3775,11 @@ public class RSync
       .dest("wholefile")
       .help("copy files whole (without delta-xfer algorithm)")
       .action(Arguments.storeTrue());
+    parser.addArgument("--no-whole-file", "--no-W")
+      .setDefault(false)
+      .dest("nowholefile")
+      .help("use the delta-xfer algorithm, also for local transfers")
+      .action(Arguments.storeTrue());
     parser.addArgument("-x", "--one-file-system")
       .setDefault(false)
       .dest("onefilesystem")
@@ -3292,17 +3952,14 @@ public class RSync
       .help("find similar file for basis if no dest file")
       .action(Arguments.storeTrue());
     parser.addArgument("--compare-dest")
-      .setDefault(new ArrayList<String>())
       .dest("comparedest")
       .action(Arguments.append())
       .help("also compare destination files relative to DIR");
     parser.addArgument("--copy-dest")
-      .setDefault(new ArrayList<String>())
       .dest("copydest")
       .action(Arguments.append())
       .help("... and include copies of unchanged files");
     parser.addArgument("--link-dest")
-      .setDefault(new ArrayList<String>())
       .dest("linkdest")
       .action(Arguments.append())
       .help("hardlink to files in DIR when unchanged");
@@ -3326,26 +3983,21 @@ public class RSync
       .help("auto-ignore files the same way CVS does")
       .action(Arguments.storeTrue());
     parser.addArgument("-f", "--filter")
-      .setDefault(new ArrayList<String>())
       .dest("filter")
       .action(Arguments.append())
       .help("add a file-filtering RULE");
     parser.addArgument("--exclude")
-      .setDefault(new ArrayList<String>())
       .dest("exclude")
       .action(Arguments.append())
       .help("exclude files matching PATTERN");
     parser.addArgument("--exclude-from")
-      .setDefault(new ArrayList<String>())
       .dest("excludefrom")
       .help("read exclude patterns from FILE");
     parser.addArgument("--include")
-      .setDefault(new ArrayList<String>())
       .dest("include")
       .action(Arguments.append())
       .help("include files matching PATTERN");
     parser.addArgument("--include-from")
-      .setDefault(new ArrayList<String>())
       .dest("includefrom")
       .help("read include patterns from FILE");
     parser.addArgument("--files-from")
@@ -3539,7 +4191,6 @@ public class RSync
       .help("trust the remote sender's file list (since 3.2.5)")
       .action(Arguments.storeTrue());
     parser.addArgument("--additional")
-      .setDefault(new ArrayList<String>())
       .dest("additional")
       .action(Arguments.append())
       .help("generic option to pass on to rsync; for command-line parsing to work though, leading dashes must get replaced with '+', eg '--additional \"++exclude=*~\"'");
@@ -3607,6 +4258,7 @@ public class RSync
     preallocate(ns.getBoolean("preallocate"));
     dryRun(ns.getBoolean("dryrun"));
     wholeFile(ns.getBoolean("wholefile"));
+    noWholeFile(ns.getBoolean("nowholefile"));
     oneFileSystem(ns.getBoolean("onefilesystem"));
     blockSize(ns.getString("blocksize"));
     rsh(ns.getString("rsh"));
@@ -3642,18 +4294,18 @@ public class RSync
     modifyWindow(ns.getInt("modifywindow"));
     tempDir(ns.getString("tempdir"));
     fuzzy(ns.getBoolean("fuzzy"));
-    compareDest(ns.getList("comparedest").toArray(new String[0]));
-    copyDest(ns.getList("copydest").toArray(new String[0]));
-    linkDest(ns.getList("linkdest").toArray(new String[0]));
+    compareDest(getList(ns, "comparedest").toArray(new String[0]));
+    copyDest(getList(ns, "copydest").toArray(new String[0]));
+    linkDest(getList(ns, "linkdest").toArray(new String[0]));
     compress(ns.getBoolean("compress"));
     compressLevel(ns.getInt("compresslevel"));
     skipCompress(ns.getString("skipcompress"));
     cvsExclude(ns.getBoolean("cvsexclude"));
-    filter(ns.getList("filter").toArray(new String[0]));
-    include(ns.getList("include").toArray(new String[0]));
-    includeFrom(ns.getList("includefrom").toArray(new String[0]));
-    exclude(ns.getList("exclude").toArray(new String[0]));
-    excludeFrom(ns.getList("excludefrom").toArray(new String[0]));
+    filter(getList(ns, "filter").toArray(new String[0]));
+    include(getList(ns, "include").toArray(new String[0]));
+    includeFrom(getList(ns, "includefrom").toArray(new String[0]));
+    exclude(getList(ns, "exclude").toArray(new String[0]));
+    excludeFrom(getList(ns, "excludefrom").toArray(new String[0]));
     filesFrom(ns.getString("filesfrom"));
     from0(ns.getBoolean("from0"));
     protectArgs(ns.getBoolean("protectargs"));
@@ -3696,9 +4348,9 @@ public class RSync
     writeDevices(ns.getBoolean("writedevices"));
     copyAs(ns.getString("copyas"));
     checksumChoice(ns.getString("checksumchoice"));
-    additional(ns.getList("additional").toArray(new String[0]));
+    additional(getList(ns, "additional").toArray(new String[0]));
 
-    List<String> src_dest = ns.getList("source(s)/destination");
+    List<String> src_dest = getList(ns, "source(s)/destination");
     if ((src_dest.isEmpty()) && isListOnly()) {
       System.err.println("Source required!");
       return false;
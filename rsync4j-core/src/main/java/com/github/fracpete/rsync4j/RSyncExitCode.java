@@ -0,0 +1,149 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RSyncExitCode.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+/**
+ * The exit codes of rsync (see "EXIT VALUES" in the man page), classified
+ * into whether retrying the transfer makes sense.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public enum RSyncExitCode {
+
+  SUCCESS(0, Category.SUCCESS, "Success"),
+  SYNTAX(1, Category.FATAL, "Syntax or usage error"),
+  PROTOCOL_INCOMPATIBILITY(2, Category.FATAL, "Protocol incompatibility"),
+  FILE_SELECTION(3, Category.FATAL, "Errors selecting input/output files, dirs"),
+  UNSUPPORTED_ACTION(4, Category.FATAL, "Requested action not supported"),
+  STARTING_PROTOCOL(5, Category.RETRYABLE, "Error starting client-server protocol"),
+  DAEMON_LOG(6, Category.FATAL, "Daemon unable to append to log-file"),
+  SOCKET_IO(10, Category.RETRYABLE, "Error in socket I/O"),
+  FILE_IO(11, Category.FATAL, "Error in file I/O"),
+  PROTOCOL_DATA_STREAM(12, Category.RETRYABLE, "Error in rsync protocol data stream"),
+  DIAGNOSTICS(13, Category.FATAL, "Errors with program diagnostics"),
+  IPC(14, Category.RETRYABLE, "Error in IPC code"),
+  SIGNAL(20, Category.FATAL, "Received SIGUSR1 or SIGINT"),
+  WAITPID(21, Category.RETRYABLE, "Some error returned by waitpid()"),
+  MEMORY(22, Category.FATAL, "Error allocating core memory buffers"),
+  PARTIAL(23, Category.PARTIAL, "Partial transfer due to error"),
+  PARTIAL_VANISHED(24, Category.PARTIAL, "Partial transfer due to vanished source files"),
+  MAX_DELETE(25, Category.FATAL, "The --max-delete limit stopped deletions"),
+  TIMEOUT(30, Category.RETRYABLE, "Timeout in data send/receive"),
+  CONNECTION_TIMEOUT(35, Category.RETRYABLE, "Timeout waiting for daemon connection"),
+  SSH(255, Category.RETRYABLE, "Remote shell failed"),
+  UNKNOWN(-1, Category.FATAL, "Unknown exit code");
+
+  /**
+   * How to treat an exit code.
+   */
+  public enum Category {
+    /** transfer succeeded. */
+    SUCCESS,
+    /** transient error, e.g., network, retrying should help. */
+    RETRYABLE,
+    /** some files were not transferred, retrying may help. */
+    PARTIAL,
+    /** retrying will not help. */
+    FATAL
+  }
+
+  /** the numeric exit code. */
+  private final int code;
+
+  /** the category. */
+  private final Category category;
+
+  /** the description. */
+  private final String description;
+
+  /**
+   * Initializes the exit code.
+   *
+   * @param code	the numeric exit code
+   * @param category	the category
+   * @param description	the description
+   */
+  RSyncExitCode(int code, Category category, String description) {
+    this.code        = code;
+    this.category    = category;
+    this.description = description;
+  }
+
+  /**
+   * Returns the numeric exit code.
+   *
+   * @return		the code, -1 for {@link #UNKNOWN}
+   */
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * Returns the category.
+   *
+   * @return		the category
+   */
+  public Category getCategory() {
+    return category;
+  }
+
+  /**
+   * Returns the description.
+   *
+   * @return		the description
+   */
+  public String getDescription() {
+    return description;
+  }
+
+  /**
+   * Returns whether retrying makes sense.
+   *
+   * @return		true if retryable or partial
+   */
+  public boolean isRetryable() {
+    return (category == Category.RETRYABLE) || (category == Category.PARTIAL);
+  }
+
+  /**
+   * Returns a short description.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return code + " (" + description + ")";
+  }
+
+  /**
+   * Returns the enum for the numeric exit code.
+   *
+   * @param code	the exit code to look up
+   * @return		the enum, {@link #UNKNOWN} if not known
+   */
+  public static RSyncExitCode valueOf(int code) {
+    for (RSyncExitCode value: values()) {
+      if (value.code == code)
+	return value;
+    }
+    return UNKNOWN;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RSyncFileOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.FileProcessOutput;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Captures the output of an rsync process in files (see
+ * {@link FileProcessOutput}) and gives access to the parsed
+ * {@code --stats} summary, the itemized changes and the error messages.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see RSync#execute(FileProcessOutput)
+ */
+public class RSyncFileOutput
+  extends FileProcessOutput {
+
+  /** the parsed stats. */
+  protected TransferStats stats;
+
+  /** whether the stats have been parsed. */
+  protected boolean statsParsed;
+
+  /**
+   * Initializes the output using temporary files.
+   *
+   * @throws IOException	if failed to create the temporary files
+   */
+  public RSyncFileOutput() throws IOException {
+    super();
+  }
+
+  /**
+   * Initializes the output using the specified files, which get kept.
+   *
+   * @param stdOutFile	the file for stdout
+   * @param stdErrFile	the file for stderr
+   */
+  public RSyncFileOutput(Path stdOutFile, Path stdErrFile) {
+    super(stdOutFile, stdErrFile);
+  }
+
+  /**
+   * Starts the process with its output redirected to the files and waits
+   * for it to finish.
+   *
+   * @param builder	the builder for the process
+   * @param timeOut	the time out in seconds, less than 1 for no time out
+   * @throws Exception	if starting or waiting fails
+   */
+  @Override
+  public void monitor(ProcessBuilder builder, int timeOut) throws Exception {
+    synchronized (this) {
+      stats       = null;
+      statsParsed = false;
+    }
+    super.monitor(builder, timeOut);
+  }
+
+  /**
+   * Returns the stats, parsed from stdout on first access.
+   *
+   * @return		the stats, null if none available (rsync run without {@code --stats})
+   */
+  public synchronized TransferStats getStats() {
+    if (!statsParsed) {
+      stats       = TransferStats.parse(stdOutLines());
+      statsParsed = true;
+    }
+    return stats;
+  }
+
+  /**
+   * Returns the itemized changes (rsync run with {@code --itemize-changes}).
+   *
+   * @return		the changes
+   */
+  public Stream<ItemizedChange> itemizedChanges() {
+    return ItemizedChange.stream(stdOutLines());
+  }
+
+  /**
+   * Returns the error and warning messages output by rsync on stderr, i.e.,
+   * lines starting with "rsync:", "rsync error:", "rsync warning:" or
+   * "@ERROR" (daemon).
+   *
+   * @return		the messages
+   */
+  public List<String> getErrors() {
+    return stdErrLines()
+      .filter(l -> l.startsWith("rsync:") || l.startsWith("rsync error:") || l.startsWith("rsync warning:") || l.startsWith("@ERROR"))
+      .collect(Collectors.toList());
+  }
+}
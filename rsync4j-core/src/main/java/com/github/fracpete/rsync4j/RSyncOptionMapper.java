@@ -0,0 +1,286 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RSyncOptionMapper.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Maps options as generated by {@link RSync#options()} (i.e., long options
+ * in the form {@code --name} or {@code --name=value}, with {@code --rsh}
+ * followed by its value) back onto an {@link RSync} instance, without going
+ * through the argparse4j parser. Unknown options get added to the
+ * additional options.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see RSync#applyOptions(String...)
+ */
+public final class RSyncOptionMapper {
+
+  /** the options without value. */
+  private static final Map<String, Consumer<RSync>> FLAGS = new HashMap<>();
+
+  /** the options with value. */
+  private static final Map<String, BiConsumer<RSync, String>> VALUES = new HashMap<>();
+
+  static {
+    FLAGS.put("--verbose", r -> r.verbose(true));
+    FLAGS.put("--msgs2stderr", r -> r.msgs2stderr(true));
+    FLAGS.put("--quiet", r -> r.quiet(true));
+    FLAGS.put("--no-motd", r -> r.noMotd(true));
+    FLAGS.put("--checksum", r -> r.checksum(true));
+    FLAGS.put("--archive", r -> r.archive(true));
+    FLAGS.put("--recursive", r -> r.recursive(true));
+    FLAGS.put("--relative", r -> r.relative(true));
+    FLAGS.put("--no-implied-dirs", r -> r.noImpliedDirs(true));
+    FLAGS.put("--backup", r -> r.backup(true));
+    FLAGS.put("--update", r -> r.update(true));
+    FLAGS.put("--inplace", r -> r.inplace(true));
+    FLAGS.put("--append", r -> r.append(true));
+    FLAGS.put("--append-verify", r -> r.appendVerify(true));
+    FLAGS.put("--dirs", r -> r.dirs(true));
+    FLAGS.put("--links", r -> r.links(true));
+    FLAGS.put("--copy-links", r -> r.copyLinks(true));
+    FLAGS.put("--copy-unsafe-links", r -> r.copyUnsafeLinks(true));
+    FLAGS.put("--safe-links", r -> r.safeLinks(true));
+    FLAGS.put("--munge-links", r -> r.mungeLinks(true));
+    FLAGS.put("--copy-dirlinks", r -> r.copyDirlinks(true));
+    FLAGS.put("--keep-dirlinks", r -> r.keepDirlinks(true));
+    FLAGS.put("--hard-links", r -> r.hardLinks(true));
+    FLAGS.put("--perms", r -> r.perms(true));
+    FLAGS.put("--executability", r -> r.executability(true));
+    FLAGS.put("--acls", r -> r.acls(true));
+    FLAGS.put("--xattrs", r -> r.xattrs(true));
+    FLAGS.put("--owner", r -> r.owner(true));
+    FLAGS.put("--group", r -> r.group(true));
+    FLAGS.put("--devices", r -> r.devices(true));
+    FLAGS.put("--specials", r -> r.specials(true));
+    FLAGS.put("--times", r -> r.times(true));
+    FLAGS.put("--omit-dir-times", r -> r.omitDirTimes(true));
+    FLAGS.put("--omit-link-times", r -> r.omitLinkTimes(true));
+    FLAGS.put("--super", r -> r.super_(true));
+    FLAGS.put("--fake-super", r -> r.fakeSuper(true));
+    FLAGS.put("--sparse", r -> r.sparse(true));
+    FLAGS.put("--preallocate", r -> r.preallocate(true));
+    FLAGS.put("--dry-run", r -> r.dryRun(true));
+    FLAGS.put("--whole-file", r -> r.wholeFile(true));
+    FLAGS.put("--no-whole-file", r -> r.noWholeFile(true));
+    FLAGS.put("--one-file-system", r -> r.oneFileSystem(true));
+    FLAGS.put("--existing", r -> r.existing(true));
+    FLAGS.put("--ignore-existing", r -> r.ignoreExisting(true));
+    FLAGS.put("--remove-source-files", r -> r.removeSourceFiles(true));
+    FLAGS.put("--delete", r -> r.delete(true));
+    FLAGS.put("--delete-before", r -> r.deleteBefore(true));
+    FLAGS.put("--delete-during", r -> r.deleteDuring(true));
+    FLAGS.put("--delete-delay", r -> r.deleteDelay(true));
+    FLAGS.put("--delete-after", r -> r.deleteAfter(true));
+    FLAGS.put("--delete-excluded", r -> r.deleteExcluded(true));
+    FLAGS.put("--ignore-missing-args", r -> r.ignoreMissingArgs(true));
+    FLAGS.put("--delete-missing-args", r -> r.deleteMissingArgs(true));
+    FLAGS.put("--ignore-errors", r -> r.ignoreErrors(true));
+    FLAGS.put("--force", r -> r.force(true));
+    FLAGS.put("--partial", r -> r.partial(true));
+    FLAGS.put("--delay-updates", r -> r.delayUpdates(true));
+    FLAGS.put("--prune-empty-dirs", r -> r.pruneEmptyDirs(true));
+    FLAGS.put("--numeric-ids", r -> r.numericIds(true));
+    FLAGS.put("--ignore-times", r -> r.ignoreTimes(true));
+    FLAGS.put("--size-only", r -> r.sizeOnly(true));
+    FLAGS.put("--fuzzy", r -> r.fuzzy(true));
+    FLAGS.put("--compress", r -> r.compress(true));
+    FLAGS.put("--cvs-exclude", r -> r.cvsExclude(true));
+    FLAGS.put("--from0", r -> r.from0(true));
+    FLAGS.put("--protect-args", r -> r.protectArgs(true));
+    FLAGS.put("--blocking-io", r -> r.blockingIO(true));
+    FLAGS.put("--stats", r -> r.stats(true));
+    FLAGS.put("--8-bit-output", r -> r.eightBitOutput(true));
+    FLAGS.put("--human-readable", r -> r.humanReadable(true));
+    FLAGS.put("--progress", r -> r.progress(true));
+    FLAGS.put("--itemize-changes", r -> r.itemizeChanges(true));
+    FLAGS.put("--list-only", r -> r.listOnly(true));
+    FLAGS.put("--ipv4", r -> r.ipv4(true));
+    FLAGS.put("--ipv6", r -> r.ipv6(true));
+    FLAGS.put("--version", r -> r.version(true));
+    FLAGS.put("--trust-sender", r -> r.trustSender(true));
+    FLAGS.put("--fsync", r -> r.fsync(true));
+    FLAGS.put("--copy-devices", r -> r.copyDevices(true));
+    FLAGS.put("--crtimes", r -> r.crtimes(true));
+    FLAGS.put("--mkpath", r -> r.mkpath(true));
+    FLAGS.put("--atimes", r -> r.atimes(true));
+    FLAGS.put("--open-noatime", r -> r.openNoatime(true));
+    FLAGS.put("--write-devices", r -> r.writeDevices(true));
+    VALUES.put("--info", (r, v) -> r.info(v));
+    VALUES.put("--debug", (r, v) -> r.debug(v));
+    VALUES.put("--backup-dir", (r, v) -> r.backupDir(v));
+    VALUES.put("--suffix", (r, v) -> r.suffix(v));
+    VALUES.put("--chmod", (r, v) -> r.chmod(v));
+    VALUES.put("--block-size", (r, v) -> r.blockSize(v));
+    VALUES.put("--rsync-path", (r, v) -> r.rsyncPath(v));
+    VALUES.put("--max-delete", (r, v) -> r.maxDelete(Integer.parseInt(v)));
+    VALUES.put("--max-size", (r, v) -> r.maxSize(v));
+    VALUES.put("--min-size", (r, v) -> r.minSize(v));
+    VALUES.put("--partial-dir", (r, v) -> r.partialDir(v));
+    VALUES.put("--usermap", (r, v) -> r.usermap(v));
+    VALUES.put("--groupmap", (r, v) -> r.groupmap(v));
+    VALUES.put("--chown", (r, v) -> r.chown(v));
+    VALUES.put("--timeout", (r, v) -> r.timeout(Integer.parseInt(v)));
+    VALUES.put("--contimeout", (r, v) -> r.contimeout(Integer.parseInt(v)));
+    VALUES.put("--remote-option", (r, v) -> r.remoteOption(v));
+    VALUES.put("--modify-window", (r, v) -> r.modifyWindow(Integer.parseInt(v)));
+    VALUES.put("--temp-dir", (r, v) -> r.tempDir(v));
+    VALUES.put("--compress-level", (r, v) -> r.compressLevel(Integer.parseInt(v)));
+    VALUES.put("--skip-compress", (r, v) -> r.skipCompress(v));
+    VALUES.put("--files-from", (r, v) -> r.filesFrom(v));
+    VALUES.put("--address", (r, v) -> r.address(v));
+    VALUES.put("--port", (r, v) -> r.port(Integer.parseInt(v)));
+    VALUES.put("--sockopts", (r, v) -> r.sockopts(v));
+    VALUES.put("--out-format", (r, v) -> r.outFormat(v));
+    VALUES.put("--log-file", (r, v) -> r.logFile(v));
+    VALUES.put("--log-file-format", (r, v) -> r.logFileFormat(v));
+    VALUES.put("--password-file", (r, v) -> r.passwordFile(v));
+    VALUES.put("--bwlimit", (r, v) -> r.bwlimit(v));
+    VALUES.put("--write-batch", (r, v) -> r.writeBatch(v));
+    VALUES.put("--only-write-batch", (r, v) -> r.onlyWriteBatch(v));
+    VALUES.put("--read-batch", (r, v) -> r.readBatch(v));
+    VALUES.put("--protocol", (r, v) -> r.protocol(Integer.parseInt(v)));
+    VALUES.put("--iconv", (r, v) -> r.iconv(v));
+    VALUES.put("--checksum-seed", (r, v) -> r.checksumSeed(Integer.parseInt(v)));
+    VALUES.put("--stop-after", (r, v) -> r.stopAfter(v));
+    VALUES.put("--stop-at", (r, v) -> r.stopAt(v));
+    VALUES.put("--max-alloc", (r, v) -> r.maxAlloc(v));
+    VALUES.put("--early-input", (r, v) -> r.earlyInput(v));
+    VALUES.put("--copy-as", (r, v) -> r.copyAs(v));
+    VALUES.put("--checksum-choice", (r, v) -> r.checksumChoice(v));
+    VALUES.put("--rsh", (r, v) -> r.rsh(v));
+    VALUES.put("--outbuf", (r, v) -> r.outbuf(v.charAt(0)));
+    VALUES.put("--compare-dest", (r, v) -> r.compareDest(ArrayUtils.add(r.getCompareDest(), v)));
+    VALUES.put("--copy-dest", (r, v) -> r.copyDest(ArrayUtils.add(r.getCopyDest(), v)));
+    VALUES.put("--link-dest", (r, v) -> r.linkDest(ArrayUtils.add(r.getLinkDest(), v)));
+    VALUES.put("--exclude", (r, v) -> r.exclude(v));
+    VALUES.put("--exclude-from", (r, v) -> r.excludeFrom(v));
+    VALUES.put("--include", (r, v) -> r.include(v));
+    VALUES.put("--include-from", (r, v) -> r.includeFrom(v));
+    VALUES.put("--filter", (r, v) -> r.filter(v));
+  }
+
+  /**
+   * Not to be instantiated.
+   */
+  private RSyncOptionMapper() {
+  }
+
+  /**
+   * Returns the names of the supported options.
+   *
+   * @return		the names
+   */
+  public static List<String> getSupportedOptions() {
+    List<String>	result;
+
+    result = new ArrayList<>(FLAGS.keySet());
+    result.addAll(VALUES.keySet());
+    Collections.sort(result);
+
+    return result;
+  }
+
+  /**
+   * Applies the options to the rsync instance. List options (excludes,
+   * includes, filters, compare/copy/link dest) get appended.
+   *
+   * @param rsync	the instance to update
+   * @param options	the options to apply
+   * @return		the updated instance
+   * @throws IllegalArgumentException	if an option is missing its value or the value is invalid
+   */
+  public static RSync apply(RSync rsync, String... options) {
+    List<String>			additional;
+    Consumer<RSync>			flag;
+    BiConsumer<RSync, String>		value;
+    String				option;
+    String				name;
+    int					pos;
+    int					i;
+
+    additional = null;
+    for (i = 0; i < options.length; i++) {
+      option = options[i];
+      flag   = FLAGS.get(option);
+      if (flag != null) {
+	flag.accept(rsync);
+	continue;
+      }
+
+      pos = option.indexOf('=');
+      if (pos > -1) {
+	name  = option.substring(0, pos);
+	value = VALUES.get(name);
+	if (value != null) {
+	  apply(rsync, value, name, option.substring(pos + 1));
+	  continue;
+	}
+      }
+      else if (option.equals("--rsh")) {
+	if (i == options.length - 1)
+	  throw new IllegalArgumentException("Missing value for option: " + option);
+	apply(rsync, VALUES.get(option), option, options[++i]);
+	continue;
+      }
+
+      if (additional == null)
+	additional = new ArrayList<>();
+      additional.add(option);
+    }
+
+    if (additional != null) {
+      if (rsync.getAdditional() != null)
+	additional.addAll(0, Arrays.asList(rsync.getAdditional()));
+      rsync.additional(additional.toArray(new String[0]));
+    }
+
+    return rsync;
+  }
+
+  /**
+   * Applies the value of an option.
+   *
+   * @param rsync	the instance to update
+   * @param setter	the setter to use
+   * @param name	the name of the option
+   * @param value	the value of the option
+   * @throws IllegalArgumentException	if the value is invalid
+   */
+  private static void apply(RSync rsync, BiConsumer<RSync, String> setter, String name, String value) {
+    try {
+      setter.accept(rsync, value);
+    }
+    catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Invalid value for option " + name + ": " + value, e);
+    }
+  }
+}
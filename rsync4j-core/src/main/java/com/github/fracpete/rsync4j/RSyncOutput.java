@@ -0,0 +1,55 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RSyncOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+
+/**
+ * Collects the output of an rsync process and gives access to the parsed
+ * {@code --stats} summary.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see RSync#execute()
+ */
+public class RSyncOutput
+  extends CollectingProcessOutput {
+
+  private static final long serialVersionUID = 4790165010405385813L;
+
+  /** the parsed stats. */
+  protected transient TransferStats stats;
+
+  /** whether the stats have been parsed. */
+  protected transient boolean statsParsed;
+
+  /**
+   * Returns the stats, parsed from stdout on first access.
+   *
+   * @return		the stats, null if none available (rsync run without {@code --stats})
+   */
+  public synchronized TransferStats getStats() {
+    if (!statsParsed) {
+      stats       = TransferStats.parse(getStdOut());
+      statsParsed = true;
+    }
+    return stats;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RSyncTemplate.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.Binaries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the options of an {@link RSync} instance, obtained
+ * via {@link RSync#freeze()}. The command-line (sshpass, binary and options)
+ * is assembled only once, therefore instances are cheap to use for launching
+ * many processes that only differ in sources and destination. Instances are
+ * thread-safe.
+ * <br>
+ * Sources and destination of the {@link RSync} instance are ignored.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public final class RSyncTemplate {
+
+  /** the precomputed arguments (sshpass, binary, options). */
+  private final String[] prefix;
+
+  /** whether listing only is enabled (no destination required). */
+  private final boolean listOnly;
+
+  /** the maximum time in seconds, less than 1 for no limit. */
+  private final int maxTime;
+
+  /**
+   * Initializes the template.
+   *
+   * @param rsync	the instance to take the options from
+   * @throws Exception	if failed to determine binary
+   */
+  RSyncTemplate(RSync rsync) throws Exception {
+    List<String>	args;
+
+    args = new ArrayList<>();
+    if (rsync.getSshPass() != null)
+      args.addAll(rsync.getSshPass().commandLineArgs());
+    args.add(Binaries.rsyncBinary());
+    args.addAll(rsync.options());
+
+    prefix   = args.toArray(new String[0]);
+    listOnly = rsync.isListOnly();
+    maxTime  = rsync.getMaxTime();
+  }
+
+  /**
+   * Returns the precomputed arguments, i.e., everything apart from sources
+   * and destination.
+   *
+   * @return		the arguments
+   */
+  public List<String> getArgs() {
+    return Collections.unmodifiableList(Arrays.asList(prefix));
+  }
+
+  /**
+   * Returns the maximum time in seconds the process may take.
+   *
+   * @return		the time, less than 1 for no limit
+   */
+  public int getMaxTime() {
+    return maxTime;
+  }
+
+  /**
+   * Assembles the full command-line arguments.
+   *
+   * @param sources	the source paths/urls
+   * @param destination	the destination path/url, can be null if listing only
+   * @return		the arguments
+   */
+  public String[] commandLineArgs(List<String> sources, String destination) {
+    String[]	result;
+    int		i;
+
+    if (sources.isEmpty())
+      throw new IllegalStateException("No source(s) defined!");
+    if ((destination == null) && !listOnly)
+      throw new IllegalStateException("No destination defined!");
+
+    result = Arrays.copyOf(prefix, prefix.length + sources.size() + (destination == null ? 0 : 1));
+    i      = prefix.length;
+    for (String source: sources)
+      result[i++] = Binaries.convertPath(source);
+    if (destination != null)
+      result[i] = Binaries.convertPath(destination);
+
+    return result;
+  }
+
+  /**
+   * Returns a configured {@link ProcessBuilder} for the sources and destination.
+   *
+   * @param sources	the source paths/urls
+   * @param destination	the destination path/url, can be null if listing only
+   * @return		the builder
+   */
+  public ProcessBuilder builder(List<String> sources, String destination) {
+    return new ProcessBuilder(commandLineArgs(sources, destination));
+  }
+
+  /**
+   * Returns a configured {@link ProcessBuilder} for the source and destination.
+   *
+   * @param source	the source path/url
+   * @param destination	the destination path/url, can be null if listing only
+   * @return		the builder
+   */
+  public ProcessBuilder builder(String source, String destination) {
+    return builder(Collections.singletonList(source), destination);
+  }
+
+  /**
+   * Starts the rsync process for the source and destination.
+   *
+   * @param source	the source path/url
+   * @param destination	the destination path/url, can be null if listing only
+   * @return		the process
+   * @throws Exception	if starting fails
+   */
+  public Process start(String source, String destination) throws Exception {
+    return builder(source, destination).start();
+  }
+
+  /**
+   * Executes rsync for the sources and destination and waits for its
+   * completion, collecting stdout and stderr output.
+   *
+   * @param sources	the source paths/urls
+   * @param destination	the destination path/url, can be null if listing only
+   * @return		the output
+   * @throws Exception	if execution fails
+   */
+  public RSyncOutput execute(List<String> sources, String destination) throws Exception {
+    RSyncOutput	result;
+
+    result = new RSyncOutput();
+    if (maxTime > 0)
+      result.setTimeOut(maxTime);
+    result.monitor(builder(sources, destination));
+
+    return result;
+  }
+
+  /**
+   * Executes rsync for the source and destination and waits for its
+   * completion, collecting stdout and stderr output.
+   *
+   * @param source	the source path/url
+   * @param destination	the destination path/url, can be null if listing only
+   * @return		the output
+   * @throws Exception	if execution fails
+   */
+  public RSyncOutput execute(String source, String destination) throws Exception {
+    return execute(Collections.singletonList(source), destination);
+  }
+
+  /**
+   * Returns the precomputed arguments as string.
+   *
+   * @return		the arguments
+   */
+  @Override
+  public String toString() {
+    return String.join(" ", prefix);
+  }
+}
@@ -0,0 +1,611 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ReplicationTree.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.AbstractBinary;
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+/**
+ * Replicates the sources to many destinations by arranging them in a tree
+ * rather than pushing from the origin to every destination: the origin only
+ * transfers to the first K destinations (the fan-out), each of which then
+ * relays the data to its K children by running rsync on the relay via
+ * {@link Ssh#command(String)} (or locally, for local destinations). A relay
+ * starts forwarding as soon as it received the data, i.e., the levels are
+ * pipelined.
+ * <br>
+ * If a relay fails, its children get the data from the relay's sender
+ * instead. {@link #executeFlat()} performs the same replication from the
+ * origin only (with K concurrent transfers) for comparing wall times.
+ * <br>
+ * Destinations must be reachable from the relays with the same location
+ * strings (e.g., "host:/some/where/"), relays need rsync installed and
+ * password-less ssh access to their children.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ReplicationTree {
+
+  /** the sender name for the origin. */
+  public final static String ORIGIN = "origin";
+
+  /**
+   * The outcome for a single destination.
+   */
+  public static class NodeResult {
+
+    /** the destination. */
+    protected String destination;
+
+    /** the level in the tree (1 = received from origin). */
+    protected int level;
+
+    /** the sender. */
+    protected String sender;
+
+    /** the result of the transfer. */
+    protected ProcessResult result;
+
+    /** the exception, if failed to run. */
+    protected Throwable error;
+
+    /** when the transfer started, relative to the start of the replication (nanoseconds). */
+    protected long started;
+
+    /** when the transfer finished, relative to the start of the replication (nanoseconds). */
+    protected long finished;
+
+    /**
+     * Returns the destination.
+     *
+     * @return		the destination
+     */
+    public String getDestination() {
+      return destination;
+    }
+
+    /**
+     * Returns the level in the tree.
+     *
+     * @return		the level, 1 if received from the origin
+     */
+    public int getLevel() {
+      return level;
+    }
+
+    /**
+     * Returns the sender that the destination received the data from.
+     *
+     * @return		the sender, {@link #ORIGIN} or the destination of the relay
+     */
+    public String getSender() {
+      return sender;
+    }
+
+    /**
+     * Returns the result of the transfer.
+     *
+     * @return		the result, null if failed to run
+     */
+    public ProcessResult getResult() {
+      return result;
+    }
+
+    /**
+     * Returns the exception if running the transfer failed.
+     *
+     * @return		the exception, null if none
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    /**
+     * Returns whether the transfer succeeded.
+     *
+     * @return		true if successful
+     */
+    public boolean isSuccess() {
+      return (result != null) && result.hasSucceeded();
+    }
+
+    /**
+     * Returns when the transfer started, relative to the start of the replication.
+     *
+     * @return		the time in milliseconds
+     */
+    public double getStarted() {
+      return started / 1000000.0;
+    }
+
+    /**
+     * Returns when the transfer finished, relative to the start of the replication.
+     *
+     * @return		the time in milliseconds
+     */
+    public double getFinished() {
+      return finished / 1000000.0;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return destination + ": level=" + level + ", sender=" + sender + ", success=" + isSuccess()
+	+ ", started=" + getStarted() + "ms, finished=" + getFinished() + "ms";
+    }
+  }
+
+  /**
+   * The outcome of the replication.
+   */
+  public static class Result {
+
+    /** whether the tree was used. */
+    protected boolean tree;
+
+    /** the results per destination. */
+    protected List<NodeResult> nodes;
+
+    /** the wall time (nanoseconds). */
+    protected long wallTime;
+
+    /**
+     * Returns whether the replication used the tree or was flat.
+     *
+     * @return		true if tree
+     */
+    public boolean isTree() {
+      return tree;
+    }
+
+    /**
+     * Returns the results of the destinations, in the order they were added.
+     *
+     * @return		the results
+     */
+    public List<NodeResult> getNodes() {
+      return nodes;
+    }
+
+    /**
+     * Returns the time the complete replication took.
+     *
+     * @return		the time in milliseconds
+     */
+    public double getWallTime() {
+      return wallTime / 1000000.0;
+    }
+
+    /**
+     * Returns the depth of the tree.
+     *
+     * @return		the maximum level
+     */
+    public int getDepth() {
+      return nodes.stream().mapToInt(NodeResult::getLevel).max().orElse(0);
+    }
+
+    /**
+     * Returns whether all destinations are up to date.
+     *
+     * @return		true if all successful
+     */
+    public boolean isSuccess() {
+      return nodes.stream().allMatch(NodeResult::isSuccess);
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return (tree ? "tree" : "flat") + ": destinations=" + nodes.size() + ", depth=" + getDepth()
+	+ ", failed=" + nodes.stream().filter(n -> !n.isSuccess()).count() + ", wall time=" + getWallTime() + "ms";
+    }
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the rsync instance with sources and options. */
+  protected RSync rsync;
+
+  /** the ssh instance for connecting to the relays. */
+  protected Ssh ssh;
+
+  /** the destinations. */
+  protected List<String> destinations;
+
+  /** the fan-out. */
+  protected int fanOut;
+
+  /** the rsync binary on the relays. */
+  protected String remoteBinary;
+
+  /**
+   * Initializes the replication.
+   *
+   * @param rsync	the rsync instance with sources and options (destination is ignored)
+   */
+  public ReplicationTree(RSync rsync) {
+    if (rsync.getSources().isEmpty())
+      throw new IllegalArgumentException("No source(s) defined!");
+
+    this.rsync   = rsync.copy();
+    ssh          = new Ssh();
+    destinations = new ArrayList<>();
+    fanOut       = 4;
+    remoteBinary = "rsync";
+  }
+
+  /**
+   * Adds the destination.
+   *
+   * @param value	the destination, e.g., "host:/some/where/"
+   * @return		itself
+   */
+  public ReplicationTree destination(String value) {
+    destinations.add(value);
+    return this;
+  }
+
+  /**
+   * Adds the destinations.
+   *
+   * @param values	the destinations
+   * @return		itself
+   */
+  public ReplicationTree destinations(List<String> values) {
+    destinations.addAll(values);
+    return this;
+  }
+
+  /**
+   * Returns the destinations.
+   *
+   * @return		the destinations
+   */
+  public List<String> getDestinations() {
+    return Collections.unmodifiableList(destinations);
+  }
+
+  /**
+   * Sets the number of destinations each node (and the origin) sends to.
+   *
+   * @param value	the fan-out
+   * @return		itself
+   */
+  public ReplicationTree fanOut(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Fan-out must be at least 1, provided: " + value);
+    fanOut = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of destinations each node (and the origin) sends to.
+   *
+   * @return		the fan-out
+   */
+  public int getFanOut() {
+    return fanOut;
+  }
+
+  /**
+   * Sets the ssh instance to use as template for connecting to the relays
+   * (identity, port, options; hostname and command get set).
+   *
+   * @param value	the template
+   * @return		itself
+   */
+  public ReplicationTree ssh(Ssh value) {
+    ssh = value.copy();
+    return this;
+  }
+
+  /**
+   * Returns the ssh instance used as template for connecting to the relays.
+   *
+   * @return		the template
+   */
+  public Ssh getSsh() {
+    return ssh;
+  }
+
+  /**
+   * Sets the rsync binary to run on the relays.
+   *
+   * @param value	the binary
+   * @return		itself
+   */
+  public ReplicationTree remoteBinary(String value) {
+    remoteBinary = value;
+    return this;
+  }
+
+  /**
+   * Returns the rsync binary to run on the relays.
+   *
+   * @return		the binary
+   */
+  public String getRemoteBinary() {
+    return remoteBinary;
+  }
+
+  /**
+   * Splits a destination into host and path.
+   *
+   * @param destination	the destination
+   * @return		host (null if local) and path
+   */
+  protected static String[] split(String destination) {
+    String	host;
+    int		pos;
+
+    host = TransferScheduler.parseHost(destination);
+    if (host == null)
+      return new String[]{null, destination};
+    pos = destination.indexOf(':');
+    // keep the user
+    return new String[]{destination.substring(0, pos), destination.substring(pos + 1)};
+  }
+
+  /**
+   * Returns the sources on the relay, mirroring how rsync placed the origin's
+   * sources: with trailing slash the content, otherwise the directory itself.
+   *
+   * @param path	the path of the relay
+   * @return		the sources on the relay
+   */
+  protected List<String> relaySources(String path) {
+    Set<String>	result;
+    String	base;
+    String	name;
+
+    result = new LinkedHashSet<>();
+    base   = (path.endsWith("/") || path.endsWith(File.separator)) ? path : path + "/";
+    for (String source: rsync.getSources()) {
+      if (source.endsWith("/") || source.endsWith(File.separator)) {
+	result.add(base);
+      }
+      else {
+	name = source.replace('\\', '/');
+	name = name.substring(name.lastIndexOf('/') + 1);
+	result.add(base + name);
+      }
+    }
+
+    return new ArrayList<>(result);
+  }
+
+  /**
+   * Quotes the argument for the remote shell.
+   *
+   * @param arg		the argument
+   * @return		the quoted argument
+   */
+  protected static String quote(String arg) {
+    return "'" + arg.replace("'", "'\\''") + "'";
+  }
+
+  /**
+   * Creates the job that transfers the data from the sender to the destination.
+   *
+   * @param sender	the sender, null for the origin
+   * @param destination	the destination
+   * @return		the job
+   * @throws Exception	if failed to assemble the options
+   */
+  protected AbstractBinary job(String sender, String destination) throws Exception {
+    String[]		parts;
+    List<String>	args;
+
+    if (sender == null)
+      return rsync.copy().destination(destination);
+
+    parts = split(sender);
+    if (parts[0] == null)
+      return rsync.copy().sources(relaySources(parts[1])).destination(destination);
+
+    args = new ArrayList<>();
+    args.add(quote(remoteBinary));
+    for (String option: rsync.options())
+      args.add(quote(option));
+    for (String source: relaySources(parts[1]))
+      args.add(quote(source));
+    args.add(quote(destination));
+    return ssh.copy()
+      .hostname(parts[0])
+      .command(String.join(" ", args));
+  }
+
+  /**
+   * Transfers the data to the node and, once successful, onwards to its
+   * children. If the transfer fails, the children receive the data from
+   * the sender instead.
+   *
+   * @param executor	the executor for completing the futures
+   * @param results	the results per node
+   * @param start	the start of the replication (nanoseconds)
+   * @param sender	the index of the sender, -1 for the origin
+   * @param node	the index of the node
+   * @param level	the level of the node
+   * @return		the future that completes once the node and its subtree are done
+   */
+  protected CompletableFuture<Void> replicate(ExecutorService executor, NodeResult[] results, long start, int sender, int node, int level) {
+    final NodeResult				result;
+    final CompletableFuture<ProcessResult>	future;
+
+    result             = new NodeResult();
+    result.destination = destinations.get(node);
+    result.level       = level;
+    result.sender      = (sender == -1) ? ORIGIN : destinations.get(sender);
+    result.started     = System.nanoTime() - start;
+    results[node]      = result;
+    try {
+      future = job((sender == -1) ? null : destinations.get(sender), result.destination).executeAsync(executor);
+    }
+    catch (Exception e) {
+      result.error    = e;
+      result.finished = System.nanoTime() - start;
+      return children(executor, results, start, sender, node, level);
+    }
+
+    return future
+      .handle((r, t) -> {
+	result.result   = r;
+	result.error    = t;
+	result.finished = System.nanoTime() - start;
+	if (!result.isSuccess())
+	  logger.warning("Replication to " + result.destination + " from " + result.sender + " failed"
+	    + ((r == null) ? ": " + t : " with exit code " + r.getExitCode() + ": " + r.getStdErr()));
+	return result.isSuccess();
+      })
+      .thenCompose(success -> success
+	? children(executor, results, start, node, node, level)
+	: children(executor, results, start, sender, node, level));
+  }
+
+  /**
+   * Replicates the children of the node from the sender.
+   *
+   * @param executor	the executor for completing the futures
+   * @param results	the results per node
+   * @param start	the start of the replication (nanoseconds)
+   * @param sender	the index of the sender, -1 for the origin
+   * @param node	the index of the node whose children to replicate
+   * @param level	the level of the node
+   * @return		the future that completes once all children are done
+   */
+  protected CompletableFuture<Void> children(ExecutorService executor, NodeResult[] results, long start, int sender, int node, int level) {
+    List<CompletableFuture<Void>>	futures;
+    int					child;
+    int					i;
+
+    futures = new ArrayList<>();
+    for (i = 0; i < fanOut; i++) {
+      // children in heap order: node n has children K*(n+1)+i
+      child = fanOut * (node + 1) + i;
+      if (child >= destinations.size())
+	break;
+      futures.add(replicate(executor, results, start, sender, child, (sender == node) ? level + 1 : level));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Performs the replication via the tree.
+   *
+   * @return		the results
+   */
+  public Result execute() {
+    Result				result;
+    NodeResult[]			results;
+    List<CompletableFuture<Void>>	futures;
+    ExecutorService			executor;
+    long				start;
+    int					i;
+
+    result   = new Result();
+    results  = new NodeResult[destinations.size()];
+    futures  = new ArrayList<>();
+    executor = StreamPump.newExecutor();
+    start    = System.nanoTime();
+    try {
+      for (i = 0; (i < fanOut) && (i < destinations.size()); i++)
+	futures.add(replicate(executor, results, start, -1, i, 1));
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+    finally {
+      executor.shutdown();
+    }
+    result.tree     = true;
+    result.wallTime = System.nanoTime() - start;
+    result.nodes    = Collections.unmodifiableList(Arrays.asList(results));
+
+    return result;
+  }
+
+  /**
+   * Performs the replication from the origin only, with fan-out many
+   * concurrent transfers, for comparison.
+   *
+   * @return		the results
+   */
+  public Result executeFlat() {
+    Result				result;
+    TransferScheduler			scheduler;
+    List<CompletableFuture<?>>		futures;
+    NodeResult[]			results;
+    long				start;
+    int					i;
+
+    result    = new Result();
+    results   = new NodeResult[destinations.size()];
+    futures   = new ArrayList<>();
+    scheduler = new TransferScheduler(fanOut, fanOut);
+    start     = System.nanoTime();
+    try {
+      for (i = 0; i < destinations.size(); i++) {
+	final NodeResult node = new NodeResult();
+	node.destination = destinations.get(i);
+	node.level       = 1;
+	node.sender      = ORIGIN;
+	results[i]       = node;
+	futures.add(scheduler.submit(rsync.copy().destination(node.destination))
+	  .handle((r, t) -> {
+	    node.result   = r;
+	    node.error    = t;
+	    node.finished = System.nanoTime() - start;
+	    return node;
+	  }));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+    finally {
+      scheduler.shutdown();
+    }
+    result.tree     = false;
+    result.wallTime = System.nanoTime() - start;
+    result.nodes    = Collections.unmodifiableList(Arrays.asList(results));
+
+    return result;
+  }
+}
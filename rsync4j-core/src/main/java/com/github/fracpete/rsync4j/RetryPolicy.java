@@ -0,0 +1,610 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RetryPolicy.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Executes rsync, retrying failed transfers depending on the exit code
+ * (see {@link RSyncExitCode}). Between attempts, the policy waits using
+ * exponential backoff with jitter. If retries are allowed, all attempts
+ * are run with {@code --partial} (or {@code --partial-dir} if set), so that
+ * files interrupted by the first attempt already get resumed rather than
+ * sent again; retries optionally with {@code --append-verify}. All attempts
+ * are run with {@code --stats} to
+ * report the bytes transferred per attempt.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class RetryPolicy {
+
+  /**
+   * The outcome of a single attempt.
+   */
+  public static class Attempt {
+
+    /** the attempt number (1-based). */
+    protected int number;
+
+    /** the delay before the attempt (msec). */
+    protected long delay;
+
+    /** the execution time (nsec). */
+    protected long time;
+
+    /** the process result. */
+    protected ProcessResult result;
+
+    /** the stats, null if not available. */
+    protected TransferStats stats;
+
+    /**
+     * Returns the attempt number.
+     *
+     * @return		the number, 1-based
+     */
+    public int getNumber() {
+      return number;
+    }
+
+    /**
+     * Returns the delay before the attempt.
+     *
+     * @return		the delay in msec
+     */
+    public long getDelay() {
+      return delay;
+    }
+
+    /**
+     * Returns the execution time.
+     *
+     * @return		the time in msec
+     */
+    public double getTime() {
+      return time / 1000000.0;
+    }
+
+    /**
+     * Returns the process result.
+     *
+     * @return		the result
+     */
+    public ProcessResult getResult() {
+      return result;
+    }
+
+    /**
+     * Returns the classified exit code.
+     *
+     * @return		the exit code
+     */
+    public RSyncExitCode getExitCode() {
+      return RSyncExitCode.valueOf(result.getExitCode());
+    }
+
+    /**
+     * Returns the stats of the attempt.
+     *
+     * @return		the stats, null if not available (e.g., connection failed)
+     */
+    public TransferStats getStats() {
+      return stats;
+    }
+
+    /**
+     * Returns the bytes sent during the attempt.
+     *
+     * @return		the bytes, 0 if not available
+     */
+    public long getBytesSent() {
+      return (stats == null) ? 0 : Math.max(0, stats.getTotalBytesSent());
+    }
+
+    /**
+     * Returns the bytes received during the attempt.
+     *
+     * @return		the bytes, 0 if not available
+     */
+    public long getBytesReceived() {
+      return (stats == null) ? 0 : Math.max(0, stats.getTotalBytesReceived());
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "#" + number + ": exit=" + getExitCode() + ", delay=" + delay + "ms, time=" + Math.round(getTime()) + "ms"
+	+ ", sent=" + getBytesSent() + ", received=" + getBytesReceived();
+    }
+  }
+
+  /**
+   * The outcome of all attempts.
+   */
+  public static class Result {
+
+    /** the attempts. */
+    protected List<Attempt> attempts = new ArrayList<>();
+
+    /**
+     * Returns the attempts.
+     *
+     * @return		the attempts
+     */
+    public List<Attempt> getAttempts() {
+      return Collections.unmodifiableList(attempts);
+    }
+
+    /**
+     * Returns the last attempt.
+     *
+     * @return		the attempt
+     */
+    public Attempt getLastAttempt() {
+      return attempts.get(attempts.size() - 1);
+    }
+
+    /**
+     * Returns the result of the last attempt.
+     *
+     * @return		the result
+     */
+    public ProcessResult getResult() {
+      return getLastAttempt().getResult();
+    }
+
+    /**
+     * Returns the classified exit code of the last attempt.
+     *
+     * @return		the exit code
+     */
+    public RSyncExitCode getExitCode() {
+      return getLastAttempt().getExitCode();
+    }
+
+    /**
+     * Returns whether the last attempt succeeded.
+     *
+     * @return		true if successful
+     */
+    public boolean isSuccess() {
+      return getResult().hasSucceeded();
+    }
+
+    /**
+     * Returns the total bytes sent across all attempts.
+     *
+     * @return		the bytes
+     */
+    public long getBytesSent() {
+      long	result;
+
+      result = 0;
+      for (Attempt attempt: attempts)
+	result += attempt.getBytesSent();
+
+      return result;
+    }
+
+    /**
+     * Returns the total bytes received across all attempts.
+     *
+     * @return		the bytes
+     */
+    public long getBytesReceived() {
+      long	result;
+
+      result = 0;
+      for (Attempt attempt: attempts)
+	result += attempt.getBytesReceived();
+
+      return result;
+    }
+
+    /**
+     * Returns the total execution time of all attempts, excluding the delays.
+     *
+     * @return		the time in msec
+     */
+    public double getTime() {
+      double	result;
+
+      result = 0;
+      for (Attempt attempt: attempts)
+	result += attempt.getTime();
+
+      return result;
+    }
+
+    /**
+     * Returns a short description.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "attempts=" + attempts.size() + ", exit=" + getExitCode() + ", time=" + Math.round(getTime()) + "ms"
+	+ ", sent=" + getBytesSent() + ", received=" + getBytesReceived();
+    }
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the maximum number of attempts. */
+  protected int maxAttempts;
+
+  /** the delay before the first retry (msec). */
+  protected long initialDelay;
+
+  /** the maximum delay (msec). */
+  protected long maxDelay;
+
+  /** the factor to increase the delay with. */
+  protected double multiplier;
+
+  /** the fraction of the delay to randomize. */
+  protected double jitter;
+
+  /** whether to retry partial transfers (exit codes 23/24). */
+  protected boolean retryPartial;
+
+  /** the partial directory to use for retries, empty for --partial. */
+  protected String partialDir;
+
+  /** whether to use --append-verify for retries. */
+  protected boolean appendVerify;
+
+  /**
+   * Initializes the policy with 5 attempts, starting with a 1 second delay
+   * and doubling it up to 60 seconds, using 50% jitter.
+   */
+  public RetryPolicy() {
+    maxAttempts  = 5;
+    initialDelay = 1000;
+    maxDelay     = 60000;
+    multiplier   = 2.0;
+    jitter       = 0.5;
+    retryPartial = true;
+    partialDir   = "";
+    appendVerify = false;
+  }
+
+  /**
+   * Sets the maximum number of attempts.
+   *
+   * @param value	the attempts, including the first one
+   * @return		itself
+   */
+  public RetryPolicy maxAttempts(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Maximum attempts must be at least 1, provided: " + value);
+    maxAttempts = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum number of attempts.
+   *
+   * @return		the attempts, including the first one
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Sets the delay before the first retry.
+   *
+   * @param value	the delay in msec
+   * @return		itself
+   */
+  public RetryPolicy initialDelay(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Initial delay cannot be negative, provided: " + value);
+    initialDelay = value;
+    return this;
+  }
+
+  /**
+   * Returns the delay before the first retry.
+   *
+   * @return		the delay in msec
+   */
+  public long getInitialDelay() {
+    return initialDelay;
+  }
+
+  /**
+   * Sets the maximum delay between attempts.
+   *
+   * @param value	the delay in msec
+   * @return		itself
+   */
+  public RetryPolicy maxDelay(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("Maximum delay cannot be negative, provided: " + value);
+    maxDelay = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum delay between attempts.
+   *
+   * @return		the delay in msec
+   */
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  /**
+   * Sets the factor to increase the delay with after each attempt.
+   *
+   * @param value	the factor, at least 1
+   * @return		itself
+   */
+  public RetryPolicy multiplier(double value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Multiplier must be at least 1, provided: " + value);
+    multiplier = value;
+    return this;
+  }
+
+  /**
+   * Returns the factor to increase the delay with after each attempt.
+   *
+   * @return		the factor
+   */
+  public double getMultiplier() {
+    return multiplier;
+  }
+
+  /**
+   * Sets the fraction of the delay to randomize, to avoid many clients
+   * retrying at the same time.
+   *
+   * @param value	the fraction (0-1), 0 for no jitter
+   * @return		itself
+   */
+  public RetryPolicy jitter(double value) {
+    if ((value < 0) || (value > 1))
+      throw new IllegalArgumentException("Jitter must be between 0 and 1, provided: " + value);
+    jitter = value;
+    return this;
+  }
+
+  /**
+   * Returns the fraction of the delay to randomize.
+   *
+   * @return		the fraction (0-1)
+   */
+  public double getJitter() {
+    return jitter;
+  }
+
+  /**
+   * Sets whether to retry partial transfers (exit codes 23 and 24).
+   *
+   * @param value	true if to retry
+   * @return		itself
+   */
+  public RetryPolicy retryPartial(boolean value) {
+    retryPartial = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to retry partial transfers (exit codes 23 and 24).
+   *
+   * @return		true if to retry
+   */
+  public boolean isRetryPartial() {
+    return retryPartial;
+  }
+
+  /**
+   * Sets the directory for partially transferred files to use when retries
+   * are allowed (--partial-dir), keeps them in place if empty (--partial).
+   *
+   * @param value	the directory
+   * @return		itself
+   */
+  public RetryPolicy partialDir(String value) {
+    partialDir = (value == null) ? "" : value;
+    return this;
+  }
+
+  /**
+   * Returns the directory for partially transferred files to use when
+   * retries are allowed.
+   *
+   * @return		the directory, empty if using --partial
+   */
+  public String getPartialDir() {
+    return partialDir;
+  }
+
+  /**
+   * Sets whether to use --append-verify for retries. Only use this if
+   * the source files only ever grow, since files that are at least as large
+   * on the receiving side get skipped.
+   *
+   * @param value	true if to append
+   * @return		itself
+   */
+  public RetryPolicy appendVerify(boolean value) {
+    appendVerify = value;
+    return this;
+  }
+
+  /**
+   * Returns whether to use --append-verify for retries.
+   *
+   * @return		true if to append
+   */
+  public boolean isAppendVerify() {
+    return appendVerify;
+  }
+
+  /**
+   * Returns whether to retry after the specified exit code.
+   *
+   * @param code	the exit code to check
+   * @return		true if to retry
+   */
+  public boolean isRetryable(RSyncExitCode code) {
+    switch (code.getCategory()) {
+      case RETRYABLE:
+	return true;
+      case PARTIAL:
+	return retryPartial;
+      default:
+	return false;
+    }
+  }
+
+  /**
+   * Returns the delay before the specified attempt.
+   *
+   * @param attempt	the attempt (1-based)
+   * @return		the delay in msec
+   */
+  public long delay(int attempt) {
+    double	result;
+
+    if (attempt < 2)
+      return 0;
+    result = Math.min(maxDelay, initialDelay * Math.pow(multiplier, attempt - 2));
+    if (jitter > 0)
+      result -= result * jitter * ThreadLocalRandom.current().nextDouble();
+
+    return Math.round(result);
+  }
+
+  /**
+   * Configures the rsync instance for the specified attempt.
+   *
+   * @param rsync	the rsync setup to use as basis
+   * @param attempt	the attempt (1-based)
+   * @return		the configured copy
+   */
+  protected RSync configure(RSync rsync, int attempt) {
+    RSync	result;
+
+    result = rsync.copy().stats(true);
+    // the first attempt needs to keep partial files already for retries to resume them
+    if (maxAttempts > 1) {
+      // --partial-dir cannot be combined with --inplace
+      if (!partialDir.isEmpty() && !result.isInplace())
+	result.partialDir(partialDir);
+      else
+	result.partial(true);
+    }
+    if ((attempt > 1) && appendVerify)
+      result.appendVerify(true);
+
+    return result;
+  }
+
+  /**
+   * Performs the specified attempt and further ones if necessary.
+   *
+   * @param rsync	the rsync setup
+   * @param executor	the executor to use
+   * @param result	the result to add the attempts to
+   * @param number	the attempt (1-based)
+   * @param delay	the delay before this attempt (msec)
+   * @return		the future for the result
+   */
+  protected CompletableFuture<Result> attempt(RSync rsync, Executor executor, Result result, int number, long delay) {
+    final Attempt	attempt;
+    final long		start;
+
+    attempt        = new Attempt();
+    attempt.number = number;
+    attempt.delay  = delay;
+    start          = System.nanoTime();
+    try {
+      return configure(rsync, number).executeAsync(executor)
+	.thenCompose(r -> {
+	  long next;
+	  attempt.time   = System.nanoTime() - start;
+	  attempt.result = r;
+	  attempt.stats  = TransferStats.parse(r.getStdOut());
+	  result.attempts.add(attempt);
+	  if (r.hasSucceeded() || (number >= maxAttempts) || !isRetryable(attempt.getExitCode()))
+	    return CompletableFuture.completedFuture(result);
+	  next = delay(number + 1);
+	  logger.info("Attempt " + number + " for " + rsync.getDestination() + " failed with exit code "
+	    + attempt.getExitCode() + ", retrying in " + next + "ms");
+	  return CompletableFuture.supplyAsync(() -> null, CompletableFuture.delayedExecutor(next, TimeUnit.MILLISECONDS, executor))
+	    .thenCompose(v -> attempt(rsync, executor, result, number + 1, next));
+	});
+    }
+    catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Executes rsync asynchronously, retrying as required.
+   *
+   * @param rsync	the rsync setup to execute
+   * @param executor	the executor for completing the futures and waiting between attempts
+   * @return		the future for the result
+   */
+  public CompletableFuture<Result> executeAsync(RSync rsync, Executor executor) {
+    return attempt(rsync, executor, new Result(), 1, 0);
+  }
+
+  /**
+   * Executes rsync and waits for its completion, retrying as required.
+   *
+   * @param rsync	the rsync setup to execute
+   * @return		the result
+   * @throws Exception	if execution fails or interrupted
+   */
+  public Result execute(RSync rsync) throws Exception {
+    ExecutorService	executor;
+
+    executor = StreamPump.newExecutor();
+    try {
+      return executeAsync(rsync, executor).get();
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+}
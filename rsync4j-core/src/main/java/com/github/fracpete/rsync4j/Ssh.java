@@ -15,7 +15,7 @@
 
 /*
  * Ssh.java
- * Copyright (C) 2018-2025 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2018-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.rsync4j;
@@ -860,6 +860,67 @@ public class Ssh
     return sshPass;
   }
 
+  /**
+   * Returns a copy of this instance, e.g., for using this instance as a
+   * template for several ssh processes. The {@link SshPass} instance, if any,
+   * is shared.
+   *
+   * @return		the copy
+   */
+  public Ssh copy() {
+    Ssh		result;
+
+    result = new Ssh();
+    result.outputCommandline(getOutputCommandline());
+    result.outputSingleCommandline(getOutputSingleCommandline());
+    result.maxTime(getMaxTime());
+    result.version1 = version1;
+    result.version2 = version2;
+    result.ipv4 = ipv4;
+    result.ipv6 = ipv6;
+    result.forwardAgent = forwardAgent;
+    result.bindAddress = bindAddress;
+    result.compression = compression;
+    result.cipherSpec = cipherSpec;
+    result.dynamicBindAddress = dynamicBindAddress;
+    result.logFile = logFile;
+    result.escapeChar = escapeChar;
+    result.configFile = configFile;
+    result.background = background;
+    result.printConfig = printConfig;
+    result.allowRemoteConnect = allowRemoteConnect;
+    result.pkcs11 = pkcs11;
+    result.identifyFile = identifyFile;
+    result.gssapi = gssapi;
+    result.local = local;
+    result.loginName = loginName;
+    result.masterMode = masterMode;
+    result.macSpec = macSpec;
+    result.noRemoteExecute = noRemoteExecute;
+    result.fromNull = fromNull;
+    result.controlCommand = controlCommand;
+    result.option = new ArrayList<>(option);
+    result.port = port;
+    result.queryOption = queryOption;
+    result.quiet = quiet;
+    result.remote = remote;
+    result.controlSocket = controlSocket;
+    result.subsystem = subsystem;
+    result.terminal = terminal;
+    result.version = version;
+    result.verbose = verbose;
+    result.forwardTo = forwardTo;
+    result.forwardTunnel = forwardTunnel;
+    result.x11 = x11;
+    result.trustedX11 = trustedX11;
+    result.syslog = syslog;
+    result.hostname = hostname;
+    result.command = command;
+    result.sshPass = sshPass;
+
+    return result;
+  }
+
   /**
    * Assembles the arguments for the binary.
    *
@@ -1166,8 +1227,7 @@ public class Ssh
       .setDefault("");
     parser.addArgument("-o")
       .dest("option")
-      .help("Can be used to give options in the format used in the configuration file.")
-      .setDefault(new ArrayList<>());
+      .help("Can be used to give options in the format used in the configuration file.");
     parser.addArgument("-p")
       .dest("port")
       .help("Port to connect to on the remote host.")
@@ -1300,7 +1360,7 @@ public class Ssh
     noRemoteExecute(ns.getBoolean("noRemoteExecute"));
     fromNull(ns.getBoolean("fromNull"));
     controlCommand(ns.getString("controlCommand"));
-    option(ns.getList("option"));
+    option(getList(ns, "option"));
     port(ns.getInt("port"));
     queryOption(ns.getString("queryOption"));
     quiet(ns.getBoolean("quiet"));
@@ -0,0 +1,715 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SshConnectionPool.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.processoutput4j.output.CollectingProcessOutput;
+import com.github.fracpete.rsync4j.core.Binaries;
+import com.github.fracpete.rsync4j.core.Utils;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains persistent ssh master connections (ControlMaster), one per
+ * user@host:port and identity, and configures {@link RSync} instances to
+ * multiplex their sessions over them via the control socket. This avoids
+ * the key exchange and authentication for every rsync process.
+ * <br>
+ * The connections are started using a template {@link Ssh} instance (e.g.,
+ * for identity file, port, options or sshpass), get health-checked
+ * periodically and are shut down once idle for longer than the TTL.
+ * Port ({@code -p}), identity ({@code -i}) and login name ({@code -l}) in
+ * the remote shell of an {@link RSync} instance take precedence over the
+ * template.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SshConnectionPool
+  implements AutoCloseable {
+
+  /**
+   * The remote end of a master connection.
+   */
+  public static class Endpoint {
+
+    /** the user@host. */
+    protected String userHost;
+
+    /** the port, -1 for default. */
+    protected int port;
+
+    /** the identity file, empty for default. */
+    protected String identity;
+
+    /**
+     * Initializes the endpoint.
+     *
+     * @param userHost	the user@host
+     * @param port	the port, -1 for default
+     * @param identity	the identity file, empty for default
+     */
+    public Endpoint(String userHost, int port, String identity) {
+      this.userHost = userHost;
+      this.port     = port;
+      this.identity = (identity == null) ? "" : identity;
+    }
+
+    /**
+     * Returns the user@host.
+     *
+     * @return		the user@host
+     */
+    public String getUserHost() {
+      return userHost;
+    }
+
+    /**
+     * Returns the port.
+     *
+     * @return		the port, -1 for default
+     */
+    public int getPort() {
+      return port;
+    }
+
+    /**
+     * Returns the identity file.
+     *
+     * @return		the file, empty for default
+     */
+    public String getIdentity() {
+      return identity;
+    }
+
+    /**
+     * Returns the key for the connection, i.e., user@host:port and identity.
+     *
+     * @return		the key
+     */
+    public String key() {
+      return userHost + ":" + ((port > 0) ? port : 22) + (identity.isEmpty() ? "" : " " + identity);
+    }
+
+    /**
+     * Returns the key.
+     *
+     * @return		the key
+     * @see		#key()
+     */
+    @Override
+    public String toString() {
+      return key();
+    }
+  }
+
+  /**
+   * Container for a master connection.
+   */
+  protected static class Master {
+
+    /** the endpoint. */
+    protected Endpoint endpoint;
+
+    /** the control socket. */
+    protected File socket;
+
+    /** the master process. */
+    protected Process process;
+
+    /** the last time the connection was handed out (msec). */
+    protected volatile long lastUsed;
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the template for the master connections. */
+  protected Ssh template;
+
+  /** the idle time in seconds after which to shut down a connection. */
+  protected int ttl;
+
+  /** the maximum time in seconds to wait for a connection to get established. */
+  protected int startupTimeout;
+
+  /** the directory for the control sockets. */
+  protected File socketDir;
+
+  /** the master connections, completed once established (key - master). */
+  protected Map<String,CompletableFuture<Master>> masters;
+
+  /** the counter for the socket names. */
+  protected AtomicInteger counter;
+
+  /** for the periodic health checks and idle shutdowns. */
+  protected ScheduledExecutorService sweeper;
+
+  /**
+   * Initializes the pool with a default template and a TTL of 5 minutes.
+   *
+   * @throws Exception	if creating the directory for the sockets fails
+   */
+  public SshConnectionPool() throws Exception {
+    this(new Ssh(), 300);
+  }
+
+  /**
+   * Initializes the pool.
+   *
+   * @param template	the template for starting the master connections, hostname and command get ignored
+   * @param ttl		the idle time in seconds after which to shut down a connection
+   * @throws Exception	if creating the directory for the sockets fails
+   */
+  public SshConnectionPool(Ssh template, int ttl) throws Exception {
+    if (ttl < 1)
+      throw new IllegalArgumentException("TTL must be at least 1 second, provided: " + ttl);
+
+    this.template       = template.copy();
+    this.ttl            = ttl;
+    this.startupTimeout = 30;
+    this.masters        = new HashMap<>();
+    this.counter        = new AtomicInteger();
+    this.socketDir      = Files.createTempDirectory("rsync4j-ssh").toFile();
+    this.sweeper        = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, getClass().getSimpleName() + "-sweeper");
+      t.setDaemon(true);
+      return t;
+    });
+    this.sweeper.scheduleWithFixedDelay(this::sweep, Math.max(1, ttl / 2), Math.max(1, ttl / 2), TimeUnit.SECONDS);
+  }
+
+  /**
+   * Returns the idle time after which connections get shut down.
+   *
+   * @return		the TTL in seconds
+   */
+  public int getTTL() {
+    return ttl;
+  }
+
+  /**
+   * Sets the maximum time to wait for a connection to get established.
+   *
+   * @param value	the time in seconds, at least 1
+   * @return		itself
+   */
+  public SshConnectionPool startupTimeout(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Startup timeout must be at least 1 second, provided: " + value);
+    startupTimeout = value;
+    return this;
+  }
+
+  /**
+   * Returns the maximum time to wait for a connection to get established.
+   *
+   * @return		the time in seconds
+   */
+  public int getStartupTimeout() {
+    return startupTimeout;
+  }
+
+  /**
+   * Extracts the "[user@]host" from a remote shell location like
+   * "[user@]host:path". Daemon locations ("host::module", "rsync://...")
+   * and local paths are ignored.
+   *
+   * @param location	the location to parse
+   * @return		the user@host, null if not a remote shell location
+   */
+  public static String parseUserHost(String location) {
+    int		pos;
+
+    if ((location == null) || location.isEmpty() || location.contains("://"))
+      return null;
+    pos = location.indexOf(':');
+    if ((pos < 1) || location.matches("^[a-zA-Z]:.*") || location.substring(0, pos).contains("/"))
+      return null;
+    if (location.startsWith("::", pos))
+      return null;
+
+    return location.substring(0, pos);
+  }
+
+  /**
+   * Returns the "[user@]host" that the rsync instance connects to via the
+   * remote shell.
+   *
+   * @param rsync	the instance to check
+   * @return		the user@host, null if none
+   */
+  public static String getUserHost(RSync rsync) {
+    String	result;
+
+    result = parseUserHost(rsync.getDestination());
+    if (result == null) {
+      for (String source: rsync.getSources()) {
+	result = parseUserHost(source);
+	if (result != null)
+	  break;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Splits the remote shell command into its arguments, honoring single
+   * and double quotes.
+   *
+   * @param rsh		the command to split
+   * @return		the arguments
+   */
+  public static List<String> splitRsh(String rsh) {
+    List<String>	result;
+    StringBuilder	current;
+    boolean		inArg;
+    char		quote;
+    char		c;
+    int			i;
+
+    result  = new ArrayList<>();
+    current = new StringBuilder();
+    inArg   = false;
+    quote   = 0;
+    for (i = 0; i < rsh.length(); i++) {
+      c = rsh.charAt(i);
+      if (quote != 0) {
+	if (c == quote)
+	  quote = 0;
+	else
+	  current.append(c);
+      }
+      else if ((c == '"') || (c == '\'')) {
+	quote = c;
+	inArg = true;
+      }
+      else if (Character.isWhitespace(c)) {
+	if (inArg)
+	  result.add(current.toString());
+	current.setLength(0);
+	inArg = false;
+      }
+      else {
+	current.append(c);
+	inArg = true;
+      }
+    }
+    if (inArg)
+      result.add(current.toString());
+
+    return result;
+  }
+
+  /**
+   * Checks whether the remote shell arguments represent ssh, based on the
+   * name of the executable.
+   *
+   * @param args	the arguments of the remote shell
+   * @return		true if ssh
+   */
+  protected static boolean isSsh(List<String> args) {
+    String	name;
+
+    if (args.isEmpty())
+      return false;
+    name = new File(args.get(0)).getName().toLowerCase();
+    return name.equals("ssh") || name.equals("ssh.exe");
+  }
+
+  /**
+   * Determines the endpoint from the user@host and the port ({@code -p},
+   * {@code -o Port=}), identity ({@code -i}, {@code -o IdentityFile=}) and
+   * login name ({@code -l}) of the ssh arguments, falling back on the
+   * template for port and identity.
+   *
+   * @param userHost	the user@host of the location
+   * @param args	the ssh arguments
+   * @return		the endpoint
+   */
+  protected Endpoint endpoint(String userHost, List<String> args) {
+    int		port;
+    String	identity;
+    String	login;
+    String	arg;
+    String	value;
+    char	opt;
+    int		i;
+
+    port     = template.getPort();
+    identity = template.getIdentifyFile();
+    login    = null;
+    for (i = 1; i < args.size(); i++) {
+      arg = args.get(i);
+      if ((arg.length() < 2) || (arg.charAt(0) != '-') || ("pilo".indexOf(arg.charAt(1)) == -1))
+	continue;
+      opt   = arg.charAt(1);
+      value = (arg.length() > 2) ? arg.substring(2) : ((i + 1 < args.size()) ? args.get(++i) : "");
+      if (opt == 'o') {
+	if (value.matches("(?i)port[= ].*")) {
+	  opt   = 'p';
+	  value = value.substring(5).trim();
+	}
+	else if (value.matches("(?i)identityfile[= ].*")) {
+	  opt   = 'i';
+	  value = value.substring(13).trim();
+	}
+      }
+      switch (opt) {
+	case 'p':
+	  try {
+	    port = Integer.parseInt(value);
+	  }
+	  catch (NumberFormatException e) {
+	    logger.warning("Invalid ssh port: " + value);
+	  }
+	  break;
+	case 'i':
+	  identity = value;
+	  break;
+	case 'l':
+	  login = value;
+	  break;
+      }
+    }
+
+    // like ssh, -l takes precedence over the user in user@host
+    if (login != null)
+      userHost = login + "@" + userHost.substring(userHost.indexOf('@') + 1);
+
+    return new Endpoint(userHost, port, identity);
+  }
+
+  /**
+   * Checks whether the master connection is alive.
+   *
+   * @param master	the connection to check
+   * @return		true if alive
+   */
+  protected boolean check(Master master) {
+    CollectingProcessOutput	output;
+
+    if (!master.process.isAlive())
+      return false;
+    try {
+      output = controlCommand(master, "check").execute();
+      return (output.getExitCode() == 0);
+    }
+    catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to check connection to: " + master.endpoint, e);
+      return false;
+    }
+  }
+
+  /**
+   * Returns the ssh instance for sending the control command to the master.
+   *
+   * @param master	the connection
+   * @param command	the command (check/stop/exit)
+   * @return		the configured instance
+   */
+  protected Ssh controlCommand(Master master, String command) {
+    return new Ssh()
+      .controlSocket(master.socket.getAbsolutePath())
+      .controlCommand(command)
+      .hostname(master.endpoint.getUserHost());
+  }
+
+  /**
+   * Starts a new master connection and waits for it to become available.
+   *
+   * @param endpoint	the endpoint to connect to
+   * @return		the connection
+   * @throws Exception	if the connection cannot be established
+   */
+  protected Master start(Endpoint endpoint) throws Exception {
+    Master		result;
+    Ssh			ssh;
+    ProcessBuilder	builder;
+    long		end;
+
+    result          = new Master();
+    result.endpoint = endpoint;
+    result.socket   = new File(socketDir, "cm" + counter.getAndIncrement());
+    ssh = template.copy()
+      .masterMode(true)
+      .noRemoteExecute(true)
+      .controlSocket(result.socket.getAbsolutePath())
+      .controlCommand("")
+      .hostname(endpoint.getUserHost())
+      .command("");
+    if (endpoint.getPort() > 0)
+      ssh.port(endpoint.getPort());
+    if (!endpoint.getIdentity().isEmpty())
+      ssh.identifyFile(endpoint.getIdentity());
+    builder = ssh.builder();
+    builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+    builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+    logger.info("Starting master connection to: " + endpoint);
+    result.process = builder.start();
+
+    end = System.currentTimeMillis() + startupTimeout * 1000L;
+    while (!result.socket.exists() || !check(result)) {
+      if (!result.process.isAlive())
+	throw new IllegalStateException("Failed to establish master connection to " + endpoint + ", exit code: " + result.process.exitValue());
+      if (System.currentTimeMillis() > end) {
+	Utils.destroy(result.process);
+	throw new IllegalStateException("Timed out establishing master connection to: " + endpoint);
+      }
+      Thread.sleep(100);
+    }
+
+    return result;
+  }
+
+  /**
+   * Shuts down the master connection.
+   *
+   * @param master	the connection to shut down
+   * @param command	the control command to use, "stop" lets active sessions finish, "exit" terminates them
+   */
+  protected void stop(Master master, String command) {
+    logger.info("Shutting down master connection to: " + master.endpoint);
+    try {
+      if (master.process.isAlive())
+	controlCommand(master, command).execute();
+    }
+    catch (Exception e) {
+      logger.log(Level.WARNING, "Failed to send '" + command + "' to master connection: " + master.endpoint, e);
+    }
+    if (command.equals("exit") && master.process.isAlive())
+      Utils.destroy(master.process);
+  }
+
+  /**
+   * Returns the control socket for the user@host, using port and identity
+   * of the template, starting a master connection if necessary.
+   *
+   * @param userHost	the user@host to connect to
+   * @return		the control socket
+   * @throws Exception	if the connection cannot be established
+   */
+  public File acquire(String userHost) throws Exception {
+    return acquire(new Endpoint(userHost, template.getPort(), template.getIdentifyFile()));
+  }
+
+  /**
+   * Returns the control socket for the endpoint, starting a master
+   * connection if necessary. Connections get established outside the lock
+   * of the pool, i.e., a slow host only blocks callers for the same
+   * endpoint.
+   *
+   * @param endpoint	the endpoint to connect to
+   * @return		the control socket
+   * @throws Exception	if the connection cannot be established
+   */
+  public File acquire(Endpoint endpoint) throws Exception {
+    String			key;
+    CompletableFuture<Master>	future;
+    Master			master;
+    boolean			owner;
+
+    key   = endpoint.key();
+    owner = false;
+    synchronized(this) {
+      if (sweeper.isShutdown())
+	throw new IllegalStateException("Pool has been closed!");
+      future = masters.get(key);
+      if ((future != null) && future.isDone()) {
+	master = future.isCompletedExceptionally() ? null : future.join();
+	if ((master == null) || !master.process.isAlive()) {
+	  logger.warning("Master connection to " + key + " has died, restarting");
+	  masters.remove(key);
+	  future = null;
+	}
+      }
+      if (future == null) {
+	future = new CompletableFuture<>();
+	masters.put(key, future);
+	owner = true;
+      }
+    }
+
+    if (owner) {
+      try {
+	master = start(endpoint);
+      }
+      catch (Exception e) {
+	synchronized(this) {
+	  masters.remove(key, future);
+	}
+	future.completeExceptionally(e);
+	throw e;
+      }
+      master.lastUsed = System.currentTimeMillis();
+      synchronized(this) {
+	if (masters.get(key) == future)
+	  future.complete(master);
+      }
+      // closed in the meantime?
+      if (!future.isDone()) {
+	stop(master, "exit");
+	future.completeExceptionally(new IllegalStateException("Pool has been closed!"));
+      }
+    }
+
+    try {
+      master = future.get();
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception)
+	throw (Exception) e.getCause();
+      throw e;
+    }
+    master.lastUsed = System.currentTimeMillis();
+
+    return master.socket;
+  }
+
+  /**
+   * Configures the rsync instance to use the master connection of the remote
+   * host (if any) by adding the control socket to its remote shell.
+   * Instances that don't use ssh as remote shell or that already use
+   * a control socket of their own are left untouched. Configuring an
+   * instance again replaces the control socket added previously.
+   *
+   * @param rsync	the instance to configure
+   * @return		the instance
+   * @throws Exception	if the connection cannot be established
+   */
+  public RSync configure(RSync rsync) throws Exception {
+    String		userHost;
+    String		rsh;
+    List<String>	args;
+    File		socket;
+
+    userHost = getUserHost(rsync);
+    if (userHost == null)
+      return rsync;
+
+    rsh = rsync.getRsh();
+    if (rsh.isEmpty() || rsh.equalsIgnoreCase("ssh"))
+      rsh = Binaries.sshBinary();
+    // remove socket from previous call
+    rsh  = rsh.replaceAll(" -S \"?" + Pattern.quote(new File(socketDir, "cm").getAbsolutePath()) + "\\d+\"?", "");
+    args = splitRsh(rsh);
+    if (!isSsh(args) && !args.equals(splitRsh(Binaries.sshBinary()))) {
+      logger.fine("Remote shell is not ssh, not using master connection: " + rsh);
+      return rsync;
+    }
+    if (args.contains("-S")) {
+      logger.fine("Remote shell already uses a control socket: " + rsh);
+      return rsync;
+    }
+
+    socket = acquire(endpoint(userHost, args));
+    rsync.rsh(rsh + " -S " + Binaries.quotePath(socket.getAbsolutePath()));
+
+    return rsync;
+  }
+
+  /**
+   * Performs health checks and shuts down idle connections. The checks
+   * are performed outside the lock of the pool.
+   */
+  protected void sweep() {
+    Map<String,CompletableFuture<Master>>	active;
+    List<Master>				stop;
+    Master					master;
+    long					now;
+
+    stop   = new ArrayList<>();
+    active = new HashMap<>();
+    now    = System.currentTimeMillis();
+    synchronized(this) {
+      for (Map.Entry<String,CompletableFuture<Master>> entry: new ArrayList<>(masters.entrySet())) {
+	if (!entry.getValue().isDone() || entry.getValue().isCompletedExceptionally())
+	  continue;
+	master = entry.getValue().join();
+	if (now - master.lastUsed > ttl * 1000L) {
+	  masters.remove(entry.getKey());
+	  stop.add(master);
+	}
+	else {
+	  active.put(entry.getKey(), entry.getValue());
+	}
+      }
+    }
+
+    for (Map.Entry<String,CompletableFuture<Master>> entry: active.entrySet()) {
+      master = entry.getValue().join();
+      if (!check(master)) {
+	logger.warning("Master connection to " + entry.getKey() + " failed health check, removing");
+	synchronized(this) {
+	  masters.remove(entry.getKey(), entry.getValue());
+	}
+	Utils.destroy(master.process);
+      }
+    }
+
+    for (Master m: stop)
+      stop(m, "stop");
+  }
+
+  /**
+   * Returns the number of master connections (incl. the ones getting
+   * established).
+   *
+   * @return		the number of connections
+   */
+  public synchronized int size() {
+    return masters.size();
+  }
+
+  /**
+   * Shuts down all master connections, terminating any active sessions.
+   * Connections still getting established are shut down once available.
+   */
+  @Override
+  public void close() {
+    List<CompletableFuture<Master>>	all;
+
+    sweeper.shutdownNow();
+    synchronized(this) {
+      all = new ArrayList<>(masters.values());
+      masters.clear();
+    }
+    for (CompletableFuture<Master> future: all) {
+      if (future.isDone() && !future.isCompletedExceptionally())
+	stop(future.join(), "exit");
+    }
+    FileUtils.deleteQuietly(socketDir);
+  }
+}
@@ -1176,8 +1176,7 @@ public class SshKeyGen
       .setDefault("");
     parser.addArgument("-O")
       .dest("option")
-      .help("Specify a certificate option when signing a key.")
-      .setDefault(new ArrayList<>());
+      .help("Specify a certificate option when signing a key.");
     parser.addArgument("-o")
       .dest("useOpenSshFormat")
       .help("Causes ssh-keygen to save private keys using the new OpenSSH format rather than the more compatible PEM format.")
@@ -1269,8 +1268,7 @@ public class SshKeyGen
     parser.addArgument("file")
       .nargs("*")
       .dest("file")
-      .help("The key file(s).")
-      .setDefault(new ArrayList<>());
+      .help("The key file(s).");
 
     return parser;
   }
@@ -1315,7 +1313,7 @@ public class SshKeyGen
     keyFormat(ns.getString("keyFormat"));
     newPassPhrase(ns.getString("newPassPhrase"));
     principals(ns.getString("principals"));
-    option(ns.getList("option"));
+    option(getList(ns, "option"));
     useOpenSshFormat(ns.getBoolean("useOpenSshFormat"));
     passPhrase(ns.getString("passPhrase"));
     changePassPhrase(ns.getBoolean("changePassPhrase"));
@@ -1333,7 +1331,7 @@ public class SshKeyGen
     generator(ns.getString("generator"));
     readPrivatePrintPublicOpenSsh(ns.getBoolean("readPrivatePrintPublicOpenSsh"));
     serialNumber(ns.getString("serialNumber"));
-    file(ns.getList("file"));
+    file(getList(ns, "file"));
 
     return true;
   }
@@ -0,0 +1,470 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TransferScheduler.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import com.github.fracpete.rsync4j.core.AbstractBinary;
+import com.github.fracpete.rsync4j.core.ProcessResult;
+import com.github.fracpete.rsync4j.core.StreamPump;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queues {@link RSync}, {@link Ssh} (or any other {@link AbstractBinary}) jobs
+ * and runs them asynchronously, limiting the number of concurrently running
+ * processes globally and per remote host. Jobs with a higher priority get
+ * started first, jobs with the same priority in the order they were submitted.
+ * <br>
+ * The host of a job is determined by {@link #getHost(AbstractBinary)}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TransferScheduler {
+
+  /** the host used for jobs that don't involve a remote host. */
+  public final static String LOCALHOST = "localhost";
+
+  /**
+   * Container for a queued job.
+   */
+  protected static class Job {
+
+    /** the binary to execute. */
+    protected AbstractBinary binary;
+
+    /** the priority. */
+    protected int priority;
+
+    /** the submission order. */
+    protected long sequence;
+
+    /** the host. */
+    protected String host;
+
+    /** the time the job got submitted (nanoseconds). */
+    protected long submitted;
+
+    /** the time the job got started (nanoseconds). */
+    protected long started;
+
+    /** the future handed out to the caller. */
+    protected CompletableFuture<ProcessResult> result;
+
+    /** the future of the running process. */
+    protected volatile CompletableFuture<ProcessResult> process;
+  }
+
+  /** for logging. */
+  protected Logger logger = Logger.getLogger(getClass().getName());
+
+  /** the maximum number of concurrent processes. */
+  protected int maxConcurrent;
+
+  /** the maximum number of concurrent processes per host. */
+  protected int maxPerHost;
+
+  /** the executor for completing the jobs and running the Java engine. */
+  protected ExecutorService executor;
+
+  /** the queued jobs. */
+  protected PriorityQueue<Job> queue;
+
+  /** the number of running jobs per host. */
+  protected Map<String,Integer> running;
+
+  /** the total number of running jobs. */
+  protected int numRunning;
+
+  /** whether the scheduler got shut down. */
+  protected boolean shutdown;
+
+  /** the submission counter. */
+  protected long sequence;
+
+  /** the number of completed jobs. */
+  protected long numCompleted;
+
+  /** the accumulated wait time of started jobs (nanoseconds). */
+  protected long totalWaitTime;
+
+  /** the maximum wait time of a started job (nanoseconds). */
+  protected long maxWaitTime;
+
+  /** the number of started jobs. */
+  protected long numStarted;
+
+  /** the accumulated run time of completed jobs (nanoseconds). */
+  protected long totalRunTime;
+
+  /**
+   * Initializes the scheduler.
+   *
+   * @param maxConcurrent	the maximum number of concurrent processes
+   * @param maxPerHost		the maximum number of concurrent processes per host
+   */
+  public TransferScheduler(int maxConcurrent, int maxPerHost) {
+    if (maxConcurrent < 1)
+      throw new IllegalArgumentException("Maximum number of concurrent processes must be at least 1, provided: " + maxConcurrent);
+    if (maxPerHost < 1)
+      throw new IllegalArgumentException("Maximum number of processes per host must be at least 1, provided: " + maxPerHost);
+
+    this.maxConcurrent = maxConcurrent;
+    this.maxPerHost    = maxPerHost;
+    // the output gets drained by StreamPump.shared(), this only needs to keep up with the jobs
+    this.executor      = StreamPump.newExecutor(2 * maxConcurrent);
+    this.queue         = new PriorityQueue<>((j1, j2) -> {
+      if (j1.priority != j2.priority)
+	return Integer.compare(j2.priority, j1.priority);
+      return Long.compare(j1.sequence, j2.sequence);
+    });
+    this.running       = new HashMap<>();
+  }
+
+  /**
+   * Returns the maximum number of concurrent processes.
+   *
+   * @return		the maximum
+   */
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * Returns the maximum number of concurrent processes per host.
+   *
+   * @return		the maximum
+   */
+  public int getMaxPerHost() {
+    return maxPerHost;
+  }
+
+  /**
+   * Extracts the host from a remote location like "[user@]host:path",
+   * "[user@]host::module" or "rsync://[user@]host[:port]/module".
+   *
+   * @param location	the location to parse
+   * @return		the host, null if a local path
+   */
+  public static String parseHost(String location) {
+    String	result;
+    int		pos;
+
+    if ((location == null) || location.isEmpty())
+      return null;
+
+    if (location.startsWith("rsync://")) {
+      result = location.substring("rsync://".length());
+      pos    = result.indexOf('/');
+      if (pos > -1)
+	result = result.substring(0, pos);
+      pos = result.lastIndexOf(':');
+      if (pos > -1)
+	result = result.substring(0, pos);
+    }
+    else {
+      pos = location.indexOf(':');
+      // no colon, windows drive letter or colon after a slash -> local
+      if ((pos < 1) || location.matches("^[a-zA-Z]:.*") || location.substring(0, pos).contains("/"))
+	return null;
+      result = location.substring(0, pos);
+    }
+
+    pos = result.lastIndexOf('@');
+    if (pos > -1)
+      result = result.substring(pos + 1);
+
+    return result.isEmpty() ? null : result;
+  }
+
+  /**
+   * Determines the host that the job connects to: the destination's host
+   * for {@link RSync} (or the first remote source's when pulling), the
+   * hostname for {@link Ssh} and {@link #LOCALHOST} otherwise.
+   *
+   * @param binary	the job to get the host for
+   * @return		the host
+   */
+  public static String getHost(AbstractBinary binary) {
+    String	result;
+    RSync	rsync;
+
+    result = null;
+    if (binary instanceof RSync) {
+      rsync  = (RSync) binary;
+      result = parseHost(rsync.getDestination());
+      if (result == null) {
+	for (String source: rsync.getSources()) {
+	  result = parseHost(source);
+	  if (result != null)
+	    break;
+	}
+      }
+    }
+    else if (binary instanceof Ssh) {
+      result = ((Ssh) binary).getHostname();
+      if (result.contains("@"))
+	result = result.substring(result.lastIndexOf('@') + 1);
+      if (result.isEmpty())
+	result = null;
+    }
+
+    return (result == null) ? LOCALHOST : result;
+  }
+
+  /**
+   * Submits the job with default priority 0.
+   *
+   * @param binary	the job to run
+   * @return		the future for the result, cancelling it removes the job from the queue or kills the process
+   */
+  public CompletableFuture<ProcessResult> submit(AbstractBinary binary) {
+    return submit(binary, 0);
+  }
+
+  /**
+   * Submits the job.
+   *
+   * @param binary	the job to run
+   * @param priority	the priority, higher values get started first
+   * @return		the future for the result, cancelling it removes the job from the queue or kills the process
+   */
+  public CompletableFuture<ProcessResult> submit(AbstractBinary binary, int priority) {
+    final Job	job;
+
+    job           = new Job();
+    job.binary    = binary;
+    job.priority  = priority;
+    job.host      = getHost(binary);
+    job.submitted = System.nanoTime();
+    job.result    = new CompletableFuture<>();
+    job.result.whenComplete((r, t) -> {
+      if (job.result.isCancelled())
+	cancelled(job);
+    });
+
+    synchronized(this) {
+      if (shutdown)
+	throw new IllegalStateException("Scheduler has been shut down!");
+      job.sequence = sequence++;
+      queue.add(job);
+    }
+    dispatch();
+
+    return job.result;
+  }
+
+  /**
+   * Handles a job that the caller cancelled.
+   *
+   * @param job		the job that got cancelled
+   */
+  protected void cancelled(Job job) {
+    boolean	queued;
+
+    synchronized(this) {
+      queued = queue.remove(job);
+    }
+    if (!queued && (job.process != null))
+      job.process.cancel(true);
+  }
+
+  /**
+   * Starts as many queued jobs as the limits allow.
+   */
+  protected void dispatch() {
+    List<Job>		start;
+    List<Job>		skipped;
+    Job			job;
+
+    start   = new ArrayList<>();
+    skipped = new ArrayList<>();
+    synchronized(this) {
+      while (!queue.isEmpty() && (numRunning < maxConcurrent)) {
+	job = queue.poll();
+	if (running.getOrDefault(job.host, 0) >= maxPerHost) {
+	  skipped.add(job);
+	  continue;
+	}
+	running.merge(job.host, 1, Integer::sum);
+	numRunning++;
+	job.started    = System.nanoTime();
+	numStarted++;
+	totalWaitTime += job.started - job.submitted;
+	maxWaitTime    = Math.max(maxWaitTime, job.started - job.submitted);
+	start.add(job);
+      }
+      queue.addAll(skipped);
+      if (shutdown && queue.isEmpty() && (numRunning == 0))
+	executor.shutdown();
+    }
+
+    for (Job j: start)
+      start(j);
+  }
+
+  /**
+   * Starts the job.
+   *
+   * @param job		the job to start
+   */
+  protected void start(final Job job) {
+    try {
+      job.process = job.binary.executeAsync(executor);
+      job.process.whenComplete((r, t) -> {
+	finished(job);
+	if (t != null)
+	  job.result.completeExceptionally(t);
+	else
+	  job.result.complete(r);
+      });
+      // cancelled while starting up?
+      if (job.result.isCancelled())
+	job.process.cancel(true);
+    }
+    catch (Exception e) {
+      logger.log(Level.SEVERE, "Failed to start job for host: " + job.host, e);
+      finished(job);
+      job.result.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Releases the slot of the finished job and starts queued ones.
+   *
+   * @param job		the job that finished
+   */
+  protected void finished(Job job) {
+    synchronized(this) {
+      running.merge(job.host, -1, Integer::sum);
+      if (running.get(job.host) <= 0)
+	running.remove(job.host);
+      numRunning--;
+      numCompleted++;
+      totalRunTime += System.nanoTime() - job.started;
+    }
+    dispatch();
+  }
+
+  /**
+   * Returns the number of jobs waiting to be started.
+   *
+   * @return		the queue depth
+   */
+  public synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Returns the number of running jobs.
+   *
+   * @return		the number of jobs
+   */
+  public synchronized int getNumRunning() {
+    return numRunning;
+  }
+
+  /**
+   * Returns the number of running jobs for the host.
+   *
+   * @param host	the host to get the number for
+   * @return		the number of jobs
+   */
+  public synchronized int getNumRunning(String host) {
+    return running.getOrDefault(host, 0);
+  }
+
+  /**
+   * Returns the number of completed jobs.
+   *
+   * @return		the number of jobs
+   */
+  public synchronized long getNumCompleted() {
+    return numCompleted;
+  }
+
+  /**
+   * Returns the average time that started jobs spent in the queue.
+   *
+   * @return		the time in milliseconds
+   */
+  public synchronized double getAverageWaitTime() {
+    return (numStarted == 0) ? 0.0 : totalWaitTime / 1e6 / numStarted;
+  }
+
+  /**
+   * Returns the longest time a started job spent in the queue.
+   *
+   * @return		the time in milliseconds
+   */
+  public synchronized double getMaxWaitTime() {
+    return maxWaitTime / 1e6;
+  }
+
+  /**
+   * Returns the average run time of the completed jobs.
+   *
+   * @return		the time in milliseconds
+   */
+  public synchronized double getAverageRunTime() {
+    return (numCompleted == 0) ? 0.0 : totalRunTime / 1e6 / numCompleted;
+  }
+
+  /**
+   * Stops accepting new jobs. Queued and running jobs still complete.
+   */
+  public void shutdown() {
+    synchronized(this) {
+      shutdown = true;
+    }
+    dispatch();
+  }
+
+  /**
+   * Returns whether the scheduler got shut down.
+   *
+   * @return		true if no longer accepting jobs
+   */
+  public synchronized boolean isShutdown() {
+    return shutdown;
+  }
+
+  /**
+   * Returns a short summary of the metrics.
+   *
+   * @return		the summary
+   */
+  @Override
+  public synchronized String toString() {
+    return "queued=" + queue.size()
+      + ", running=" + numRunning
+      + ", completed=" + numCompleted
+      + ", avg wait=" + getAverageWaitTime() + "ms"
+      + ", max wait=" + getMaxWaitTime() + "ms"
+      + ", avg run=" + getAverageRunTime() + "ms";
+  }
+}
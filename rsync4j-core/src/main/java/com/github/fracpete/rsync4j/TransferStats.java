@@ -0,0 +1,534 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TransferStats.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * The summary output by rsync when using {@link RSync#stats(boolean)}.
+ * Sizes are in bytes, times in seconds. Values not present in the output
+ * are -1.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TransferStats
+  implements Serializable {
+
+  private static final long serialVersionUID = -1520935417738213402L;
+
+  /** the number of files (incl. directories, links, etc). */
+  protected long numFiles;
+
+  /** the number of created files. */
+  protected long numCreatedFiles;
+
+  /** the number of deleted files. */
+  protected long numDeletedFiles;
+
+  /** the number of regular files transferred. */
+  protected long numTransferredFiles;
+
+  /** the total file size. */
+  protected long totalFileSize;
+
+  /** the total size of the transferred files. */
+  protected long totalTransferredFileSize;
+
+  /** the data that had to be sent as is. */
+  protected long literalData;
+
+  /** the data that was matched by the delta algorithm. */
+  protected long matchedData;
+
+  /** the size of the file list. */
+  protected long fileListSize;
+
+  /** the time for generating the file list. */
+  protected double fileListGenerationTime;
+
+  /** the time for transferring the file list. */
+  protected double fileListTransferTime;
+
+  /** the total bytes sent. */
+  protected long totalBytesSent;
+
+  /** the total bytes received. */
+  protected long totalBytesReceived;
+
+  /** the speedup. */
+  protected double speedup;
+
+  /**
+   * Initializes the stats with all values set to -1.
+   */
+  protected TransferStats() {
+    numFiles                 = -1;
+    numCreatedFiles          = -1;
+    numDeletedFiles          = -1;
+    numTransferredFiles      = -1;
+    totalFileSize            = -1;
+    totalTransferredFileSize = -1;
+    literalData              = -1;
+    matchedData              = -1;
+    fileListSize             = -1;
+    fileListGenerationTime   = -1;
+    fileListTransferTime     = -1;
+    totalBytesSent           = -1;
+    totalBytesReceived       = -1;
+    speedup                  = -1;
+  }
+
+  /**
+   * Returns the number of files (incl. directories, links, etc).
+   *
+   * @return		the number
+   */
+  public long getNumFiles() {
+    return numFiles;
+  }
+
+  /**
+   * Returns the number of created files.
+   *
+   * @return		the number
+   */
+  public long getNumCreatedFiles() {
+    return numCreatedFiles;
+  }
+
+  /**
+   * Returns the number of deleted files.
+   *
+   * @return		the number
+   */
+  public long getNumDeletedFiles() {
+    return numDeletedFiles;
+  }
+
+  /**
+   * Returns the number of regular files that got transferred.
+   *
+   * @return		the number
+   */
+  public long getNumTransferredFiles() {
+    return numTransferredFiles;
+  }
+
+  /**
+   * Returns the total size of all files.
+   *
+   * @return		the size
+   */
+  public long getTotalFileSize() {
+    return totalFileSize;
+  }
+
+  /**
+   * Returns the total size of the transferred files.
+   *
+   * @return		the size
+   */
+  public long getTotalTransferredFileSize() {
+    return totalTransferredFileSize;
+  }
+
+  /**
+   * Returns the amount of data that had to be sent as is.
+   *
+   * @return		the size
+   */
+  public long getLiteralData() {
+    return literalData;
+  }
+
+  /**
+   * Returns the amount of data that was matched by the delta algorithm.
+   *
+   * @return		the size
+   */
+  public long getMatchedData() {
+    return matchedData;
+  }
+
+  /**
+   * Returns the size of the file list.
+   *
+   * @return		the size
+   */
+  public long getFileListSize() {
+    return fileListSize;
+  }
+
+  /**
+   * Returns the time for generating the file list.
+   *
+   * @return		the time in seconds
+   */
+  public double getFileListGenerationTime() {
+    return fileListGenerationTime;
+  }
+
+  /**
+   * Returns the time for transferring the file list.
+   *
+   * @return		the time in seconds
+   */
+  public double getFileListTransferTime() {
+    return fileListTransferTime;
+  }
+
+  /**
+   * Returns the total number of bytes sent.
+   *
+   * @return		the bytes
+   */
+  public long getTotalBytesSent() {
+    return totalBytesSent;
+  }
+
+  /**
+   * Returns the total number of bytes received.
+   *
+   * @return		the bytes
+   */
+  public long getTotalBytesReceived() {
+    return totalBytesReceived;
+  }
+
+  /**
+   * Returns the speedup, i.e., total file size divided by bytes sent and received.
+   *
+   * @return		the speedup
+   */
+  public double getSpeedup() {
+    return speedup;
+  }
+
+  /**
+   * Returns the fraction of the transferred data that had to be sent
+   * literally. Values close to 1 for updated files mean that the delta
+   * transfer was ineffective.
+   *
+   * @return		the ratio (0-1), NaN if no data was transferred
+   */
+  public double getLiteralRatio() {
+    if ((literalData < 0) || (matchedData < 0) || (literalData + matchedData == 0))
+      return Double.NaN;
+    return (double) literalData / (literalData + matchedData);
+  }
+
+  /**
+   * Returns the fraction of the transferred data that was matched by the
+   * delta algorithm.
+   *
+   * @return		the ratio (0-1), NaN if no data was transferred
+   */
+  public double getMatchedRatio() {
+    if ((literalData < 0) || (matchedData < 0) || (literalData + matchedData == 0))
+      return Double.NaN;
+    return (double) matchedData / (literalData + matchedData);
+  }
+
+  /**
+   * Adds the two values, treating -1 as missing.
+   *
+   * @param v1		the first value
+   * @param v2		the second value
+   * @return		the sum
+   */
+  protected static long add(long v1, long v2) {
+    if (v1 < 0)
+      return v2;
+    if (v2 < 0)
+      return v1;
+    return v1 + v2;
+  }
+
+  /**
+   * Adds the two values, treating -1 as missing.
+   *
+   * @param v1		the first value
+   * @param v2		the second value
+   * @return		the sum
+   */
+  protected static double add(double v1, double v2) {
+    if (v1 < 0)
+      return v2;
+    if (v2 < 0)
+      return v1;
+    return v1 + v2;
+  }
+
+  /**
+   * Combines these stats with the other ones, e.g., for transfers split
+   * across several processes. Counts, sizes and times get summed up, the
+   * speedup gets recomputed.
+   *
+   * @param other	the stats to add
+   * @return		the combined stats
+   */
+  public TransferStats merge(TransferStats other) {
+    TransferStats	result;
+
+    result                          = new TransferStats();
+    result.numFiles                 = add(numFiles, other.numFiles);
+    result.numCreatedFiles          = add(numCreatedFiles, other.numCreatedFiles);
+    result.numDeletedFiles          = add(numDeletedFiles, other.numDeletedFiles);
+    result.numTransferredFiles      = add(numTransferredFiles, other.numTransferredFiles);
+    result.totalFileSize            = add(totalFileSize, other.totalFileSize);
+    result.totalTransferredFileSize = add(totalTransferredFileSize, other.totalTransferredFileSize);
+    result.literalData              = add(literalData, other.literalData);
+    result.matchedData              = add(matchedData, other.matchedData);
+    result.fileListSize             = add(fileListSize, other.fileListSize);
+    result.fileListGenerationTime   = add(fileListGenerationTime, other.fileListGenerationTime);
+    result.fileListTransferTime     = add(fileListTransferTime, other.fileListTransferTime);
+    result.totalBytesSent           = add(totalBytesSent, other.totalBytesSent);
+    result.totalBytesReceived       = add(totalBytesReceived, other.totalBytesReceived);
+    if ((result.totalFileSize >= 0) && (result.totalBytesSent + result.totalBytesReceived > 0))
+      result.speedup = (double) result.totalFileSize / (result.totalBytesSent + result.totalBytesReceived);
+
+    return result;
+  }
+
+  /**
+   * Parses a number like "1,234", "1.23M" (human-readable) or "0.001",
+   * stopping at the first whitespace or opening bracket.
+   *
+   * @param s		the string to parse
+   * @return		the number, NaN if failed to parse
+   */
+  protected static double parseNumber(String s) {
+    StringBuilder	digits;
+    double		factor;
+    char		c;
+    int			i;
+
+    digits = new StringBuilder();
+    factor = 1;
+    for (i = 0; i < s.length(); i++) {
+      c = s.charAt(i);
+      if (((c >= '0') && (c <= '9')) || (c == '.'))
+	digits.append(c);
+      else if (c == ',')
+	continue;
+      else if (c == 'K')
+	factor = 1000.0;
+      else if (c == 'M')
+	factor = 1000.0 * 1000;
+      else if (c == 'G')
+	factor = 1000.0 * 1000 * 1000;
+      else if (c == 'T')
+	factor = 1000.0 * 1000 * 1000 * 1000;
+      else if (digits.length() > 0)
+	break;
+    }
+    if (digits.length() == 0)
+      return Double.NaN;
+
+    try {
+      return Double.parseDouble(digits.toString()) * factor;
+    }
+    catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Parses the value after the prefix as long.
+   *
+   * @param line	the line to parse
+   * @param prefix	the prefix of the value
+   * @return		the value, -1 if failed to parse
+   */
+  protected static long parseLong(String line, String prefix) {
+    double	result;
+
+    result = parseNumber(line.substring(prefix.length()));
+    return Double.isNaN(result) ? -1 : Math.round(result);
+  }
+
+  /**
+   * Parses the value after the prefix as double.
+   *
+   * @param line	the line to parse
+   * @param prefix	the prefix of the value
+   * @return		the value, -1 if failed to parse
+   */
+  protected static double parseDouble(String line, String prefix) {
+    double	result;
+
+    result = parseNumber(line.substring(prefix.length()));
+    return Double.isNaN(result) ? -1 : result;
+  }
+
+  /**
+   * Parses the stats from the output of rsync.
+   *
+   * @param output	the stdout output of rsync
+   * @return		the stats, null if no stats present
+   */
+  public static TransferStats parse(String output) {
+    return parse(Arrays.stream(output.split("\r?\n")));
+  }
+
+  /**
+   * Parses the stats from the lines output by rsync. Lines only get
+   * consumed, which allows lazily decoded output (see
+   * {@link com.github.fracpete.rsync4j.core.MappedOutput#lines()}).
+   *
+   * @param lines	the stdout lines of rsync
+   * @return		the stats, null if no stats present
+   */
+  public static TransferStats parse(Stream<String> lines) {
+    TransferStats	result;
+    Iterator<String>	iter;
+    String		line;
+    boolean		found;
+    int			pos;
+
+    result = new TransferStats();
+    found  = false;
+    iter   = lines.iterator();
+    while (iter.hasNext()) {
+      line = iter.next();
+      if (line.startsWith("Number of files: "))
+	result.numFiles = parseLong(line, "Number of files: ");
+      else if (line.startsWith("Number of created files: "))
+	result.numCreatedFiles = parseLong(line, "Number of created files: ");
+      else if (line.startsWith("Number of deleted files: "))
+	result.numDeletedFiles = parseLong(line, "Number of deleted files: ");
+      else if (line.startsWith("Number of regular files transferred: "))
+	result.numTransferredFiles = parseLong(line, "Number of regular files transferred: ");
+      // rsync < 3.1
+      else if (line.startsWith("Number of files transferred: "))
+	result.numTransferredFiles = parseLong(line, "Number of files transferred: ");
+      else if (line.startsWith("Total file size: "))
+	result.totalFileSize = parseLong(line, "Total file size: ");
+      else if (line.startsWith("Total transferred file size: "))
+	result.totalTransferredFileSize = parseLong(line, "Total transferred file size: ");
+      else if (line.startsWith("Literal data: "))
+	result.literalData = parseLong(line, "Literal data: ");
+      else if (line.startsWith("Matched data: "))
+	result.matchedData = parseLong(line, "Matched data: ");
+      else if (line.startsWith("File list size: "))
+	result.fileListSize = parseLong(line, "File list size: ");
+      else if (line.startsWith("File list generation time: "))
+	result.fileListGenerationTime = parseDouble(line, "File list generation time: ");
+      else if (line.startsWith("File list transfer time: "))
+	result.fileListTransferTime = parseDouble(line, "File list transfer time: ");
+      else if (line.startsWith("Total bytes sent: "))
+	result.totalBytesSent = parseLong(line, "Total bytes sent: ");
+      else if (line.startsWith("Total bytes received: "))
+	result.totalBytesReceived = parseLong(line, "Total bytes received: ");
+      else if (line.startsWith("total size is ") && ((pos = line.indexOf("speedup is ")) > -1))
+	result.speedup = parseDouble(line.substring(pos), "speedup is ");
+      else
+	continue;
+      found = true;
+    }
+
+    return found ? result : null;
+  }
+
+  /**
+   * Appends the line with the value if present.
+   *
+   * @param output	the output to append to
+   * @param prefix	the prefix of the line
+   * @param value	the value
+   * @param suffix	the suffix of the line
+   */
+  protected static void format(StringBuilder output, String prefix, long value, String suffix) {
+    if (value > -1)
+      output.append(prefix).append(String.format(Locale.US, "%,d", value)).append(suffix).append("\n");
+  }
+
+  /**
+   * Appends the line with the value if present.
+   *
+   * @param output	the output to append to
+   * @param prefix	the prefix of the line
+   * @param value	the value
+   */
+  protected static void format(StringBuilder output, String prefix, double value) {
+    if (value > -1)
+      output.append(prefix).append(String.format(Locale.US, "%.3f", value)).append(" seconds\n");
+  }
+
+  /**
+   * Generates output in the same format as rsync's {@code --stats},
+   * e.g., for transfers not performed by the rsync binary. Missing values
+   * are omitted.
+   *
+   * @return		the output
+   */
+  public String format() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    format(result, "Number of files: ", numFiles, "");
+    format(result, "Number of created files: ", numCreatedFiles, "");
+    format(result, "Number of deleted files: ", numDeletedFiles, "");
+    format(result, "Number of regular files transferred: ", numTransferredFiles, "");
+    format(result, "Total file size: ", totalFileSize, " bytes");
+    format(result, "Total transferred file size: ", totalTransferredFileSize, " bytes");
+    format(result, "Literal data: ", literalData, " bytes");
+    format(result, "Matched data: ", matchedData, " bytes");
+    format(result, "File list size: ", fileListSize, "");
+    format(result, "File list generation time: ", fileListGenerationTime);
+    format(result, "File list transfer time: ", fileListTransferTime);
+    format(result, "Total bytes sent: ", totalBytesSent, "");
+    format(result, "Total bytes received: ", totalBytesReceived, "");
+    if ((totalFileSize > -1) && (speedup > -1)) {
+      result.append("\n");
+      result.append(String.format(Locale.US, "total size is %,d  speedup is %.2f", totalFileSize, speedup)).append("\n");
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns a short description.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "files=" + numFiles
+      + ", created=" + numCreatedFiles
+      + ", deleted=" + numDeletedFiles
+      + ", transferred=" + numTransferredFiles
+      + ", total size=" + totalFileSize
+      + ", transferred size=" + totalTransferredFileSize
+      + ", literal=" + literalData
+      + ", matched=" + matchedData
+      + ", file list size=" + fileListSize
+      + ", file list generation=" + fileListGenerationTime
+      + ", file list transfer=" + fileListTransferTime
+      + ", sent=" + totalBytesSent
+      + ", received=" + totalBytesReceived
+      + ", speedup=" + speedup;
+  }
+}
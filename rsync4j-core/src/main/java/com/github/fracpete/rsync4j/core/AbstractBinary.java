@@ -15,7 +15,7 @@
 
 /*
  * AbstractBinary.java
- * Copyright (C) 2017-2023 University of Waikato, Hamilton, New Zealand
+ * Copyright (C) 2017-2026 University of Waikato, Hamilton, New Zealand
  */
 package com.github.fracpete.rsync4j.core;
 
@@ -27,7 +27,16 @@ import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
@@ -40,6 +49,9 @@ public abstract class AbstractBinary {
   /** for logging. */
   protected Logger logger = Logger.getLogger(getClass().getName());
 
+  /** the cached parsers per class. */
+  protected static final Map<Class<?>, ArgumentParser> PARSERS = new ConcurrentHashMap<>();
+
   /** whether to output the commandline. */
   protected boolean outputCommandline;
 
@@ -138,12 +150,21 @@ public abstract class AbstractBinary {
    * @see		#commandLineArgs()
    */
   public ProcessBuilder builder() throws Exception {
+    return builder(commandLineArgs());
+  }
+
+  /**
+   * Returns a configured {@link ProcessBuilder} for the command-line
+   * arguments, outputting them if requested.
+   *
+   * @param args	the command-line arguments, including the binary
+   * @return		the configured process builder
+   * @see		#getOutputCommandline()
+   */
+  protected ProcessBuilder builder(List<String> args) {
     ProcessBuilder	builder;
-    List<String>	args;
     StringBuilder	lines;
 
-    args = commandLineArgs();
-
     if (getOutputCommandline()) {
       if (getOutputSingleCommandline()) {
 	logger.info("Command-line: " + Utils.flatten(args, " "));
@@ -177,7 +198,25 @@ public abstract class AbstractBinary {
    * @see		#builder()
    */
   public Process start() throws Exception {
-    return builder().start();
+    ProcessBuilder	builder;
+    Process		result;
+
+    builder = builder();
+    result  = builder.start();
+    started(builder, result);
+
+    return result;
+  }
+
+  /**
+   * Gets called after a process was started by {@link #start()} or
+   * {@link #executeAsync(ProcessBuilder, Executor, int)}, e.g., for feeding
+   * its stdin. Default implementation does nothing.
+   *
+   * @param builder	the builder that started the process
+   * @param process	the process
+   */
+  protected void started(ProcessBuilder builder, Process process) {
   }
 
   /**
@@ -194,12 +233,162 @@ public abstract class AbstractBinary {
   public CollectingProcessOutput execute() throws Exception {
     CollectingProcessOutput	result;
 
-    result = new CollectingProcessOutput();
+    result = newOutput();
     result.monitor(builder());
 
     return result;
   }
 
+  /**
+   * Executes the binary and waits for its completion, collecting stdout and
+   * stderr in the supplied output, which limits the amount of memory used.
+   *
+   * @param output	the output to use
+   * @return		the output
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#execute()
+   */
+  public BoundedProcessOutput execute(BoundedProcessOutput output) throws Exception {
+    output.monitor(builder(), -1);
+    return output;
+  }
+
+  /**
+   * Executes the binary and waits for its completion, with stdout and stderr
+   * redirected to the files of the supplied output. No Java threads are
+   * involved in capturing the output, which can be parsed afterwards via
+   * memory-mapped views.
+   *
+   * @param output	the output to use
+   * @param <T>		the type of output
+   * @return		the output
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#execute()
+   */
+  public <T extends FileProcessOutput> T execute(T output) throws Exception {
+    output.monitor(builder(), -1);
+    return output;
+  }
+
+  /**
+   * Returns a new instance of the output used by {@link #execute()}.
+   *
+   * @return		the output
+   */
+  protected CollectingProcessOutput newOutput() {
+    return new CollectingProcessOutput();
+  }
+
+  /**
+   * Starts the process and returns a future that completes once the process
+   * has exited (via {@link Process#onExit()}), without blocking the calling
+   * thread. Consuming stdout/stderr is up to the caller.
+   * <br>
+   * Cancelling the future kills the process and all its descendants.
+   *
+   * @return		the future for the process
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#start()
+   */
+  public CompletableFuture<Process> startAsync() throws Exception {
+    final Process			process;
+    final CompletableFuture<Process>	result;
+
+    process = start();
+    result  = process.onExit();
+    result.whenComplete((p, t) -> {
+      if (result.isCancelled())
+	Utils.destroy(process);
+    });
+
+    return result;
+  }
+
+  /**
+   * Executes the binary asynchronously, collecting stdout and stderr output
+   * in the result. The streams are drained by {@link StreamPump#shared()},
+   * as each process blocks two threads for its whole life, which could
+   * starve a bounded executor. The completion of the process is detected via
+   * {@link Process#onExit()}, the future gets completed by the executor.
+   * <br>
+   * Cancelling the future kills the process and all its descendants.
+   *
+   * @param executor	the executor for completing the future
+   * @return		the future for the result
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#execute()
+   */
+  public CompletableFuture<ProcessResult> executeAsync(Executor executor) throws Exception {
+    return executeAsync(builder(), executor, -1);
+  }
+
+  /**
+   * Executes the binary asynchronously, completing the future with the
+   * shared executor of {@link StreamPump} (virtual threads on Java 21+).
+   *
+   * @return		the future for the result
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#executeAsync(Executor)
+   */
+  public CompletableFuture<ProcessResult> executeAsync() throws Exception {
+    return executeAsync(StreamPump.shared());
+  }
+
+  /**
+   * Starts the process from the builder and returns a future for its result.
+   *
+   * @param builder	the builder to start the process with
+   * @param executor	the executor for completing the future
+   * @param timeOut	the time in seconds after which to kill the process, ignored if less than 1
+   * @return		the future for the result
+   * @throws Exception	if starting of the process fails
+   */
+  protected CompletableFuture<ProcessResult> executeAsync(ProcessBuilder builder, Executor executor, int timeOut) throws Exception {
+    final Process				process;
+    final CompletableFuture<ProcessResult>	result;
+    final CompletableFuture<String>		stdout;
+    final CompletableFuture<String>		stderr;
+    final AtomicBoolean				timedOut;
+
+    process  = builder.start();
+    started(builder, process);
+    result   = new CompletableFuture<>();
+    timedOut = new AtomicBoolean(false);
+    // draining on a bounded executor could deadlock: a queued stderr drain lets the pipe fill up and rsync block
+    stdout   = CompletableFuture.supplyAsync(() -> Utils.readFully(process.getInputStream()), StreamPump.shared());
+    stderr   = CompletableFuture.supplyAsync(() -> Utils.readFully(process.getErrorStream()), StreamPump.shared());
+
+    CompletableFuture.allOf(process.onExit(), stdout, stderr).whenCompleteAsync((v, t) -> {
+      if (t != null)
+	result.completeExceptionally(t);
+      else
+	result.complete(new ProcessResult(process.exitValue(), stdout.join(), stderr.join(), timedOut.get()));
+    }, r -> {
+      // an executor that got shut down meanwhile must not leave the future incomplete
+      try {
+	executor.execute(r);
+      }
+      catch (RejectedExecutionException e) {
+	r.run();
+      }
+    });
+    result.whenComplete((r, t) -> {
+      if (result.isCancelled())
+	Utils.destroy(process);
+    });
+
+    if (timeOut > 0) {
+      CompletableFuture.delayedExecutor(timeOut, TimeUnit.SECONDS).execute(() -> {
+	if (process.isAlive()) {
+	  timedOut.set(true);
+	  Utils.destroy(process);
+	}
+      });
+    }
+
+    return result;
+  }
+
   /**
    * Returns a short description for the binary.
    *
@@ -226,6 +415,46 @@ public abstract class AbstractBinary {
     return parser;
   }
 
+  /**
+   * Returns the commandline parser for this class, which only gets
+   * configured on first access. The parser is not modified afterwards, hence
+   * it can be shared between threads. However, argparse4j appends values to
+   * the default object of an argument, so arguments with a list as value
+   * (append action, nargs) must not have a default (see
+   * {@link #getList(Namespace, String)}), which gets checked in
+   * {@link #setOptions(String[])}.
+   *
+   * @return		the parser
+   * @see		#getParser()
+   */
+  protected ArgumentParser getCachedParser() {
+    return PARSERS.computeIfAbsent(getClass(), c -> getParser());
+  }
+
+  /**
+   * Returns the list stored under the destination as a new list.
+   *
+   * @param ns		the parsed options
+   * @param dest	the destination of the argument
+   * @return		the list, empty if argument not present
+   */
+  protected static List<String> getList(Namespace ns, String dest) {
+    List<String>	result;
+    Object		value;
+
+    result = new ArrayList<>();
+    value  = ns.get(dest);
+    if (value instanceof Collection) {
+      for (Object item: (Collection<?>) value)
+	result.add(String.valueOf(item));
+    }
+    else if (value != null) {
+      result.add(String.valueOf(value));
+    }
+
+    return result;
+  }
+
   /**
    * Sets the parsed options.
    *
@@ -248,7 +477,7 @@ public abstract class AbstractBinary {
     ArgumentParser 	parser;
     Namespace 		ns;
 
-    parser = getParser();
+    parser = getCachedParser();
     try {
       ns = parser.parseArgs(options);
     }
@@ -257,6 +486,12 @@ public abstract class AbstractBinary {
       return false;
     }
 
+    // values would accumulate in a collection default of the shared parser
+    for (Map.Entry<String,Object> entry: ns.getAttrs().entrySet()) {
+      if ((entry.getValue() instanceof Collection) && (entry.getValue() == parser.getDefault(entry.getKey())))
+	throw new IllegalStateException("Argument '" + entry.getKey() + "' of " + getClass().getName() + " uses a collection as default, which is shared between parses!");
+    }
+
     return setOptions(ns);
   }
 
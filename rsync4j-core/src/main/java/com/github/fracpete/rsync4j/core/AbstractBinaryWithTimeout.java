@@ -15,7 +15,7 @@
 
 /*
  * AbstractBinaryWithTimeout.java
- * Copyright (C) 2018-2025 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2018-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.rsync4j.core;
@@ -25,6 +25,9 @@ import com.github.fracpete.processoutput4j.output.ConsoleOutputProcessOutput;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.Namespace;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Ancestor for binary wrappers that have an in-built timeout for operations.
  *
@@ -79,13 +82,60 @@ public abstract class AbstractBinaryWithTimeout
   public CollectingProcessOutput execute() throws Exception {
     CollectingProcessOutput	result;
 
-    result = new CollectingProcessOutput();
+    result = newOutput();
     result.setTimeOut(max_time);
     result.monitor(builder());
 
     return result;
   }
 
+  /**
+   * Executes the binary and waits for its completion, collecting stdout and
+   * stderr in the supplied output. Kills the process if it exceeds the
+   * maximum time.
+   *
+   * @param output	the output to use
+   * @return		the output
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#getMaxTime()
+   */
+  @Override
+  public BoundedProcessOutput execute(BoundedProcessOutput output) throws Exception {
+    output.monitor(builder(), max_time);
+    return output;
+  }
+
+  /**
+   * Executes the binary and waits for its completion, with stdout and stderr
+   * redirected to the files of the supplied output. Kills the process if it
+   * exceeds the maximum time.
+   *
+   * @param output	the output to use
+   * @param <T>		the type of output
+   * @return		the output
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#getMaxTime()
+   */
+  @Override
+  public <T extends FileProcessOutput> T execute(T output) throws Exception {
+    output.monitor(builder(), max_time);
+    return output;
+  }
+
+  /**
+   * Executes the binary asynchronously, collecting stdout and stderr output
+   * in the result. Kills the process if it exceeds the maximum time.
+   *
+   * @param executor	the executor for completing the future
+   * @return		the future for the result
+   * @throws Exception	if execution fails or failed to determine binary
+   * @see		#getMaxTime()
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(Executor executor) throws Exception {
+    return executeAsync(builder(), executor, max_time);
+  }
+
   /**
    * Configures and returns the commandline parser.
    *
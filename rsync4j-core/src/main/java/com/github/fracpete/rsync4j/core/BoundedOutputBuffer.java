@@ -0,0 +1,332 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BoundedOutputBuffer.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Collects the lines of a single output stream, keeping at most the
+ * specified number of characters in memory. Once the limit is exceeded,
+ * either only the head and the tail of the output are kept or all of
+ * the output gets spilled to a temporary file.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class BoundedOutputBuffer
+  implements AutoCloseable {
+
+  /**
+   * What to do once the in-memory limit is exceeded.
+   */
+  public enum OverflowMode {
+    /** keep the first and the last lines, discard the ones in between. */
+    HEAD_TAIL,
+    /** write all the output to a temporary file. */
+    SPILL
+  }
+
+  /** the maximum number of characters to keep in memory. */
+  protected long maxChars;
+
+  /** the overflow mode. */
+  protected OverflowMode mode;
+
+  /** the head lines (or all lines if not overflown). */
+  protected List<String> head;
+
+  /** the number of characters in the head. */
+  protected long headChars;
+
+  /** the tail lines. */
+  protected ArrayDeque<String> tail;
+
+  /** the number of characters in the tail. */
+  protected long tailChars;
+
+  /** the number of discarded lines. */
+  protected long numDropped;
+
+  /** the total number of lines. */
+  protected long numLines;
+
+  /** the spill file, null if not spilled. */
+  protected Path spillFile;
+
+  /** the writer for the spill file. */
+  protected BufferedWriter spillWriter;
+
+  /**
+   * Initializes the buffer.
+   *
+   * @param maxChars	the maximum number of characters to keep in memory
+   * @param mode	what to do when the limit is exceeded
+   */
+  public BoundedOutputBuffer(long maxChars, OverflowMode mode) {
+    if (maxChars < 2)
+      throw new IllegalArgumentException("Maximum number of characters must be at least 2, provided: " + maxChars);
+    this.maxChars = maxChars;
+    this.mode     = mode;
+    this.head     = new ArrayList<>();
+    this.tail     = new ArrayDeque<>();
+  }
+
+  /**
+   * Returns the maximum number of characters kept in memory.
+   *
+   * @return		the maximum
+   */
+  public long getMaxChars() {
+    return maxChars;
+  }
+
+  /**
+   * Returns the overflow mode.
+   *
+   * @return		the mode
+   */
+  public OverflowMode getMode() {
+    return mode;
+  }
+
+  /**
+   * Adds the line.
+   *
+   * @param line	the line to add (without line break)
+   */
+  public synchronized void add(String line) {
+    numLines++;
+
+    if (spillWriter != null) {
+      write(line);
+      return;
+    }
+
+    if (numDropped == 0 && tail.isEmpty() && (headChars + line.length() + 1 <= maxChars)) {
+      head.add(line);
+      headChars += line.length() + 1;
+      return;
+    }
+
+    switch (mode) {
+      case SPILL:
+	spill();
+	write(line);
+	break;
+
+      case HEAD_TAIL:
+	// trim the head to half the budget once the limit is reached
+	while ((headChars > maxChars / 2) && !head.isEmpty()) {
+	  tail.addFirst(head.remove(head.size() - 1));
+	  tailChars += tail.peekFirst().length() + 1;
+	  headChars -= tail.peekFirst().length() + 1;
+	}
+	tail.addLast(line);
+	tailChars += line.length() + 1;
+	while ((tailChars > maxChars - headChars) && (tail.size() > 1)) {
+	  tailChars -= tail.removeFirst().length() + 1;
+	  numDropped++;
+	}
+	break;
+
+      default:
+	throw new IllegalStateException("Unhandled overflow mode: " + mode);
+    }
+  }
+
+  /**
+   * Moves the in-memory lines to the spill file.
+   */
+  protected void spill() {
+    try {
+      spillFile   = Files.createTempFile("rsync4j-", ".out");
+      spillWriter = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+      for (String l: head)
+	write(l);
+      head.clear();
+      headChars = 0;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the line to the spill file.
+   *
+   * @param line	the line to write
+   */
+  protected void write(String line) {
+    try {
+      spillWriter.write(line);
+      spillWriter.write('\n');
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Flushes the spill file, if any.
+   */
+  public synchronized void flush() {
+    if (spillWriter != null) {
+      try {
+	spillWriter.flush();
+      }
+      catch (IOException e) {
+	throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the total number of lines that were added.
+   *
+   * @return		the number of lines
+   */
+  public synchronized long getNumLines() {
+    return numLines;
+  }
+
+  /**
+   * Returns the number of lines that were discarded in head/tail mode.
+   *
+   * @return		the number of lines
+   */
+  public synchronized long getNumDropped() {
+    return numDropped;
+  }
+
+  /**
+   * Returns whether the output was spilled to disk.
+   *
+   * @return		true if spilled
+   */
+  public synchronized boolean isSpilled() {
+    return (spillFile != null);
+  }
+
+  /**
+   * Returns the lines. In head/tail mode, a marker line with the number of
+   * discarded lines separates head and tail.
+   *
+   * @return		the lines, need to be closed if spilled
+   */
+  public synchronized Stream<String> lines() {
+    List<String>	all;
+
+    if (spillFile != null) {
+      flush();
+      try {
+	return Files.lines(spillFile, StandardCharsets.UTF_8);
+      }
+      catch (IOException e) {
+	throw new UncheckedIOException(e);
+      }
+    }
+
+    all = new ArrayList<>(head);
+    if (numDropped > 0)
+      all.add("... " + numDropped + " line(s) omitted ...");
+    all.addAll(tail);
+
+    return all.stream();
+  }
+
+  /**
+   * Returns a reader for the output.
+   *
+   * @return		the reader
+   */
+  public synchronized Reader reader() {
+    StringBuilder	content;
+
+    if (spillFile != null) {
+      flush();
+      try {
+	return Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+      }
+      catch (IOException e) {
+	throw new UncheckedIOException(e);
+      }
+    }
+
+    content = new StringBuilder();
+    try (Stream<String> lines = lines()) {
+      lines.forEach(l -> content.append(l).append('\n'));
+    }
+    return new StringReader(content.toString());
+  }
+
+  /**
+   * Returns the (retained) output as string. For spilled output, this
+   * loads the complete file into memory.
+   *
+   * @return		the output
+   */
+  @Override
+  public String toString() {
+    StringBuilder	result;
+
+    result = new StringBuilder();
+    try (Stream<String> lines = lines()) {
+      lines.forEach(l -> result.append(l).append('\n'));
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Removes the spill file, if any.
+   */
+  @Override
+  public synchronized void close() {
+    if (spillWriter != null) {
+      try {
+	spillWriter.close();
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      spillWriter = null;
+    }
+    if (spillFile != null) {
+      try {
+	Files.deleteIfExists(spillFile);
+      }
+      catch (IOException e) {
+	// ignored
+      }
+      spillFile = null;
+    }
+  }
+}
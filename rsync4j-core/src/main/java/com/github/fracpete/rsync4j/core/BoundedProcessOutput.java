@@ -0,0 +1,218 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BoundedProcessOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import com.github.fracpete.processoutput4j.core.StreamingProcessOutputType;
+import com.github.fracpete.processoutput4j.core.StreamingProcessOwner;
+import com.github.fracpete.processoutput4j.output.StreamingProcessOutput;
+import com.github.fracpete.rsync4j.core.BoundedOutputBuffer.OverflowMode;
+
+import java.io.Reader;
+import java.util.stream.Stream;
+
+/**
+ * Alternative to {@code CollectingProcessOutput} that limits the amount of
+ * stdout/stderr output kept in memory, e.g., for verbose transfers of
+ * millions of files. Depending on the {@link OverflowMode}, either the head
+ * and tail of the output are retained or the output gets spilled to
+ * temporary files. Call {@link #close()} to remove any temporary files.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see AbstractBinary#execute(BoundedProcessOutput)
+ */
+public class BoundedProcessOutput
+  implements StreamingProcessOwner, AutoCloseable {
+
+  /** the default maximum number of characters per stream (1M). */
+  public final static long DEFAULT_MAX_CHARS = 1024 * 1024;
+
+  /** the stdout output. */
+  protected BoundedOutputBuffer stdOut;
+
+  /** the stderr output. */
+  protected BoundedOutputBuffer stdErr;
+
+  /** the exit code. */
+  protected int exitCode;
+
+  /**
+   * Initializes the output with a limit of {@link #DEFAULT_MAX_CHARS}
+   * characters per stream, spilling to disk beyond that.
+   */
+  public BoundedProcessOutput() {
+    this(DEFAULT_MAX_CHARS, OverflowMode.SPILL);
+  }
+
+  /**
+   * Initializes the output.
+   *
+   * @param maxChars	the maximum number of characters to keep in memory per stream
+   * @param mode	what to do when the limit is exceeded
+   */
+  public BoundedProcessOutput(long maxChars, OverflowMode mode) {
+    stdOut   = new BoundedOutputBuffer(maxChars, mode);
+    stdErr   = new BoundedOutputBuffer(maxChars, mode);
+    exitCode = -1;
+  }
+
+  /**
+   * Returns what output from the process to forward.
+   *
+   * @return 		the output type
+   */
+  @Override
+  public StreamingProcessOutputType getOutputType() {
+    return StreamingProcessOutputType.BOTH;
+  }
+
+  /**
+   * Processes the incoming line.
+   *
+   * @param line	the line to process
+   * @param stdout	whether stdout or stderr
+   */
+  @Override
+  public void processOutput(String line, boolean stdout) {
+    if (stdout)
+      stdOut.add(line);
+    else
+      stdErr.add(line);
+  }
+
+  /**
+   * Starts the process and collects its output until it finishes.
+   *
+   * @param builder	the builder for the process
+   * @param timeOut	the time out in seconds, less than 1 for no time out
+   * @throws Exception	if starting or monitoring fails
+   */
+  public void monitor(ProcessBuilder builder, int timeOut) throws Exception {
+    StreamingProcessOutput	output;
+
+    output = new StreamingProcessOutput(this);
+    if (timeOut > 0)
+      output.setTimeOut(timeOut);
+    output.monitor(builder);
+    exitCode = output.getExitCode();
+    stdOut.flush();
+    stdErr.flush();
+  }
+
+  /**
+   * Returns the exit code.
+   *
+   * @return		the exit code, -1 if not run yet
+   */
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  /**
+   * Returns whether the process has succeeded.
+   *
+   * @return		true if succeeded, i.e., exit code = 0
+   */
+  public boolean hasSucceeded() {
+    return (exitCode == 0);
+  }
+
+  /**
+   * Returns the buffer with the stdout output.
+   *
+   * @return		the buffer
+   */
+  public BoundedOutputBuffer getStdOutBuffer() {
+    return stdOut;
+  }
+
+  /**
+   * Returns the buffer with the stderr output.
+   *
+   * @return		the buffer
+   */
+  public BoundedOutputBuffer getStdErrBuffer() {
+    return stdErr;
+  }
+
+  /**
+   * Returns the (retained) stdout output as string. Use
+   * {@link #stdOutLines()} or {@link #stdOutReader()} for large output.
+   *
+   * @return		the output
+   */
+  public String getStdOut() {
+    return stdOut.toString();
+  }
+
+  /**
+   * Returns the (retained) stderr output as string.
+   *
+   * @return		the output
+   */
+  public String getStdErr() {
+    return stdErr.toString();
+  }
+
+  /**
+   * Returns the stdout lines.
+   *
+   * @return		the lines, close the stream after use
+   */
+  public Stream<String> stdOutLines() {
+    return stdOut.lines();
+  }
+
+  /**
+   * Returns the stderr lines.
+   *
+   * @return		the lines, close the stream after use
+   */
+  public Stream<String> stdErrLines() {
+    return stdErr.lines();
+  }
+
+  /**
+   * Returns a reader for the stdout output.
+   *
+   * @return		the reader
+   */
+  public Reader stdOutReader() {
+    return stdOut.reader();
+  }
+
+  /**
+   * Returns a reader for the stderr output.
+   *
+   * @return		the reader
+   */
+  public Reader stdErrReader() {
+    return stdErr.reader();
+  }
+
+  /**
+   * Removes any temporary files.
+   */
+  @Override
+  public void close() {
+    stdOut.close();
+    stdErr.close();
+  }
+}
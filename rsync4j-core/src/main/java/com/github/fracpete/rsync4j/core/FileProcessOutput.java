@@ -0,0 +1,300 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FileProcessOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Captures the output of a process by redirecting stdout and stderr to
+ * files ({@link ProcessBuilder.Redirect#to(java.io.File)}), i.e., the
+ * operating system writes the output and no Java threads are involved
+ * while the process runs. Once finished, the output is available as
+ * memory-mapped, lazily decoded views (see {@link MappedOutput}).
+ * <br>
+ * Without files supplied, temporary files get used, which are removed
+ * when closing the output.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class FileProcessOutput
+  implements AutoCloseable {
+
+  /** the file for stdout. */
+  protected Path stdOutFile;
+
+  /** the file for stderr. */
+  protected Path stdErrFile;
+
+  /** whether the files are temporary. */
+  protected boolean temporary;
+
+  /** the exit code. */
+  protected int exitCode;
+
+  /** whether the process timed out. */
+  protected boolean timedOut;
+
+  /** the mapped stdout. */
+  protected MappedOutput stdOut;
+
+  /** the mapped stderr. */
+  protected MappedOutput stdErr;
+
+  /**
+   * Initializes the output using temporary files.
+   *
+   * @throws IOException	if failed to create the temporary files
+   */
+  public FileProcessOutput() throws IOException {
+    this(Files.createTempFile("rsync4j-", ".out"), Files.createTempFile("rsync4j-", ".err"));
+    temporary = true;
+  }
+
+  /**
+   * Initializes the output using the specified files, which get kept.
+   *
+   * @param stdOutFile	the file for stdout
+   * @param stdErrFile	the file for stderr
+   */
+  public FileProcessOutput(Path stdOutFile, Path stdErrFile) {
+    this.stdOutFile = stdOutFile;
+    this.stdErrFile = stdErrFile;
+    this.temporary  = false;
+    this.exitCode   = -1;
+  }
+
+  /**
+   * Starts the process with its output redirected to the files and waits
+   * for it to finish.
+   *
+   * @param builder	the builder for the process
+   * @param timeOut	the time out in seconds, less than 1 for no time out
+   * @throws Exception	if starting or waiting fails
+   */
+  public void monitor(ProcessBuilder builder, int timeOut) throws Exception {
+    monitor(builder, timeOut, null);
+  }
+
+  /**
+   * Starts the process with its output redirected to the files and waits
+   * for it to finish.
+   *
+   * @param builder	the builder for the process
+   * @param timeOut	the time out in seconds, less than 1 for no time out
+   * @param started	gets notified once the process has started, e.g., for feeding its stdin, can be null
+   * @throws Exception	if starting or waiting fails
+   */
+  public void monitor(ProcessBuilder builder, int timeOut, Consumer<Process> started) throws Exception {
+    Process	process;
+
+    stdOut = null;
+    stdErr = null;
+    builder.redirectOutput(ProcessBuilder.Redirect.to(stdOutFile.toFile()));
+    builder.redirectError(ProcessBuilder.Redirect.to(stdErrFile.toFile()));
+    process = builder.start();
+    try {
+      if (started != null)
+	started.accept(process);
+      if (timeOut > 0) {
+	if (!process.waitFor(timeOut, TimeUnit.SECONDS)) {
+	  timedOut = true;
+	  Utils.destroy(process);
+	}
+      }
+      exitCode = process.waitFor();
+    }
+    catch (Exception e) {
+      Utils.destroy(process);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the exit code.
+   *
+   * @return		the exit code, -1 if not run yet
+   */
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  /**
+   * Returns whether the process has succeeded.
+   *
+   * @return		true if succeeded, i.e., exit code = 0
+   */
+  public boolean hasSucceeded() {
+    return !timedOut && (exitCode == 0);
+  }
+
+  /**
+   * Returns whether the process got killed due to the time out.
+   *
+   * @return		true if timed out
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
+  /**
+   * Returns the file with the stdout output.
+   *
+   * @return		the file
+   */
+  public Path getStdOutFile() {
+    return stdOutFile;
+  }
+
+  /**
+   * Returns the file with the stderr output.
+   *
+   * @return		the file
+   */
+  public Path getStdErrFile() {
+    return stdErrFile;
+  }
+
+  /**
+   * Returns the mapped stdout output.
+   *
+   * @return		the output
+   */
+  public synchronized MappedOutput stdOut() {
+    if (stdOut == null) {
+      try {
+	stdOut = new MappedOutput(stdOutFile);
+      }
+      catch (IOException e) {
+	throw new UncheckedIOException(e);
+      }
+    }
+    return stdOut;
+  }
+
+  /**
+   * Returns the mapped stderr output.
+   *
+   * @return		the output
+   */
+  public synchronized MappedOutput stdErr() {
+    if (stdErr == null) {
+      try {
+	stdErr = new MappedOutput(stdErrFile);
+      }
+      catch (IOException e) {
+	throw new UncheckedIOException(e);
+      }
+    }
+    return stdErr;
+  }
+
+  /**
+   * Returns the stdout output as string. Use {@link #stdOutLines()} or
+   * {@link #stdOutReader()} for large output.
+   *
+   * @return		the output
+   */
+  public String getStdOut() {
+    return stdOut().toString();
+  }
+
+  /**
+   * Returns the stderr output as string.
+   *
+   * @return		the output
+   */
+  public String getStdErr() {
+    return stdErr().toString();
+  }
+
+  /**
+   * Returns the stdout lines.
+   *
+   * @return		the lines
+   */
+  public Stream<String> stdOutLines() {
+    return stdOut().lines();
+  }
+
+  /**
+   * Returns the stderr lines.
+   *
+   * @return		the lines
+   */
+  public Stream<String> stdErrLines() {
+    return stdErr().lines();
+  }
+
+  /**
+   * Returns a reader for the stdout output.
+   *
+   * @return		the reader
+   */
+  public Reader stdOutReader() {
+    return stdOut().reader();
+  }
+
+  /**
+   * Returns a reader for the stderr output.
+   *
+   * @return		the reader
+   */
+  public Reader stdErrReader() {
+    return stdErr().reader();
+  }
+
+  /**
+   * Returns the output as result object.
+   *
+   * @return		the result
+   */
+  public ProcessResult toProcessResult() {
+    return new ProcessResult(exitCode, getStdOut(), getStdErr(), timedOut);
+  }
+
+  /**
+   * Removes the temporary files, if any. Mapped views must no longer be
+   * used afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    stdOut = null;
+    stdErr = null;
+    if (!temporary)
+      return;
+    for (Path file: new Path[]{stdOutFile, stdErrFile}) {
+      try {
+	Files.deleteIfExists(file);
+      }
+      catch (IOException e) {
+	// still mapped (Windows)
+	file.toFile().deleteOnExit();
+      }
+    }
+  }
+}
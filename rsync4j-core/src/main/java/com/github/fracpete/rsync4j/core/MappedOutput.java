@@ -0,0 +1,246 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MappedOutput.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Read-only view of process output that was captured in a file. The file
+ * gets memory-mapped and lines are only decoded (UTF-8) when they get
+ * consumed, e.g., when skipping to the stats at the end of the output.
+ * Both carriage returns (progress output) and line feeds separate lines,
+ * empty lines get skipped.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MappedOutput {
+
+  /** the size of the mapped regions (1GB). */
+  public final static int REGION_SIZE = 1 << 30;
+
+  /** the file. */
+  protected Path file;
+
+  /** the size of the file. */
+  protected long size;
+
+  /** the mapped regions. */
+  protected MappedByteBuffer[] regions;
+
+  /**
+   * Maps the file.
+   *
+   * @param file	the file to map
+   * @throws IOException	if mapping fails
+   */
+  public MappedOutput(Path file) throws IOException {
+    int		i;
+    long	start;
+
+    this.file = file;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      size    = channel.size();
+      regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+      for (i = 0; i < regions.length; i++) {
+	start      = (long) i * REGION_SIZE;
+	regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+      }
+    }
+  }
+
+  /**
+   * Returns the file.
+   *
+   * @return		the file
+   */
+  public Path getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the size of the output.
+   *
+   * @return		the size in bytes
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns the byte at the position.
+   *
+   * @param pos		the position
+   * @return		the byte
+   */
+  protected byte byteAt(long pos) {
+    return regions[(int) (pos / REGION_SIZE)].get((int) (pos % REGION_SIZE));
+  }
+
+  /**
+   * Returns an independent view of the mapped region. Uses the methods of
+   * {@link ByteBuffer}, as the covariant overrides of {@link MappedByteBuffer}
+   * (e.g., {@code duplicate()}, {@code position(int)}) only exist since Java 17.
+   *
+   * @param region	the index of the region
+   * @return		the view
+   */
+  protected ByteBuffer buffer(int region) {
+    return ((ByteBuffer) regions[region]).duplicate();
+  }
+
+  /**
+   * Decodes the bytes.
+   *
+   * @param start	the start position (incl)
+   * @param end		the end position (excl)
+   * @return		the decoded string
+   */
+  protected String decode(long start, long end) {
+    byte[]	bytes;
+    int		region;
+    int		offset;
+    long	i;
+
+    bytes  = new byte[(int) (end - start)];
+    region = (int) (start / REGION_SIZE);
+    offset = (int) (start % REGION_SIZE);
+    if ((end - 1) / REGION_SIZE == region) {
+      buffer(region).position(offset).get(bytes);
+    }
+    else {
+      for (i = start; i < end; i++)
+	bytes[(int) (i - start)] = byteAt(i);
+    }
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the lines, decoded as they get consumed.
+   *
+   * @return		the lines
+   */
+  public Stream<String> lines() {
+    Spliterator<String>	lines;
+
+    lines = new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+      protected long pos = 0;
+      @Override
+      public boolean tryAdvance(Consumer<? super String> action) {
+	long	start;
+	byte	b;
+
+	while (pos < size) {
+	  start = pos;
+	  while (pos < size) {
+	    b = byteAt(pos);
+	    if ((b == '\n') || (b == '\r'))
+	      break;
+	    pos++;
+	  }
+	  if (pos > start) {
+	    action.accept(decode(start, pos));
+	    pos++;
+	    return true;
+	  }
+	  pos++;
+	}
+	return false;
+      }
+    };
+
+    return StreamSupport.stream(lines, false);
+  }
+
+  /**
+   * Returns a stream for the raw bytes.
+   *
+   * @return		the stream
+   */
+  public InputStream inputStream() {
+    return new InputStream() {
+      protected long pos = 0;
+      @Override
+      public int read() {
+	if (pos >= size)
+	  return -1;
+	return byteAt(pos++) & 0xFF;
+      }
+      @Override
+      public int read(byte[] b, int off, int len) {
+	int	region;
+	int	offset;
+	int	n;
+
+	if (len == 0)
+	  return 0;
+	if (pos >= size)
+	  return -1;
+	region = (int) (pos / REGION_SIZE);
+	offset = (int) (pos % REGION_SIZE);
+	n      = Math.min(len, regions[region].limit() - offset);
+	buffer(region).position(offset).get(b, off, n);
+	pos += n;
+	return n;
+      }
+      @Override
+      public int available() {
+	return (int) Math.min(Integer.MAX_VALUE, size - pos);
+      }
+    };
+  }
+
+  /**
+   * Returns a reader for the output, decoding it as UTF-8.
+   *
+   * @return		the reader
+   */
+  public Reader reader() {
+    return new InputStreamReader(inputStream(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decodes the complete output. Use {@link #lines()} or {@link #reader()}
+   * for large output.
+   *
+   * @return		the output
+   */
+  @Override
+  public String toString() {
+    if (size > Integer.MAX_VALUE)
+      throw new IllegalStateException("Output too large for a string: " + size);
+    return (size == 0) ? "" : decode(0, size);
+  }
+}
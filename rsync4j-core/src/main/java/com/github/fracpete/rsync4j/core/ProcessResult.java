@@ -0,0 +1,117 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ProcessResult.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import java.io.Serializable;
+
+/**
+ * Container for the outcome of a process that was executed asynchronously.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see AbstractBinary#executeAsync(java.util.concurrent.Executor)
+ */
+public class ProcessResult
+  implements Serializable {
+
+  private static final long serialVersionUID = 3207562185479323711L;
+
+  /** the exit code. */
+  protected int exitCode;
+
+  /** the collected stdout output. */
+  protected String stdOut;
+
+  /** the collected stderr output. */
+  protected String stdErr;
+
+  /** whether the process got killed due to a timeout. */
+  protected boolean timedOut;
+
+  /**
+   * Initializes the result.
+   *
+   * @param exitCode	the exit code of the process
+   * @param stdOut	the stdout output
+   * @param stdErr	the stderr output
+   * @param timedOut	whether the process was killed due to a timeout
+   */
+  public ProcessResult(int exitCode, String stdOut, String stdErr, boolean timedOut) {
+    this.exitCode = exitCode;
+    this.stdOut   = stdOut;
+    this.stdErr   = stdErr;
+    this.timedOut = timedOut;
+  }
+
+  /**
+   * Returns the exit code.
+   *
+   * @return		the exit code
+   */
+  public int getExitCode() {
+    return exitCode;
+  }
+
+  /**
+   * Returns whether the process exited with 0.
+   *
+   * @return		true if successful
+   */
+  public boolean hasSucceeded() {
+    return (exitCode == 0) && !timedOut;
+  }
+
+  /**
+   * Returns the collected stdout output.
+   *
+   * @return		the output
+   */
+  public String getStdOut() {
+    return stdOut;
+  }
+
+  /**
+   * Returns the collected stderr output.
+   *
+   * @return		the output
+   */
+  public String getStdErr() {
+    return stdErr;
+  }
+
+  /**
+   * Returns whether the process was killed due to a timeout.
+   *
+   * @return		true if timed out
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
+  /**
+   * Returns a short description of the result.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return "exit code=" + exitCode + ", timed out=" + timedOut;
+  }
+}
@@ -0,0 +1,447 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ShardPlanner.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Walks a local directory tree concurrently (one fork/join task per
+ * directory) and distributes the files across shards, balancing total bytes
+ * and number of files. Each shard can be written as NUL-separated list for
+ * use with {@code --files-from} and {@code --from0}.
+ * <br>
+ * Non-empty directories are not listed, as they get created implicitly by
+ * rsync; empty directories are listed to preserve them. Symbolic links are
+ * not followed.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ShardPlanner {
+
+  /**
+   * Container for a scanned file.
+   */
+  public static class Entry {
+
+    /** the relative path. */
+    protected String path;
+
+    /** the size in bytes. */
+    protected long size;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param path	the path relative to the root
+     * @param size	the size in bytes
+     */
+    public Entry(String path, long size) {
+      this.path = path;
+      this.size = size;
+    }
+
+    /**
+     * Returns the relative path.
+     *
+     * @return		the path
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Returns the size.
+     *
+     * @return		the size in bytes
+     */
+    public long getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * A single shard of the plan.
+   */
+  public static class Shard {
+
+    /** the paths. */
+    protected List<String> paths;
+
+    /** the total bytes. */
+    protected long bytes;
+
+    /** the cost used for balancing. */
+    protected long cost;
+
+    /**
+     * Initializes the shard.
+     */
+    public Shard() {
+      paths = new ArrayList<>();
+      bytes = 0;
+      cost  = 0;
+    }
+
+    /**
+     * Adds the entry to the shard.
+     *
+     * @param entry	the entry to add
+     * @param overhead	the per-file overhead in bytes
+     */
+    protected void add(Entry entry, long overhead) {
+      paths.add(entry.getPath());
+      bytes += entry.getSize();
+      cost  += entry.getSize() + overhead;
+    }
+
+    /**
+     * Returns the paths in this shard.
+     *
+     * @return		the paths, relative to the root
+     */
+    public List<String> getPaths() {
+      return paths;
+    }
+
+    /**
+     * Returns the number of files in this shard.
+     *
+     * @return		the number of files
+     */
+    public int getNumFiles() {
+      return paths.size();
+    }
+
+    /**
+     * Returns the total number of bytes in this shard.
+     *
+     * @return		the bytes
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Writes the paths as NUL-separated list, as expected by
+     * {@code --files-from} in combination with {@code --from0}.
+     *
+     * @param file	the file to write to
+     * @throws IOException	if writing fails
+     */
+    public void write(Path file) throws IOException {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+	for (String path: paths) {
+	  out.write(path.getBytes(StandardCharsets.UTF_8));
+	  out.write(0);
+	}
+      }
+    }
+
+    /**
+     * Returns a short description of the shard.
+     *
+     * @return		the description
+     */
+    @Override
+    public String toString() {
+      return "files=" + paths.size() + ", bytes=" + bytes;
+    }
+  }
+
+  /**
+   * Lists a single directory, forking tasks for its sub-directories.
+   */
+  protected static class ScanTask
+    extends RecursiveAction {
+
+    private static final long serialVersionUID = -2166186452683474138L;
+
+    /** the root of the scan. */
+    protected Path root;
+
+    /** the directory to list. */
+    protected Path dir;
+
+    /** the prefix for the relative paths. */
+    protected String prefix;
+
+    /** for collecting the entries. */
+    protected Collection<Entry> entries;
+
+    /**
+     * Initializes the task.
+     *
+     * @param root	the root of the scan
+     * @param dir	the directory to list
+     * @param prefix	the prefix for the relative paths
+     * @param entries	for collecting the entries
+     */
+    public ScanTask(Path root, Path dir, String prefix, Collection<Entry> entries) {
+      this.root    = root;
+      this.dir     = dir;
+      this.prefix  = prefix;
+      this.entries = entries;
+    }
+
+    /**
+     * Lists the directory.
+     */
+    @Override
+    protected void compute() {
+      List<ScanTask>		subTasks;
+      BasicFileAttributes	attrs;
+      String			rel;
+      boolean			empty;
+
+      subTasks = new ArrayList<>();
+      empty    = true;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+	for (Path path: stream) {
+	  empty = false;
+	  rel   = prefix + root.relativize(path).toString().replace('\\', '/');
+	  attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+	  if (attrs.isDirectory())
+	    subTasks.add(new ScanTask(root, path, prefix, entries));
+	  else
+	    entries.add(new Entry(rel, attrs.isRegularFile() ? attrs.size() : 0));
+	}
+      }
+      catch (IOException e) {
+	Logger.getLogger(ShardPlanner.class.getName()).log(Level.WARNING, "Failed to list: " + dir, e);
+      }
+      if (empty && !dir.equals(root))
+	entries.add(new Entry(prefix + root.relativize(dir).toString().replace('\\', '/') + "/", 0));
+      invokeAll(subTasks);
+    }
+  }
+
+  /** the number of shards. */
+  protected int numShards;
+
+  /** the per-file overhead in bytes, used for balancing. */
+  protected long fileOverhead;
+
+  /** the parallelism for the scan. */
+  protected int parallelism;
+
+  /**
+   * Initializes the planner.
+   */
+  public ShardPlanner() {
+    numShards    = Runtime.getRuntime().availableProcessors();
+    fileOverhead = 32 * 1024;
+    parallelism  = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Sets the number of shards to generate.
+   *
+   * @param value	the number of shards, at least 1
+   * @return		itself
+   */
+  public ShardPlanner numShards(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Number of shards must be at least 1, provided: " + value);
+    numShards = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of shards to generate.
+   *
+   * @return		the number of shards
+   */
+  public int getNumShards() {
+    return numShards;
+  }
+
+  /**
+   * Sets the cost of a single file expressed in bytes, which accounts for
+   * the per-file overhead (stat calls, file list entries, round trips).
+   *
+   * @param value	the overhead in bytes, at least 0
+   * @return		itself
+   */
+  public ShardPlanner fileOverhead(long value) {
+    if (value < 0)
+      throw new IllegalArgumentException("File overhead cannot be negative, provided: " + value);
+    fileOverhead = value;
+    return this;
+  }
+
+  /**
+   * Returns the cost of a single file expressed in bytes.
+   *
+   * @return		the overhead in bytes
+   */
+  public long getFileOverhead() {
+    return fileOverhead;
+  }
+
+  /**
+   * Sets the number of threads to use for scanning.
+   *
+   * @param value	the number of threads, at least 1
+   * @return		itself
+   */
+  public ShardPlanner parallelism(int value) {
+    if (value < 1)
+      throw new IllegalArgumentException("Parallelism must be at least 1, provided: " + value);
+    parallelism = value;
+    return this;
+  }
+
+  /**
+   * Returns the number of threads to use for scanning.
+   *
+   * @return		the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Scans the directory tree.
+   *
+   * @param root	the directory to scan
+   * @param prefix	the prefix for the relative paths, e.g., the name of the root directory followed by a slash
+   * @return		the files and empty directories, relative to the root
+   */
+  public List<Entry> scan(Path root, String prefix) {
+    ConcurrentLinkedQueue<Entry>	entries;
+    ForkJoinPool			pool;
+
+    if (!Files.isDirectory(root))
+      throw new IllegalArgumentException("Not a directory: " + root);
+
+    entries = new ConcurrentLinkedQueue<>();
+    pool    = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new ScanTask(root, root, prefix, entries));
+    }
+    finally {
+      pool.shutdown();
+    }
+
+    return new ArrayList<>(entries);
+  }
+
+  /**
+   * Distributes the entries across the shards, largest first, always adding
+   * to the shard with the lowest cost so far. Empty shards are omitted.
+   *
+   * @param entries	the entries to distribute
+   * @return		the shards
+   */
+  public List<Shard> plan(List<Entry> entries) {
+    List<Shard>			result;
+    PriorityQueue<Shard>	queue;
+    List<Entry>			sorted;
+    Shard			shard;
+    int				i;
+
+    sorted = new ArrayList<>(entries);
+    sorted.sort((e1, e2) -> Long.compare(e2.getSize(), e1.getSize()));
+    queue = new PriorityQueue<>(numShards, (s1, s2) -> {
+      int res = Long.compare(s1.cost, s2.cost);
+      if (res == 0)
+	res = Integer.compare(s1.getNumFiles(), s2.getNumFiles());
+      return res;
+    });
+    for (i = 0; i < numShards; i++)
+      queue.add(new Shard());
+    for (Entry entry: sorted) {
+      shard = queue.poll();
+      shard.add(entry, fileOverhead);
+      queue.add(shard);
+    }
+
+    result = new ArrayList<>();
+    for (Shard s: queue) {
+      if (s.getNumFiles() > 0) {
+	Collections.sort(s.paths);
+	result.add(s);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Scans the directory tree and distributes the files across the shards.
+   *
+   * @param root	the directory to scan
+   * @param prefix	the prefix for the relative paths
+   * @return		the shards
+   */
+  public List<Shard> plan(Path root, String prefix) {
+    return plan(scan(root, prefix));
+  }
+
+  /**
+   * Scans the directory and outputs the shards and the scan throughput.
+   * <br>
+   * Usage: ShardPlanner dir [num_shards]
+   *
+   * @param args	the arguments
+   */
+  public static void main(String[] args) throws Exception {
+    ShardPlanner	planner;
+    List<Entry>		entries;
+    long		start;
+    long		duration;
+
+    if (args.length == 0) {
+      System.err.println("Usage: " + ShardPlanner.class.getName() + " dir [num_shards]");
+      System.exit(1);
+    }
+
+    planner = new ShardPlanner();
+    if (args.length > 1)
+      planner.numShards(Integer.parseInt(args[1]));
+    start    = System.nanoTime();
+    entries  = planner.scan(Paths.get(args[0]), "");
+    duration = Math.max(1, System.nanoTime() - start);
+    System.out.println("Scanned " + entries.size() + " entries in " + (duration / 1000000) + "ms ("
+      + (long) (entries.size() * 1e9 / duration) + " files/sec)");
+    for (Shard shard: planner.plan(entries))
+      System.out.println(shard);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamPump.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package com.github.fracpete.rsync4j.core;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executors for draining the stdout/stderr of processes, which
+ * spend almost all their time blocked on reading.
+ * <br>
+ * This version uses platform (daemon) threads, the Java 21 version in the
+ * multi-release jar (META-INF/versions/21) uses virtual threads instead.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class StreamPump {
+
+  /** the prefix for the thread names. */
+  public final static String THREAD_PREFIX = "rsync4j-pump-";
+
+  /** the counter for the thread names. */
+  protected static final AtomicInteger COUNTER = new AtomicInteger();
+
+  /** the shared executor. */
+  protected static ExecutorService shared;
+
+  /**
+   * Returns whether virtual threads are used.
+   *
+   * @return		true if virtual threads
+   */
+  public static boolean isVirtual() {
+    return false;
+  }
+
+  /**
+   * Returns a new executor for draining process output, to be shut down by
+   * the caller.
+   *
+   * @return		the executor
+   */
+  public static ExecutorService newExecutor() {
+    return Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, THREAD_PREFIX + COUNTER.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Returns a new executor for draining process output with at most the
+   * specified number of threads, to be shut down by the caller. Tasks beyond
+   * that limit get queued.
+   *
+   * @param threads	the maximum number of threads
+   * @return		the executor
+   */
+  public static ExecutorService newExecutor(int threads) {
+    return Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, THREAD_PREFIX + COUNTER.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Returns the executor shared by all processes that do not supply their
+   * own one. Must not be shut down.
+   *
+   * @return		the executor
+   */
+  public static synchronized ExecutorService shared() {
+    if (shared == null)
+      shared = newExecutor();
+    return shared;
+  }
+}
@@ -15,11 +15,23 @@
 
 /*
  * Utils.java
- * Copyright (C) 2017 University of Waikato, Hamilton, NZ
+ * Copyright (C) 2017-2026 University of Waikato, Hamilton, NZ
  */
 
 package com.github.fracpete.rsync4j.core;
 
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -67,4 +79,71 @@ public class Utils {
 
     return result.toString();
   }
+
+  /**
+   * Reads the stream completely, using the platform's default charset.
+   *
+   * @param stream	the stream to read
+   * @return		the content
+   * @throws UncheckedIOException	if reading fails
+   */
+  public static String readFully(InputStream stream) {
+    try {
+      return IOUtils.toString(stream, Charset.defaultCharset());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Forcibly kills the process and all of its descendants, e.g., the ssh
+   * process that rsync spawned for the remote shell.
+   *
+   * @param process	the process to kill
+   */
+  public static void destroy(Process process) {
+    process.descendants().forEach(ProcessHandle::destroyForcibly);
+    process.destroyForcibly();
+  }
+
+  /**
+   * Writes the paths to a temporary file, terminated by nulls, for use with
+   * rsync's {@code --files-from} and {@code --from0}.
+   *
+   * @param paths	the (relative) paths to write
+   * @return		the temporary file, to be deleted by the caller
+   * @throws IOException	if writing fails
+   */
+  public static Path writeFileList(Collection<String> paths) throws IOException {
+    return writeFileList(paths, true);
+  }
+
+  /**
+   * Writes the paths to a temporary file for use with rsync's
+   * {@code --files-from}, streaming them rather than assembling the
+   * content in memory.
+   *
+   * @param paths	the (relative) paths to write
+   * @param from0	whether to terminate the paths by nulls ({@code --from0}) or newlines
+   * @return		the temporary file, to be deleted by the caller
+   * @throws IOException	if writing fails
+   */
+  public static Path writeFileList(Collection<String> paths, boolean from0) throws IOException {
+    Path	result;
+
+    result = Files.createTempFile("rsync4j-", ".files");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(result), 65536)) {
+      for (String path: paths) {
+	out.write(path.getBytes(StandardCharsets.UTF_8));
+	out.write(from0 ? 0 : '\n');
+      }
+    }
+    catch (IOException e) {
+      Files.deleteIfExists(result);
+      throw e;
+    }
+
+    return result;
+  }
 }